@@ -0,0 +1,137 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+// BENCHMARK HARNESS
+// Shared by the StudentBenchmark class in each program. It only knows about
+// operations, not students, so it compiles next to any one program:
+//   javac -d out/StudentRecord StudentRecord.java Bench.java
+//   java -cp out/StudentRecord StudentBenchmark 1000,100000
+// bench.sh does this for every program.
+
+public final class Bench {
+
+    // One benchmarked call; i is the iteration number, useful for picking keys
+    public interface Op {
+        void run(int i) throws Exception;
+    }
+
+    // Same roster for every program: roll numbers 1..n, names drawn from a small pool so
+    // name lookups find a handful of matches, marks spread over 0..100
+    private static final String[] FIRST = {"Ankit", "Riya", "Aman", "Sneha", "Karan", "Pooja", "Rahul", "Neha",
+            "Vikas", "Isha", "Arjun", "Divya", "Rohan", "Kavya", "Manav", "Tara"};
+    private static final String[] COURSES = {"B.Tech", "M.Tech", "BCA", "MCA", "B.Sc", "M.Sc", "MBA", "PhD"};
+
+    private static final long WARMUP_NANOS = 200_000_000L;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Result rows go here; the programs under test print a lot, so System.out is silenced
+    private static PrintStream out = System.out;
+
+    private Bench() {}
+
+    public static void silenceStdout() {
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    public static String name(int i) {
+        return FIRST[i % FIRST.length] + (i / FIRST.length % 1000);
+    }
+
+    public static String email(int i) {
+        return "student" + i + "@mail.com";
+    }
+
+    public static String course(int i) {
+        return COURSES[(i * 7) % COURSES.length];
+    }
+
+    public static double marks(int i) {
+        return (i * 7919L % 10001) / 100.0;
+    }
+
+    // Roster sizes from the command line, e.g. "1000,10000,10000000"
+    public static int[] sizes(String[] args, String defaults) {
+        String spec = args.length > 0 ? args[0] : defaults;
+        String[] parts = spec.split(",");
+        int[] sizes = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) sizes[i] = Integer.parseInt(parts[i].trim());
+        return sizes;
+    }
+
+    // Free-form line in the results, e.g. cache hit rates
+    public static void note(String line) {
+        out.println("  " + line);
+    }
+
+    public static void header() {
+        out.printf("%-28s %-16s %10s %14s %10s %10s %10s %10s %12s%n",
+                "variant", "operation", "size", "ops/s", "p50 us", "p99 us", "p99.9 us", "max us", "alloc B/op");
+    }
+
+    // Warms up, then times ops calls one by one and prints a result row
+    public static void run(String variant, String operation, int size, int ops, Op body) throws Exception {
+        long warmEnd = System.nanoTime() + WARMUP_NANOS;
+        for (int i = 0; i < ops && System.nanoTime() < warmEnd; i++) body.run(i);
+        measure(variant, operation, size, ops, body);
+    }
+
+    // No warmup, for operations that consume their keys (add, delete)
+    public static void runCold(String variant, String operation, int size, int ops, Op body) throws Exception {
+        measure(variant, operation, size, ops, body);
+    }
+
+    private static void measure(String variant, String operation, int size, int ops, Op body) throws Exception {
+
+        long[] samples = new long[ops];
+        long thread = Thread.currentThread().getId();
+        long allocBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            long t0 = System.nanoTime();
+            body.run(i);
+            samples[i] = System.nanoTime() - t0;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(thread) - allocBefore;
+
+        Arrays.sort(samples);
+        out.printf("%-28s %-16s %10d %14.0f %10.2f %10.2f %10.2f %10.2f %12d%n",
+                variant, operation, size, ops * 1e9 / elapsed,
+                percentile(samples, 0.50), percentile(samples, 0.99), percentile(samples, 0.999),
+                samples[ops - 1] / 1000.0, allocated / ops);
+    }
+
+    // Runs setup untimed before every measured call, for operations that consume their input
+    public static void runWithSetup(String variant, String operation, int size, int ops, Op setup, Op body)
+            throws Exception {
+        long[] samples = new long[ops];
+        long thread = Thread.currentThread().getId();
+        long allocated = 0;
+        long elapsed = 0;
+        for (int i = 0; i < ops; i++) {
+            setup.run(i);
+            long allocBefore = THREADS.getThreadAllocatedBytes(thread);
+            long t0 = System.nanoTime();
+            body.run(i);
+            samples[i] = System.nanoTime() - t0;
+            allocated += THREADS.getThreadAllocatedBytes(thread) - allocBefore;
+            elapsed += samples[i];
+        }
+
+        Arrays.sort(samples);
+        out.printf("%-28s %-16s %10d %14.0f %10.2f %10.2f %10.2f %10.2f %12d%n",
+                variant, operation, size, ops * 1e9 / elapsed,
+                percentile(samples, 0.50), percentile(samples, 0.99), percentile(samples, 0.999),
+                samples[ops - 1] / 1000.0, allocated / ops);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1000.0;
+    }
+}
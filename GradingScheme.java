@@ -0,0 +1,107 @@
+import java.util.*;
+
+// GRADING SCHEME
+// Shared by every program that grades students, in the same way as Bench.java: it only
+// knows about marks, so it compiles next to any one program. javac finds it on its own
+// when a program is compiled from this directory.
+//
+// Marks are rounded to hundredths and looked up in a table built once from the
+// cut-offs, rounded the same way, so grading a student is one array read with no
+// comparisons against the cut-offs. A grade is stored as a byte code, its index in labels() (best grade first).
+
+public final class GradingScheme {
+
+    // Cut-offs used by StudentManagementSystem, StudentSystem and StudentRecordSystem
+    public static final GradingScheme LETTER = of(new double[] {90, 75, 60}, "A", "B", "C", "D");
+
+    // Cut-offs used by StudentRecord
+    public static final GradingScheme PLUS = of(new double[] {90, 80, 70, 60}, "A+", "A", "B+", "B", "C");
+
+    private static final int STEPS_PER_MARK = 100;
+    private static final int MAX_STEP = 100 * STEPS_PER_MARK;
+
+    private final String[] labels;
+    private final double[] cutoffs;
+    private final byte[] table = new byte[MAX_STEP + 1];
+
+    private GradingScheme(double[] cutoffs, String[] labels) {
+        this.cutoffs = cutoffs.clone();
+        this.labels = labels.clone();
+        int code = 0;
+        for (int step = MAX_STEP; step >= 0; step--) {
+            while (code < cutoffs.length && step < step(cutoffs[code])) code++;
+            table[step] = (byte) code;
+        }
+    }
+
+    // cutoffs[i] is the lowest mark that earns labels[i]; anything below the last cut-off
+    // earns the final label, so there is one more label than cut-offs
+    public static GradingScheme of(double[] cutoffs, String... labels) {
+        if (labels.length != cutoffs.length + 1 || labels.length > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Need one more label than cut-offs");
+        for (String label : labels) {
+            if (label == null || label.isBlank()) throw new IllegalArgumentException("Grade labels cannot be blank");
+        }
+        for (int i = 0; i < cutoffs.length; i++) {
+            if (cutoffs[i] < 0 || cutoffs[i] > 100 || (i > 0 && cutoffs[i] >= cutoffs[i - 1]))
+                throw new IllegalArgumentException("Cut-offs must fall from 100 towards 0");
+        }
+        return new GradingScheme(cutoffs, labels);
+    }
+
+    // Spec like "A+=90,A=80,B+=70,B=60,C": label=cut-off pairs, best first, then the lowest label
+    public static GradingScheme parse(String spec) {
+        String[] parts = spec.split(",");
+        double[] cutoffs = new double[parts.length - 1];
+        String[] labels = new String[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String[] pair = parts[i].trim().split("=");
+            labels[i] = pair[0].trim();
+            if (i < cutoffs.length) {
+                if (pair.length != 2) throw new IllegalArgumentException("Missing cut-off for " + labels[i]);
+                cutoffs[i] = Double.parseDouble(pair[1].trim());
+            }
+        }
+        return of(cutoffs, labels);
+    }
+
+    // The scheme named by -Dgrading=<spec>, or fallback when the property is not set
+    public static GradingScheme configured(GradingScheme fallback) {
+        String spec = System.getProperty("grading");
+        return spec == null || spec.isBlank() ? fallback : parse(spec);
+    }
+
+    public byte code(double marks) {
+        return table[step(marks)];
+    }
+
+    public String label(byte code) {
+        return labels[code];
+    }
+
+    public List<String> labels() {
+        return List.of(labels);
+    }
+
+    public int size() {
+        return labels.length;
+    }
+
+    // Bulk pass for columnar rosters: one straight loop of loads and stores, no branches
+    public void codes(double[] marks, byte[] codes, int count) {
+        byte[] table = this.table;
+        for (int i = 0; i < count; i++) codes[i] = table[step(marks[i])];
+    }
+
+    // Rounded, not truncated: 64.1 * 100 is just under 6410 in binary, and 64.1 marks must
+    // still meet a 64.1 cut-off. Marks outside 0..100 grade as the nearest end; NaN grades like 0
+    private static int step(double marks) {
+        return (int) Math.min(MAX_STEP, Math.max(0, Math.round(marks * STEPS_PER_MARK)));
+    }
+
+    public String toString() {
+        StringBuilder spec = new StringBuilder();
+        for (int i = 0; i < cutoffs.length; i++) spec.append(labels[i]).append('=').append(cutoffs[i]).append(',');
+        return spec.append(labels[labels.length - 1]).toString();
+    }
+}
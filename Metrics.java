@@ -0,0 +1,265 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+
+// OPERATION METRICS
+// Latency timers and counters for the hot paths, shared like Bench.java: it only knows
+// about names and numbers, so it compiles next to any one program.
+//
+// Off unless the JVM starts with -Dmetrics=true. ENABLED is a static final, so when it is
+// false the JIT folds start()/stop()/add() down to nothing. When on:
+//   - every timer and counter is readable over JMX as students:type=Metrics
+//   - -Dmetrics.dump=<seconds> prints a text report to stderr at that interval
+//
+// Timers keep an HDR-style histogram: values are bucketed by their highest set bit, with
+// 32 linear sub-buckets per power of two, so any recorded latency is reported to within
+// about 3% and recording is a few shifts and one atomic increment.
+
+public final class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("metrics");
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("students:type=Metrics"));
+            } catch (JMException e) {
+                System.err.println("Metrics not registered with JMX: " + e.getMessage());
+            }
+            long seconds = Long.getLong("metrics.dump", 0);
+            if (seconds > 0) dumpEvery(seconds, System.err);
+        }
+    }
+
+    private Metrics() {}
+
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, Counter::new);
+    }
+
+    // Times one operation:  long t = TIMER.start(); try { ... } finally { TIMER.stop(t); }
+    public static final class Timer {
+        private static final int SUB_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+        final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(SUB_BUCKETS * (65 - SUB_BITS));
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        public long start() {
+            return ENABLED ? System.nanoTime() : 0;
+        }
+
+        public void stop(long start) {
+            if (ENABLED) record(System.nanoTime() - start);
+        }
+
+        public void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public double meanMicros() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1000.0 / n;
+        }
+
+        public double maxMicros() {
+            return maxNanos.get() / 1000.0;
+        }
+
+        // Latency at quantile q (0..1), in microseconds
+        public double percentileMicros(double q) {
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) total += counts[i] = buckets.get(i);
+            if (total == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) return Math.min(upperBound(i), maxNanos.get()) / 1000.0;
+            }
+            return maxMicros();
+        }
+
+        private static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) return (int) nanos;
+            int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+            return SUB_BUCKETS * (shift + 1) + (int) ((nanos >>> shift) - SUB_BUCKETS);
+        }
+
+        // Largest value that lands in the bucket
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int shift = bucket / SUB_BUCKETS - 1;
+            return ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift) - 1;
+        }
+    }
+
+    // Running total, e.g. bytes written or records parsed
+    public static final class Counter {
+        final String name;
+        private final LongAdder total = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public void add(long n) {
+            if (ENABLED) total.add(n);
+        }
+
+        public void increment() {
+            if (ENABLED) total.increment();
+        }
+
+        public long total() {
+            return total.sum();
+        }
+    }
+
+    // Prints report() every interval; rates are per second over the last interval
+    public static ScheduledFuture<?> dumpEvery(long seconds, PrintStream out) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        Map<String, Long> previous = new HashMap<>();
+        return scheduler.scheduleAtFixedRate(() -> out.print(report(previous, seconds)), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    public static String report() {
+        return report(null, 0);
+    }
+
+    // previous holds the totals seen by the last report, for the rate column
+    private static String report(Map<String, Long> previous, long seconds) {
+        // the name column fits the longest registered name, so the numbers line up
+        int width = 18;
+        for (String name : TIMERS.keySet()) width = Math.max(width, name.length());
+        for (String name : COUNTERS.keySet()) width = Math.max(width, name.length());
+        String column = "%-" + width + "s";
+        StringBuilder sb = new StringBuilder();
+        sb.append("== metrics ").append(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)).append(" ==\n");
+        sb.append(String.format(column + " %10s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "rate/s", "mean us", "p50 us", "p99 us", "p99.9 us", "max us"));
+        for (Timer t : TIMERS.values()) {
+            long count = t.count();
+            sb.append(String.format(column + " %10d %10s %10.1f %10.1f %10.1f %10.1f %10.1f%n", t.name, count,
+                    rate(previous, "timer:" + t.name, count, seconds), t.meanMicros(), t.percentileMicros(0.50),
+                    t.percentileMicros(0.99), t.percentileMicros(0.999), t.maxMicros()));
+        }
+        sb.append(String.format(column + " %10s %10s%n", "counter", "total", "rate/s"));
+        for (Counter c : COUNTERS.values()) {
+            long total = c.total();
+            sb.append(String.format(column + " %10d %10s%n", c.name, total, rate(previous, "counter:" + c.name, total, seconds)));
+        }
+        return sb.toString();
+    }
+
+    private static String rate(Map<String, Long> previous, String key, long total, long seconds) {
+        if (previous == null || seconds <= 0) return "-";
+        Long before = previous.put(key, total);
+        return String.format("%.1f", (total - (before == null ? 0 : before)) / (double) seconds);
+    }
+
+    // JMX view: every timer shows up as <name>.count, .meanMicros, .p50Micros, .p99Micros,
+    // .p999Micros and .maxMicros, every counter as <name>.total, plus the whole text report
+    private static final class Bean implements DynamicMBean {
+        private static final String[] TIMER_FIELDS = {"count", "meanMicros", "p50Micros", "p99Micros", "p999Micros", "maxMicros"};
+
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            if (attribute.equals("report")) return report();
+            int dot = attribute.lastIndexOf('.');
+            if (dot > 0) {
+                String name = attribute.substring(0, dot);
+                String field = attribute.substring(dot + 1);
+                Timer t = TIMERS.get(name);
+                if (t != null) {
+                    switch (field) {
+                        case "count": return t.count();
+                        case "meanMicros": return t.meanMicros();
+                        case "p50Micros": return t.percentileMicros(0.50);
+                        case "p99Micros": return t.percentileMicros(0.99);
+                        case "p999Micros": return t.percentileMicros(0.999);
+                        case "maxMicros": return t.maxMicros();
+                        default: break;
+                    }
+                }
+                Counter c = COUNTERS.get(name);
+                if (c != null && field.equals("total")) return c.total();
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String a : attributes) {
+                try {
+                    list.add(new Attribute(a, getAttribute(a)));
+                } catch (AttributeNotFoundException e) {
+                    // skipped, as the DynamicMBean contract allows
+                }
+            }
+            return list;
+        }
+
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        // Built on every call, so timers created after registration still appear
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            attributes.add(new MBeanAttributeInfo("report", "java.lang.String", "Text report", true, false, false));
+            for (String name : TIMERS.keySet()) {
+                for (String field : TIMER_FIELDS) {
+                    String type = field.equals("count") ? "long" : "double";
+                    attributes.add(new MBeanAttributeInfo(name + "." + field, type, name + " " + field, true, false, false));
+                }
+            }
+            for (String name : COUNTERS.keySet()) {
+                attributes.add(new MBeanAttributeInfo(name + ".total", "long", name + " total", true, false, false));
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Student operation metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
@@ -1,4 +1,14 @@
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 
 // 1. ABSTRACT CLASS PERSON
@@ -21,10 +31,14 @@ abstract class Person {
 
 class Student extends Person {
 
+    // Scheme from -Dgrading that every manager starts with; a manager's regrade changes only its own
+    static final GradingScheme DEFAULT_GRADING = GradingScheme.configured(GradingScheme.LETTER);
+
     int rollNo;
     String course;
     double marks;
-    char grade;
+    byte grade;                              // code in scheme
+    GradingScheme scheme = DEFAULT_GRADING;  // the one grade was computed with
 
     public Student() {}
 
@@ -33,7 +47,7 @@ class Student extends Person {
         this.rollNo = rollNo;
         this.course = course;
         this.marks = marks;
-        calculateGrade();
+        calculateGrade(DEFAULT_GRADING);
     }
 
     // Method Overloading
@@ -50,16 +64,27 @@ class Student extends Person {
         System.out.println("Email: " + email);
         System.out.println("Course: " + course);
         System.out.println("Marks: " + marks);
-        System.out.println("Grade: " + grade);
+        System.out.println("Grade: " + scheme.label(grade));
         System.out.println("----------------------------------");
     }
 
-    // Method to determine Grade
-    private void calculateGrade() {
-        if (marks >= 90) grade = 'A';
-        else if (marks >= 75) grade = 'B';
-        else if (marks >= 60) grade = 'C';
-        else grade = 'D';
+    // Method to determine Grade, with the scheme of the manager that holds this student
+    void calculateGrade(GradingScheme scheme) {
+        this.scheme = scheme;
+        grade = scheme.code(marks);
+    }
+
+    // Same fields and grade in a new object, for handing out past the manager that holds this one
+    Student copy() {
+        Student c = new Student();
+        c.rollNo = rollNo;
+        c.name = name;
+        c.email = email;
+        c.course = course;
+        c.marks = marks;
+        c.grade = grade;
+        c.scheme = scheme;
+        return c;
     }
 }
 
@@ -73,6 +98,18 @@ final class FinalClass {
 }
 
 
+// RESULT OF ONE ITEM IN A BATCH
+
+enum BatchStatus {
+    OK, DUPLICATE, NOT_FOUND, INVALID;
+
+    // Same rules as the interactive programs: a name, and marks between 0 and 100
+    static boolean isValid(Student s) {
+        return s != null && s.name != null && !s.name.trim().isEmpty() && s.marks >= 0 && s.marks <= 100;
+    }
+}
+
+
 // INTERFACE FOR CRUD OPERATIONS
 
 interface RecordActions {
@@ -81,6 +118,228 @@ interface RecordActions {
     void updateStudent(int rollNo, Student newData);
     Student searchStudent(int rollNo);
     void viewAllStudents();
+
+    // Batch operations: validate every item, apply the accepted ones in one go and
+    // return a status per item instead of printing
+    BatchStatus[] addAll(List<Student> batch);
+    BatchStatus[] updateAll(List<Student> batch); // matched by each student's roll number
+    BatchStatus[] deleteAll(Collection<Integer> rollNos);
+
+    // Switches this manager to scheme and recomputes the grades it has stored; other managers keep theirs
+    void regrade(GradingScheme scheme);
+
+    // Every add, update and delete this manager applies from now on, see ChangeFeed
+    ChangeFeed changes();
+}
+
+
+// OPERATION METRICS
+// One Metrics.Timer per RecordActions method, named <manager>.<operation>, so every manager's
+// figures sit side by side in the report. Free unless -Dmetrics=true (see Metrics.java).
+
+final class ActionTimers {
+    final Metrics.Timer add, delete, update, search, viewAll, addAll, updateAll, deleteAll, regrade;
+
+    ActionTimers(String manager) {
+        add = Metrics.timer(manager + ".add");
+        delete = Metrics.timer(manager + ".delete");
+        update = Metrics.timer(manager + ".update");
+        search = Metrics.timer(manager + ".search");
+        viewAll = Metrics.timer(manager + ".viewAll");
+        addAll = Metrics.timer(manager + ".addAll");
+        updateAll = Metrics.timer(manager + ".updateAll");
+        deleteAll = Metrics.timer(manager + ".deleteAll");
+        regrade = Metrics.timer(manager + ".regrade");
+    }
+}
+
+
+// CHANGE EVENT
+// One add, update or delete as a change feed subscriber sees it. before is null for an
+// add and after for a delete; both are copies no manager changes. RESYNC means the
+// events up to sequence are no longer held: re-read the manager and carry on.
+
+final class ChangeEvent {
+    enum Type { ADD, UPDATE, DELETE, RESYNC }
+
+    final long sequence;
+    final Type type;
+    final int rollNo;
+    final Student before;
+    final Student after;
+
+    ChangeEvent(long sequence, Type type, int rollNo, Student before, Student after) {
+        this.sequence = sequence;
+        this.type = type;
+        this.rollNo = rollNo;
+        this.before = before;
+        this.after = after;
+    }
+
+    public String toString() {
+        return sequence + " " + type + (type == Type.RESYNC ? "" : " " + rollNo);
+    }
+}
+
+
+// CHANGE FEED
+// Bounded ring of ChangeEvents for in-process subscribers (dashboards, a search index),
+// one per manager. Sequence numbers start at 1 in every run and nothing is persisted.
+// Neither side locks: a producer claims a sequence, fills its slot and then waits for the
+// claims before it to be published, so ConcurrentStudentManager's writers, which publish
+// under their stripe locks, come out in one order; each subscriber moves its own cursor.
+//   - Backpressure: a producer does not overwrite an event a subscriber has not consumed.
+//     It waits, holding up the writer, so a subscriber must keep polling and must not write
+//     to the manager from the thread that consumes the feed. After feed.stallMillis
+//     (default 5000) the subscribers still in the way are dropped from backpressure and
+//     get a RESYNC on their next poll.
+
+class ChangeFeed {
+
+    static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("feed.stallMillis", 5000));
+
+    private final AtomicReferenceArray<ChangeEvent> slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public ChangeFeed() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // capacity is rounded up to a power of two
+    public ChangeFeed(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    public long head() {
+        return published.get();
+    }
+
+    // Producer side, from any thread. Waits while the slot still holds an event some
+    // subscriber has not consumed, then for earlier claims to be published.
+    long publish(ChangeEvent.Type type, int rollNo, Student before, Student after) {
+        long seq = claimed.incrementAndGet();
+        long wrap = seq - slots.length();
+        if (wrap > 0 && slowest() < wrap) awaitSubscribers(wrap);
+        slots.set(index(seq), new ChangeEvent(seq, type, rollNo, before, after));
+        for (int spins = 0; published.get() != seq - 1; spins++) {
+            if (spins < 100) Thread.onSpinWait();
+            else LockSupport.parkNanos(1_000);
+        }
+        published.set(seq);
+        return seq;
+    }
+
+    // Starts at the head: the next event published is the first it sees
+    public Subscription subscribe() {
+        return subscribe(published.get());
+    }
+
+    // Starts with the first event after sequence, e.g. one an earlier subscription reached
+    public Subscription subscribe(long sequence) {
+        Subscription s = new Subscription(sequence);
+        subscriptions.add(s);
+        return s;
+    }
+
+    // Drops whoever still holds the slot once STALL_NANOS have passed, so a subscriber that
+    // stopped polling without close() cannot hold up writers for good
+    private void awaitSubscribers(long wrap) {
+        long deadline = System.nanoTime() + STALL_NANOS;
+        for (int spins = 0; slowest() < wrap; spins++) {
+            if (System.nanoTime() - deadline >= 0) {
+                for (Subscription s : subscriptions) {
+                    if (s.consumed.get() < wrap) s.drop();
+                }
+                return;
+            }
+            if (spins < 100) Thread.onSpinWait();
+            else LockSupport.parkNanos(50_000);
+        }
+    }
+
+    private long slowest() {
+        long min = Long.MAX_VALUE;
+        for (Subscription s : subscriptions) min = Math.min(min, s.consumed.get());
+        return min;
+    }
+
+    private int index(long seq) {
+        return (int) seq & mask;
+    }
+
+    // One consumer's view of the feed; use it from one thread
+    class Subscription implements AutoCloseable {
+        private final AtomicLong consumed; // read by producers for backpressure
+        private long position;             // last sequence handed out
+        private volatile boolean dropped;  // by a producer, for stalling it
+        private volatile boolean closed;
+
+        private Subscription(long sequence) {
+            position = Math.min(sequence, published.get());
+            // a subscriber further back than the ring reaches cannot hold up producers
+            consumed = new AtomicLong(Math.max(position, published.get() - slots.length()));
+        }
+
+        public long position() {
+            return position;
+        }
+
+        // Events published but not yet consumed
+        public long lag() {
+            return published.get() - position;
+        }
+
+        // The next event, or null if there is none yet
+        public ChangeEvent poll() {
+            long next = position + 1;
+            if (next > published.get()) return null;
+            ChangeEvent e = slots.get(index(next));
+            if (dropped || e == null || e.sequence != next) {
+                // overwritten or dropped: skip to the oldest event still held
+                position = Math.max(0, published.get() - slots.length());
+                consumed.set(position);
+                if (dropped && !closed) {
+                    dropped = false;
+                    subscriptions.add(this);
+                }
+                return new ChangeEvent(position, ChangeEvent.Type.RESYNC, 0, null, null);
+            }
+            position = next;
+            consumed.lazySet(next);
+            return e;
+        }
+
+        // Waits up to timeout for the next event; null if none arrived
+        public ChangeEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            for (int spins = 0; ; spins++) {
+                ChangeEvent e = poll();
+                if (e != null) return e;
+                if (Thread.interrupted()) throw new InterruptedException();
+                long left = deadline - System.nanoTime();
+                if (left <= 0) return null;
+                if (spins < 100) Thread.onSpinWait();
+                else LockSupport.parkNanos(Math.min(left, 100_000));
+            }
+        }
+
+        // Stops holding up producers
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+        }
+
+        private void drop() {
+            dropped = true;
+            subscriptions.remove(this);
+        }
+    }
 }
 
 
@@ -88,45 +347,177 @@ interface RecordActions {
 
 class StudentManager implements RecordActions {
 
+    private static final ActionTimers TIMERS = new ActionTimers("hashmap");
+
     private Map<Integer, Student> studentMap = new HashMap<>();
+    private int reserved; // entries the map was last sized for
+    private GradingScheme scheme = Student.DEFAULT_GRADING;
+    private final ChangeFeed feed = new ChangeFeed();
+
+    public ChangeFeed changes() {
+        return feed;
+    }
 
     public void addStudent(Student s) {
-        if (studentMap.containsKey(s.rollNo)) {
-            System.out.println("Duplicate Roll Number! Student NOT added.");
-            return;
+        long t = TIMERS.add.start();
+        try {
+            if (studentMap.containsKey(s.rollNo)) {
+                System.out.println("Duplicate Roll Number! Student NOT added.");
+                return;
+            }
+            s.calculateGrade(scheme);
+            studentMap.put(s.rollNo, s);
+            feed.publish(ChangeEvent.Type.ADD, s.rollNo, null, s.copy());
+            System.out.println("Student added successfully.");
+        } finally {
+            TIMERS.add.stop(t);
         }
-        studentMap.put(s.rollNo, s);
-        System.out.println("Student added successfully.");
     }
 
     public void deleteStudent(int rollNo) {
-        if (studentMap.remove(rollNo) != null)
-            System.out.println("Student removed successfully.");
-        else
-            System.out.println("Student not found.");
+        long t = TIMERS.delete.start();
+        try {
+            Student old = studentMap.remove(rollNo);
+            if (old != null) {
+                feed.publish(ChangeEvent.Type.DELETE, rollNo, old.copy(), null);
+                System.out.println("Student removed successfully.");
+            } else {
+                System.out.println("Student not found.");
+            }
+        } finally {
+            TIMERS.delete.stop(t);
+        }
     }
 
     public void updateStudent(int rollNo, Student newData) {
-        if (!studentMap.containsKey(rollNo)) {
-            System.out.println("Student not found!");
-            return;
+        long t = TIMERS.update.start();
+        try {
+            Student old = studentMap.get(rollNo);
+            if (old == null) {
+                System.out.println("Student not found!");
+                return;
+            }
+            Student before = old.copy(); // newData may be the stored object, changed by the caller
+            newData.calculateGrade(scheme);
+            studentMap.put(rollNo, newData);
+            feed.publish(ChangeEvent.Type.UPDATE, rollNo, before, newData.copy());
+            System.out.println("Student updated successfully.");
+        } finally {
+            TIMERS.update.stop(t);
         }
-        studentMap.put(rollNo, newData);
-        System.out.println("Student updated successfully.");
     }
 
     public Student searchStudent(int rollNo) {
-        return studentMap.get(rollNo);
+        long t = TIMERS.search.start();
+        try {
+            return studentMap.get(rollNo);
+        } finally {
+            TIMERS.search.stop(t);
+        }
     }
 
     public void viewAllStudents() {
-        if (studentMap.isEmpty()) {
-            System.out.println("No records found.");
-            return;
+        long t = TIMERS.viewAll.start();
+        try {
+            if (studentMap.isEmpty()) {
+                System.out.println("No records found.");
+                return;
+            }
+
+            for (Student s : studentMap.values()) {
+                s.displayInfo();
+            }
+        } finally {
+            TIMERS.viewAll.stop(t);
+        }
+    }
+
+    public BatchStatus[] addAll(List<Student> batch) {
+        long t = TIMERS.addAll.start();
+        try {
+            BatchStatus[] status = new BatchStatus[batch.size()];
+            Set<Integer> seen = new HashSet<>(batch.size() * 2);
+            int accepted = 0;
+            for (int i = 0; i < status.length; i++) {
+                Student s = batch.get(i);
+                if (!BatchStatus.isValid(s)) status[i] = BatchStatus.INVALID;
+                else if (studentMap.containsKey(s.rollNo) || !seen.add(s.rollNo)) status[i] = BatchStatus.DUPLICATE;
+                else {
+                    status[i] = BatchStatus.OK;
+                    accepted++;
+                }
+            }
+            reserve(studentMap.size() + accepted);
+            for (int i = 0; i < status.length; i++) {
+                if (status[i] != BatchStatus.OK) continue;
+                Student s = batch.get(i);
+                s.calculateGrade(scheme);
+                studentMap.put(s.rollNo, s);
+                feed.publish(ChangeEvent.Type.ADD, s.rollNo, null, s.copy());
+            }
+            return status;
+        } finally {
+            TIMERS.addAll.stop(t);
         }
+    }
+
+    public BatchStatus[] updateAll(List<Student> batch) {
+        long t = TIMERS.updateAll.start();
+        try {
+            BatchStatus[] status = new BatchStatus[batch.size()];
+            for (int i = 0; i < status.length; i++) {
+                Student s = batch.get(i);
+                if (!BatchStatus.isValid(s)) status[i] = BatchStatus.INVALID;
+                else if (!studentMap.containsKey(s.rollNo)) status[i] = BatchStatus.NOT_FOUND;
+                else status[i] = BatchStatus.OK;
+            }
+            for (int i = 0; i < status.length; i++) {
+                if (status[i] != BatchStatus.OK) continue;
+                Student s = batch.get(i);
+                Student before = studentMap.get(s.rollNo).copy();
+                s.calculateGrade(scheme);
+                studentMap.put(s.rollNo, s);
+                feed.publish(ChangeEvent.Type.UPDATE, s.rollNo, before, s.copy());
+            }
+            return status;
+        } finally {
+            TIMERS.updateAll.stop(t);
+        }
+    }
+
+    public BatchStatus[] deleteAll(Collection<Integer> rollNos) {
+        long t = TIMERS.deleteAll.start();
+        try {
+            BatchStatus[] status = new BatchStatus[rollNos.size()];
+            int i = 0;
+            for (int rollNo : rollNos) {
+                Student old = studentMap.remove(rollNo);
+                if (old != null) feed.publish(ChangeEvent.Type.DELETE, rollNo, old.copy(), null);
+                status[i++] = old != null ? BatchStatus.OK : BatchStatus.NOT_FOUND;
+            }
+            return status;
+        } finally {
+            TIMERS.deleteAll.stop(t);
+        }
+    }
+
+    // HashMap cannot grow ahead of time, so rebuild it once at the final size instead of
+    // letting it rehash repeatedly while a large batch goes in
+    private void reserve(int entries) {
+        if (entries <= reserved || entries <= studentMap.size() * 2) return;
+        Map<Integer, Student> bigger = new HashMap<>((int) (entries / 0.75f) + 1);
+        bigger.putAll(studentMap);
+        studentMap = bigger;
+        reserved = entries;
+    }
 
-        for (Student s : studentMap.values()) {
-            s.displayInfo();
+    public void regrade(GradingScheme scheme) {
+        long t = TIMERS.regrade.start();
+        try {
+            this.scheme = scheme;
+            for (Student s : studentMap.values()) s.calculateGrade(scheme);
+        } finally {
+            TIMERS.regrade.stop(t);
         }
     }
 
@@ -137,6 +528,2991 @@ class StudentManager implements RecordActions {
 }
 
 
+// STRING DICTIONARY (value <-> int code)
+
+class StringDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    public String decode(int code) {
+        return values.get(code);
+    }
+
+    // Code for value without adding it, or -1
+    public int find(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
+
+
+// STRING ARENA (near-unique text -> int code, no String kept)
+// For columns like names and emails, where nearly every value is distinct and a
+// dictionary would cost more than the strings. Each value is stored once as UTF-8 in
+// one growable byte[]; its code indexes parallel int arrays of offset, length, hash and
+// the number of rows holding it. A code is freed with its last row and handed to the
+// next new value, and the bytes of freed values are reclaimed by copying the live ones
+// once they make up half the arena. Null gets a code of its own, kept out of the hash table.
+
+class StringArena {
+
+    private static final int MIN_COMPACT = 1 << 16; // dead bytes worth a copy
+
+    private byte[] bytes;
+    private int end;
+    private int dead; // bytes of freed values, reclaimed by compact()
+
+    private int[] offsets;
+    private int[] lengths; // -1 for null
+    private int[] hashes;
+    private int[] refs; // rows holding the code, 0 once it is freed
+    private int codes;  // codes handed out so far, freed ones included
+    private int[] free = new int[16];
+    private int freeCount;
+
+    private int[] table; // code + 1 per slot, 0 marks an empty slot
+    private int mask;
+    private int live;
+    private int nullCode = -1;
+
+    public StringArena(int expected) {
+        int capacity = Math.max(16, expected);
+        bytes = new byte[capacity * 16];
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        hashes = new int[capacity];
+        refs = new int[capacity];
+        table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        mask = table.length - 1;
+    }
+
+    // Code for value with one more row holding it, adding it if it is new
+    public int acquire(String value) {
+        if (value == null) {
+            if (nullCode >= 0) refs[nullCode]++;
+            else nullCode = newCode(null, 0);
+            return nullCode;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(utf8);
+        int i = hash & mask;
+        for (int code; (code = table[i] - 1) >= 0; i = (i + 1) & mask) {
+            if (matches(code, hash, utf8)) {
+                refs[code]++;
+                return code;
+            }
+        }
+        int code = newCode(utf8, hash);
+        table[i] = code + 1;
+        if (++live * 2 > table.length) growTable();
+        return code;
+    }
+
+    // One row fewer holds code; the last one frees it
+    public void release(int code) {
+        if (--refs[code] > 0) return;
+        if (code == nullCode) {
+            nullCode = -1;
+        } else {
+            unlink(code);
+            live--;
+            dead += lengths[code];
+        }
+        if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+        free[freeCount++] = code;
+        if (dead >= MIN_COMPACT && dead * 2 > end) compact();
+    }
+
+    // Code of value if some row holds it, or -1
+    public int find(String value) {
+        if (value == null) return nullCode;
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(utf8);
+        for (int i = hash & mask, code; (code = table[i] - 1) >= 0; i = (i + 1) & mask) {
+            if (matches(code, hash, utf8)) return code;
+        }
+        return -1;
+    }
+
+    public String decode(int code) {
+        return lengths[code] < 0 ? null : new String(bytes, offsets[code], lengths[code], StandardCharsets.UTF_8);
+    }
+
+    // Same order as String.compareTo on the decoded values, without decoding them. UTF-8
+    // bytes sort by code point, so only a supplementary character against one in
+    // U+E000..U+FFFF (lead bytes 0xF0.. and 0xEE/0xEF) needs the UTF-16 order put back.
+    // Null sorts first.
+    public int compare(int a, int b) {
+        if (a == b) return 0;
+        if (a == nullCode || b == nullCode) return a == nullCode ? -1 : 1;
+        int at = offsets[a], bt = offsets[b];
+        int n = Math.min(lengths[a], lengths[b]);
+        for (int i = 0; i < n; i++) {
+            int x = bytes[at + i] & 0xFF, y = bytes[bt + i] & 0xFF;
+            if (x == y) continue;
+            if (x >= 0xF0 && (y == 0xEE || y == 0xEF)) return -1;
+            if (y >= 0xF0 && (x == 0xEE || x == 0xEF)) return 1;
+            return x - y;
+        }
+        return lengths[a] - lengths[b];
+    }
+
+    public int size() {
+        return live;
+    }
+
+    public int usedBytes() {
+        return end - dead;
+    }
+
+    private int newCode(byte[] utf8, int hash) {
+        int code;
+        if (freeCount > 0) {
+            code = free[--freeCount];
+        } else {
+            if (codes == offsets.length) growCodes();
+            code = codes++;
+        }
+        refs[code] = 1;
+        if (utf8 == null) {
+            lengths[code] = -1;
+            return code;
+        }
+        if (utf8.length > bytes.length - end) growBytes(utf8.length);
+        System.arraycopy(utf8, 0, bytes, end, utf8.length);
+        offsets[code] = end;
+        lengths[code] = utf8.length;
+        hashes[code] = hash;
+        end += utf8.length;
+        return code;
+    }
+
+    private boolean matches(int code, int hash, byte[] utf8) {
+        int at = offsets[code];
+        return hashes[code] == hash && lengths[code] == utf8.length
+                && Arrays.equals(bytes, at, at + utf8.length, utf8, 0, utf8.length);
+    }
+
+    // Linear probing delete, as in IntIndex.remove
+    private void unlink(int code) {
+        int i = hashes[code] & mask;
+        while (table[i] != code + 1) i = (i + 1) & mask;
+        for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+            int home = hashes[table[j] - 1] & mask;
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                table[i] = table[j];
+                i = j;
+            }
+        }
+        table[i] = 0;
+    }
+
+    // Moves the live values together; codes stay as they are
+    private void compact() {
+        byte[] packed = new byte[Math.max(bytes.length / 2, (end - dead) * 2)];
+        int at = 0;
+        for (int code = 0; code < codes; code++) {
+            if (refs[code] == 0 || code == nullCode) continue;
+            System.arraycopy(bytes, offsets[code], packed, at, lengths[code]);
+            offsets[code] = at;
+            at += lengths[code];
+        }
+        bytes = packed;
+        end = at;
+        dead = 0;
+    }
+
+    private void growBytes(int needed) {
+        long capacity = Math.max((long) end + needed, (long) bytes.length * 2);
+        if (capacity > Integer.MAX_VALUE - 8) {
+            if ((long) end + needed > Integer.MAX_VALUE - 8) throw new IllegalStateException("String arena is full");
+            capacity = Integer.MAX_VALUE - 8;
+        }
+        bytes = Arrays.copyOf(bytes, (int) capacity);
+    }
+
+    private void growCodes() {
+        int capacity = codes * 2;
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        refs = Arrays.copyOf(refs, capacity);
+    }
+
+    private void growTable() {
+        int[] old = table;
+        table = new int[old.length * 2];
+        mask = table.length - 1;
+        for (int entry : old) {
+            if (entry == 0) continue;
+            int i = hashes[entry - 1] & mask;
+            while (table[i] != 0) i = (i + 1) & mask;
+            table[i] = entry;
+        }
+    }
+
+    private static int hash(byte[] utf8) {
+        int h = 1;
+        for (byte b : utf8) h = 31 * h + b;
+        return h ^ (h >>> 16);
+    }
+}
+
+
+// OPEN-ADDRESSING INT -> INT INDEX (no boxing)
+
+class IntIndex {
+
+    private static final int MISSING = -1;
+
+    private int[] keys;
+    private int[] values; // stored as value + 1 so that 0 marks an empty slot
+    private int size;
+    private int mask;
+
+    public IntIndex(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Returns the value for key, or -1
+    public int get(int key) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            if (values[i] == 0) return MISSING;
+            if (keys[i] == key) return values[i] - 1;
+        }
+    }
+
+    public void put(int key, int value) {
+        if ((size + 1) * 2 > keys.length) grow();
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            if (values[i] == 0) {
+                keys[i] = key;
+                values[i] = value + 1;
+                size++;
+                return;
+            }
+            if (keys[i] == key) {
+                values[i] = value + 1;
+                return;
+            }
+        }
+    }
+
+    // Linear probing delete: shift later entries of the cluster back instead of leaving tombstones
+    public void remove(int key) {
+        int i = slot(key);
+        while (values[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+        if (values[i] == 0) return;
+        size--;
+        for (int j = (i + 1) & mask; values[j] != 0; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            // move j back to i unless its home slot lies cyclically in (i, j]
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        values[i] = 0;
+    }
+
+    // Grows the table once so that entries keys fit without further rehashing
+    public void reserve(int entries) {
+        while (entries * 2 > keys.length) grow();
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) put(oldKeys[i], oldValues[i] - 1);
+        }
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
+
+
+// POSTING LISTS (int key -> rows holding it)
+// Each row remembers its position in its key's list, so adding, removing and
+// moving a row are all O(1).
+
+class PostingIndex {
+
+    private int[][] lists = new int[16][];
+    private int[] sizes = new int[16];
+    private int[] slotOf = new int[16]; // row -> position in its list
+
+    public int count(int key) {
+        return key >= 0 && key < sizes.length ? sizes[key] : 0;
+    }
+
+    // Copies the rows for key into out at offset; returns the offset after them
+    public int copyTo(int key, int[] out, int offset) {
+        int n = count(key);
+        if (n > 0) System.arraycopy(lists[key], 0, out, offset, n);
+        return offset + n;
+    }
+
+    public void add(int key, int row) {
+        if (key >= lists.length) {
+            int keys = Math.max(key + 1, lists.length * 2);
+            lists = Arrays.copyOf(lists, keys);
+            sizes = Arrays.copyOf(sizes, keys);
+        }
+        int[] list = lists[key];
+        if (list == null) list = lists[key] = new int[4];
+        else if (sizes[key] == list.length) list = lists[key] = Arrays.copyOf(list, list.length * 2);
+        if (row >= slotOf.length) slotOf = Arrays.copyOf(slotOf, Math.max(row + 1, slotOf.length * 2));
+        slotOf[row] = sizes[key];
+        list[sizes[key]++] = row;
+    }
+
+    // Fills the gap with the list's last row
+    public void remove(int key, int row) {
+        int[] list = lists[key];
+        int slot = slotOf[row];
+        int last = list[--sizes[key]];
+        list[slot] = last;
+        slotOf[last] = slot;
+    }
+
+    // The row at from now lives at to
+    public void move(int key, int from, int to) {
+        int slot = slotOf[from];
+        lists[key][slot] = to;
+        slotOf[to] = slot;
+    }
+}
+
+
+// COLUMNAR STUDENT STORE
+// One primitive array per field. Text is held as int codes: names and emails into
+// StringArenas, since they are nearly all distinct, the few courses into a StringDictionary.
+// Rows stay dense: removing a row moves the last row into its place.
+
+class ColumnarStudentStore {
+
+    private int[] rollNos;
+    private double[] marks;
+    private byte[] grades;
+    private int[] names;
+    private int[] emails;
+    private int[] courses;
+    private int size;
+
+    private final StringArena nameArena;
+    private final StringArena emailArena;
+    private final StringDictionary courseDict = new StringDictionary();
+    private final IntIndex rowOf;
+    private GradingScheme scheme = Student.DEFAULT_GRADING; // the grade column's codes are in this
+
+    // Optional secondary indexes, see createIndex; null until asked for
+    private PostingIndex nameIndex;
+    private PostingIndex courseIndex;
+    private PostingIndex marksIndex; // keyed by marksBucket
+
+    public ColumnarStudentStore(int expected) {
+        int capacity = Math.max(16, expected);
+        rollNos = new int[capacity];
+        marks = new double[capacity];
+        grades = new byte[capacity];
+        names = new int[capacity];
+        emails = new int[capacity];
+        courses = new int[capacity];
+        rowOf = new IntIndex(capacity);
+        nameArena = new StringArena(capacity);
+        emailArena = new StringArena(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int rollNo) {
+        return rowOf.get(rollNo) >= 0;
+    }
+
+    public int rowOf(int rollNo) {
+        return rowOf.get(rollNo);
+    }
+
+    public void add(Student s) {
+        if (size == rollNos.length) grow(size * 2);
+        rowOf.put(s.rollNo, size);
+        write(size, s);
+        index(size++);
+    }
+
+    // Sizes every column and the index for rows entries in one step
+    public void reserve(int rows) {
+        if (rows > rollNos.length) grow(rows);
+        rowOf.reserve(rows);
+    }
+
+    // Replaces the row for s.rollNo; returns false if there is none
+    public boolean update(Student s) {
+        int row = rowOf.get(s.rollNo);
+        if (row < 0) return false;
+        unindex(row);
+        int oldName = names[row], oldEmail = emails[row];
+        write(row, s);
+        nameArena.release(oldName); // after write, so an unchanged value keeps its code
+        emailArena.release(oldEmail);
+        index(row);
+        return true;
+    }
+
+    public boolean remove(int rollNo) {
+        int row = rowOf.get(rollNo);
+        if (row < 0) return false;
+        rowOf.remove(rollNo);
+        unindex(row);
+        nameArena.release(names[row]);
+        emailArena.release(emails[row]);
+        int last = --size;
+        if (row != last) {
+            if (nameIndex != null) nameIndex.move(names[last], last, row);
+            if (courseIndex != null) courseIndex.move(courses[last], last, row);
+            if (marksIndex != null) marksIndex.move(marksBucket(marks[last]), last, row);
+            rollNos[row] = rollNos[last];
+            marks[row] = marks[last];
+            grades[row] = grades[last];
+            names[row] = names[last];
+            emails[row] = emails[last];
+            courses[row] = courses[last];
+            rowOf.put(rollNos[row], row);
+        }
+        return true;
+    }
+
+    // New Student for the row, safe to keep
+    public Student get(int row) {
+        return view(row, new Student());
+    }
+
+    // Points a reusable flyweight at the row instead of allocating
+    public Student view(int row, Student flyweight) {
+        Objects.checkIndex(row, size);
+        flyweight.rollNo = rollNos[row];
+        flyweight.name = nameArena.decode(names[row]);
+        flyweight.email = emailArena.decode(emails[row]);
+        flyweight.course = courseDict.decode(courses[row]);
+        flyweight.marks = marks[row];
+        flyweight.grade = grades[row];
+        flyweight.scheme = scheme;
+        return flyweight;
+    }
+
+    // Recomputes the grade column straight from the marks column in one pass
+    public void regrade(GradingScheme scheme) {
+        this.scheme = scheme;
+        scheme.codes(marks, grades, size);
+    }
+
+    // The consumer sees one flyweight re-pointed at each row; copy it if it must outlive the call
+    public void forEach(Consumer<Student> action) {
+        Student flyweight = new Student();
+        for (int row = 0; row < size; row++) action.accept(view(row, flyweight));
+    }
+
+    // SECONDARY INDEXES
+    // Name and course are indexed by code, marks by whole-mark bucket:
+    // a range lookup returns every row in the buckets it touches and the query
+    // re-checks the exact marks afterwards.
+
+    static final int MARKS_BUCKETS = 103; // below 0, one per whole mark 0..100, above 100
+
+    static int marksBucket(double marks) {
+        if (marks < 0) return 0;
+        if (marks > 100) return MARKS_BUCKETS - 1;
+        return (int) marks + 1; // NaN lands in bucket 1 and never passes the re-check
+    }
+
+    // Builds an index over the rows already stored and keeps it up to date from then on;
+    // ROLL_NO is always indexed
+    public void createIndex(Column column) {
+        if (hasIndex(column)) return;
+        PostingIndex index = new PostingIndex();
+        for (int row = 0; row < size; row++) index.add(indexKey(column, row), row);
+        switch (column) {
+            case NAME: nameIndex = index; break;
+            case COURSE: courseIndex = index; break;
+            case MARKS: marksIndex = index; break;
+            default: throw new IllegalArgumentException("No index on " + column);
+        }
+    }
+
+    public boolean hasIndex(Column column) {
+        return column == Column.ROLL_NO || postings(column) != null;
+    }
+
+    // Rows the index on column holds for keys fromKey..toKey
+    int indexedCount(Column column, int fromKey, int toKey) {
+        PostingIndex index = postings(column);
+        int n = 0;
+        for (int key = fromKey; key <= toKey; key++) n += index.count(key);
+        return n;
+    }
+
+    int[] indexedRows(Column column, int fromKey, int toKey) {
+        PostingIndex index = postings(column);
+        int[] rows = new int[indexedCount(column, fromKey, toKey)];
+        int n = 0;
+        for (int key = fromKey; key <= toKey; key++) n = index.copyTo(key, rows, n);
+        return rows;
+    }
+
+    private PostingIndex postings(Column column) {
+        switch (column) {
+            case NAME: return nameIndex;
+            case COURSE: return courseIndex;
+            case MARKS: return marksIndex;
+            default: return null;
+        }
+    }
+
+    private int indexKey(Column column, int row) {
+        switch (column) {
+            case NAME: return names[row];
+            case COURSE: return courses[row];
+            case MARKS: return marksBucket(marks[row]);
+            default: throw new IllegalArgumentException("No index on " + column);
+        }
+    }
+
+    private void index(int row) {
+        if (nameIndex != null) nameIndex.add(names[row], row);
+        if (courseIndex != null) courseIndex.add(courses[row], row);
+        if (marksIndex != null) marksIndex.add(marksBucket(marks[row]), row);
+    }
+
+    private void unindex(int row) {
+        if (nameIndex != null) nameIndex.remove(names[row], row);
+        if (courseIndex != null) courseIndex.remove(courses[row], row);
+        if (marksIndex != null) marksIndex.remove(marksBucket(marks[row]), row);
+    }
+
+    // QUERY KERNELS
+    // Each narrows the selection sel[0..n) to the rows that pass and returns the new
+    // count. One tight loop over one primitive column, written without a branch on the
+    // test so the JIT can keep it to compares and conditional moves.
+
+    int filterRollNo(int lo, int hi, int[] sel, int n) {
+        int[] column = rollNos;
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            int row = sel[i];
+            int v = column[row];
+            sel[k] = row;
+            k += (v >= lo & v <= hi) ? 1 : 0;
+        }
+        return k;
+    }
+
+    int filterMarks(double lo, double hi, int[] sel, int n) {
+        double[] column = marks;
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            int row = sel[i];
+            double v = column[row];
+            sel[k] = row;
+            k += (v >= lo & v <= hi) ? 1 : 0;
+        }
+        return k;
+    }
+
+    // Rows whose code in column equals code
+    int filterCode(Column column, int code, int[] sel, int n) {
+        int[] codes = codeColumn(column);
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            int row = sel[i];
+            sel[k] = row;
+            k += codes[row] == code ? 1 : 0;
+        }
+        return k;
+    }
+
+    // Code of value in column, or -1 if no row holds it (courses: ever held it)
+    int codeOf(Column column, String value) {
+        switch (column) {
+            case NAME: return nameArena.find(value);
+            case EMAIL: return emailArena.find(value);
+            case COURSE: return courseDict.find(value);
+            default: throw new IllegalArgumentException(column + " is not a text column");
+        }
+    }
+
+    private int[] codeColumn(Column column) {
+        switch (column) {
+            case NAME: return names;
+            case EMAIL: return emails;
+            case COURSE: return courses;
+            default: throw new IllegalArgumentException(column + " is not a text column");
+        }
+    }
+
+    // One field of one row, boxed for query results
+    Object value(Column column, int row) {
+        switch (column) {
+            case ROLL_NO: return rollNos[row];
+            case NAME: return nameArena.decode(names[row]);
+            case EMAIL: return emailArena.decode(emails[row]);
+            case COURSE: return courseDict.decode(courses[row]);
+            case MARKS: return marks[row];
+            case GRADE: return scheme.label(grades[row]);
+            default: throw new IllegalArgumentException(String.valueOf(column));
+        }
+    }
+
+    // Orders rows by column without materialising them
+    RowComparator comparing(Column column) {
+        switch (column) {
+            case ROLL_NO: return (a, b) -> Integer.compare(rollNos[a], rollNos[b]);
+            case MARKS: return (a, b) -> Double.compare(marks[a], marks[b]);
+            case NAME: return (a, b) -> nameArena.compare(names[a], names[b]);
+            case EMAIL: return (a, b) -> emailArena.compare(emails[a], emails[b]);
+            default:
+                Comparator<String> text = Comparator.nullsFirst(Comparator.naturalOrder());
+                return (a, b) -> text.compare((String) value(column, a), (String) value(column, b));
+        }
+    }
+
+    private void write(int row, Student s) {
+        rollNos[row] = s.rollNo;
+        marks[row] = s.marks;
+        grades[row] = scheme.code(s.marks);
+        names[row] = nameArena.acquire(s.name);
+        emails[row] = emailArena.acquire(s.email);
+        courses[row] = courseDict.encode(s.course);
+    }
+
+    private void grow(int capacity) {
+        rollNos = Arrays.copyOf(rollNos, capacity);
+        marks = Arrays.copyOf(marks, capacity);
+        grades = Arrays.copyOf(grades, capacity);
+        names = Arrays.copyOf(names, capacity);
+        emails = Arrays.copyOf(emails, capacity);
+        courses = Arrays.copyOf(courses, capacity);
+    }
+}
+
+
+// QUERY ENGINE
+// A query is a filter (composable Conditions), the columns to return, an optional
+// order-by and a limit. QueryPlanner turns it into a QueryPlan: either an index lookup
+// on one of the filter's conjuncts followed by the rest of the filter, or a scan of the
+// columnar store in batches of rows. explain() says which one and why.
+
+enum Column {
+    ROLL_NO, NAME, EMAIL, COURSE, MARKS, GRADE
+}
+
+
+// Order of two rows of the columnar store, so results sort without boxing row numbers
+interface RowComparator {
+    int compare(int a, int b);
+
+    default RowComparator reversed() {
+        return (a, b) -> compare(b, a);
+    }
+
+    default RowComparator thenComparing(RowComparator next) {
+        return (a, b) -> {
+            int c = compare(a, b);
+            return c != 0 ? c : next.compare(a, b);
+        };
+    }
+}
+
+
+abstract class Condition {
+
+    public static Condition rollNo(int rollNo) {
+        return new RollNoBetween(rollNo, rollNo);
+    }
+
+    public static Condition rollNoBetween(int lo, int hi) {
+        return new RollNoBetween(lo, hi);
+    }
+
+    public static Condition name(String name) {
+        return new TextEquals(Column.NAME, name);
+    }
+
+    public static Condition email(String email) {
+        return new TextEquals(Column.EMAIL, email);
+    }
+
+    public static Condition course(String course) {
+        return new TextEquals(Column.COURSE, course);
+    }
+
+    // Inclusive on both ends
+    public static Condition marksBetween(double lo, double hi) {
+        return new MarksBetween(lo, hi);
+    }
+
+    public static Condition and(Condition... conditions) {
+        return new And(conditions);
+    }
+
+    public static Condition or(Condition... conditions) {
+        return new Or(conditions);
+    }
+
+    public static Condition not(Condition condition) {
+        return new Not(condition);
+    }
+
+    // Narrows sel[0..n) to the rows that match; returns the new count
+    abstract int filter(ColumnarStudentStore store, int[] sel, int n);
+
+    // Conditions that must all hold; an index on any one of them can drive the query
+    List<Condition> conjuncts() {
+        return List.of(this);
+    }
+
+    // Rows an index lookup would return for this condition, or -1 if no index covers it
+    int indexEstimate(ColumnarStudentStore store) {
+        return -1;
+    }
+
+    // Those rows; a superset of the matches, so the whole filter still runs over them
+    int[] indexLookup(ColumnarStudentStore store) {
+        throw new UnsupportedOperationException("No index for " + this);
+    }
+
+    // Moves the rows of all[0..n) that are not in matched[0..m) to the front of all and
+    // returns how many there are. matched must be an in-order subsequence of all, which
+    // every filter guarantees.
+    static int without(int[] all, int n, int[] matched, int m) {
+        int k = 0;
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (j < m && matched[j] == all[i]) j++;
+            else all[k++] = all[i];
+        }
+        return k;
+    }
+
+    private static final class RollNoBetween extends Condition {
+        private final int lo;
+        private final int hi;
+
+        RollNoBetween(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        int filter(ColumnarStudentStore store, int[] sel, int n) {
+            return store.filterRollNo(lo, hi, sel, n);
+        }
+
+        // The roll number index is a hash, so it only serves single values
+        int indexEstimate(ColumnarStudentStore store) {
+            if (lo != hi) return -1;
+            return store.contains(lo) ? 1 : 0;
+        }
+
+        int[] indexLookup(ColumnarStudentStore store) {
+            int row = store.rowOf(lo);
+            return row < 0 ? new int[0] : new int[] {row};
+        }
+
+        public String toString() {
+            return lo == hi ? "ROLL_NO = " + lo : "ROLL_NO BETWEEN " + lo + " AND " + hi;
+        }
+    }
+
+    private static final class TextEquals extends Condition {
+        private final Column column;
+        private final String value;
+
+        TextEquals(Column column, String value) {
+            this.column = column;
+            this.value = value;
+        }
+
+        int filter(ColumnarStudentStore store, int[] sel, int n) {
+            int code = store.codeOf(column, value);
+            return code < 0 ? 0 : store.filterCode(column, code, sel, n);
+        }
+
+        int indexEstimate(ColumnarStudentStore store) {
+            if (column == Column.EMAIL || !store.hasIndex(column)) return -1;
+            int code = store.codeOf(column, value);
+            return code < 0 ? 0 : store.indexedCount(column, code, code);
+        }
+
+        int[] indexLookup(ColumnarStudentStore store) {
+            int code = store.codeOf(column, value);
+            return code < 0 ? new int[0] : store.indexedRows(column, code, code);
+        }
+
+        public String toString() {
+            return column + " = " + (value == null ? "null" : "\"" + value + "\"");
+        }
+    }
+
+    private static final class MarksBetween extends Condition {
+        private final double lo;
+        private final double hi;
+
+        MarksBetween(double lo, double hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        int filter(ColumnarStudentStore store, int[] sel, int n) {
+            return store.filterMarks(lo, hi, sel, n);
+        }
+
+        int indexEstimate(ColumnarStudentStore store) {
+            if (!store.hasIndex(Column.MARKS)) return -1;
+            if (!(lo <= hi)) return 0;
+            return store.indexedCount(Column.MARKS, ColumnarStudentStore.marksBucket(lo), ColumnarStudentStore.marksBucket(hi));
+        }
+
+        int[] indexLookup(ColumnarStudentStore store) {
+            if (!(lo <= hi)) return new int[0];
+            return store.indexedRows(Column.MARKS, ColumnarStudentStore.marksBucket(lo), ColumnarStudentStore.marksBucket(hi));
+        }
+
+        public String toString() {
+            return "MARKS BETWEEN " + lo + " AND " + hi;
+        }
+    }
+
+    private static final class And extends Condition {
+        private final Condition[] parts;
+
+        And(Condition[] parts) {
+            this.parts = parts.clone();
+        }
+
+        // Each part only looks at the rows the previous ones kept
+        int filter(ColumnarStudentStore store, int[] sel, int n) {
+            for (Condition part : parts) {
+                if (n == 0) break;
+                n = part.filter(store, sel, n);
+            }
+            return n;
+        }
+
+        List<Condition> conjuncts() {
+            List<Condition> all = new ArrayList<>();
+            for (Condition part : parts) all.addAll(part.conjuncts());
+            return all;
+        }
+
+        public String toString() {
+            return join(parts, " AND ");
+        }
+    }
+
+    private static final class Or extends Condition {
+        private final Condition[] parts;
+
+        Or(Condition[] parts) {
+            this.parts = parts.clone();
+        }
+
+        // Each part tests only the rows no earlier part matched; whatever is left over at
+        // the end is taken out of sel, which keeps the matches in their original order
+        int filter(ColumnarStudentStore store, int[] sel, int n) {
+            int[] rest = Arrays.copyOf(sel, n);
+            int[] trial = new int[n];
+            int remaining = n;
+            for (Condition part : parts) {
+                if (remaining == 0) break;
+                System.arraycopy(rest, 0, trial, 0, remaining);
+                int m = part.filter(store, trial, remaining);
+                remaining = without(rest, remaining, trial, m);
+            }
+            return without(sel, n, rest, remaining);
+        }
+
+        public String toString() {
+            return "(" + join(parts, " OR ") + ")";
+        }
+    }
+
+    private static final class Not extends Condition {
+        private final Condition inner;
+
+        Not(Condition inner) {
+            this.inner = inner;
+        }
+
+        int filter(ColumnarStudentStore store, int[] sel, int n) {
+            int[] matched = Arrays.copyOf(sel, n);
+            int m = inner.filter(store, matched, n);
+            return without(sel, n, matched, m);
+        }
+
+        public String toString() {
+            return "NOT " + inner;
+        }
+    }
+
+    private static String join(Condition[] parts, String separator) {
+        StringJoiner joiner = new StringJoiner(separator);
+        for (Condition part : parts) joiner.add(String.valueOf(part));
+        return joiner.toString();
+    }
+}
+
+
+class StudentQuery {
+
+    Condition where;               // null matches every row
+    Column[] columns = Column.values();
+    Column orderBy;                // null leaves the order unspecified
+    boolean descending;
+    int limit = Integer.MAX_VALUE;
+
+    public StudentQuery where(Condition condition) {
+        where = condition;
+        return this;
+    }
+
+    public StudentQuery select(Column... selected) {
+        if (selected.length == 0) throw new IllegalArgumentException("Select at least one column");
+        columns = selected.clone();
+        return this;
+    }
+
+    public StudentQuery orderBy(Column column, boolean descending) {
+        orderBy = column;
+        this.descending = descending;
+        return this;
+    }
+
+    public StudentQuery limit(int limit) {
+        if (limit < 0) throw new IllegalArgumentException("Negative limit: " + limit);
+        this.limit = limit;
+        return this;
+    }
+}
+
+
+class QueryPlan {
+
+    final StudentQuery query;
+    final Condition index;   // conjunct whose index supplies the candidate rows, null for a scan
+    final int candidates;    // rows the index or the scan will feed to the filter
+    final String reason;
+
+    QueryPlan(StudentQuery query, Condition index, int candidates, String reason) {
+        this.query = query;
+        this.index = index;
+        this.candidates = candidates;
+        this.reason = reason;
+    }
+
+    public String explain() {
+        StringBuilder sb = new StringBuilder();
+        if (index != null) sb.append("index lookup on ").append(index).append(": ").append(candidates).append(" candidate rows");
+        else sb.append("scan ").append(candidates).append(" rows in batches of ").append(QueryPlanner.BATCH);
+        sb.append(" (").append(reason).append(")\n");
+        if (query.where != null) sb.append("  filter ").append(query.where).append('\n');
+        if (query.orderBy != null) {
+            sb.append("  order by ").append(query.orderBy).append(query.descending ? " desc" : " asc");
+            if (query.limit != Integer.MAX_VALUE) sb.append(", keep top ").append(query.limit);
+            sb.append('\n');
+        } else if (query.limit != Integer.MAX_VALUE) {
+            sb.append("  stop after ").append(query.limit).append(" rows\n");
+        }
+        sb.append("  project ").append(Arrays.toString(query.columns)).append('\n');
+        return sb.toString();
+    }
+}
+
+
+class QueryResult {
+
+    final List<Column> columns;
+    final List<Object[]> rows;
+    final QueryPlan plan;
+
+    QueryResult(List<Column> columns, List<Object[]> rows, QueryPlan plan) {
+        this.columns = columns;
+        this.rows = rows;
+        this.plan = plan;
+    }
+
+    public void print() {
+        if (rows.isEmpty()) {
+            System.out.println("No records found.");
+            return;
+        }
+        StringJoiner header = new StringJoiner(" | ");
+        for (Column c : columns) header.add(c.name());
+        System.out.println(header);
+        for (Object[] row : rows) {
+            StringJoiner line = new StringJoiner(" | ");
+            for (Object value : row) line.add(String.valueOf(value));
+            System.out.println(line);
+        }
+        System.out.println("(" + rows.size() + " rows)");
+    }
+}
+
+
+class QueryPlanner {
+
+    static final int BATCH = 1024;
+
+    // Index lookups touch rows in no particular order, so a scan wins unless the index
+    // cuts the rows to at most this share of the roster
+    private static final int SCAN_FRACTION = 4;
+
+    public static QueryPlan plan(ColumnarStudentStore store, StudentQuery query) {
+        int size = store.size();
+        if (query.where == null) return new QueryPlan(query, null, size, "no filter");
+        Condition best = null;
+        int bestRows = Integer.MAX_VALUE;
+        for (Condition c : query.where.conjuncts()) {
+            int rows = c.indexEstimate(store);
+            if (rows >= 0 && rows < bestRows) {
+                best = c;
+                bestRows = rows;
+            }
+        }
+        if (best == null) return new QueryPlan(query, null, size, "no index covers the filter");
+        if ((long) bestRows * SCAN_FRACTION > size) {
+            return new QueryPlan(query, null, size, "index on " + best + " would return " + bestRows + " rows, scanning is cheaper");
+        }
+        return new QueryPlan(query, best, bestRows, "most selective index");
+    }
+
+    public static QueryResult execute(ColumnarStudentStore store, StudentQuery query) {
+        QueryPlan plan = plan(store, query);
+        int[] matches = match(store, plan);
+        int n = matches.length;
+        int[] order;
+        if (query.orderBy != null) {
+            RowComparator cmp = store.comparing(query.orderBy);
+            if (query.descending) cmp = cmp.reversed();
+            cmp = cmp.thenComparing(store.comparing(Column.ROLL_NO)); // ties ascending either way
+            order = sorted(matches, Math.min(n, query.limit), cmp);
+        } else {
+            order = Arrays.copyOf(matches, Math.min(n, query.limit));
+        }
+        List<Object[]> rows = new ArrayList<>(order.length);
+        for (int row : order) {
+            Object[] values = new Object[query.columns.length];
+            for (int c = 0; c < values.length; c++) values[c] = store.value(query.columns[c], row);
+            rows.add(values);
+        }
+        return new QueryResult(List.of(query.columns), rows, plan);
+    }
+
+    // Rows passing the filter. Without an order-by the limit is pushed down into the scan.
+    private static int[] match(ColumnarStudentStore store, QueryPlan plan) {
+        StudentQuery query = plan.query;
+        int wanted = query.orderBy == null ? query.limit : Integer.MAX_VALUE;
+        int[] candidates = plan.index != null ? plan.index.indexLookup(store) : null;
+        int total = candidates != null ? candidates.length : store.size();
+        int[] out = new int[Math.min(total, Math.min(wanted, BATCH))];
+        int[] sel = new int[BATCH];
+        int found = 0;
+        for (int base = 0; base < total && found < wanted; base += BATCH) {
+            int n = Math.min(BATCH, total - base);
+            if (candidates != null) System.arraycopy(candidates, base, sel, 0, n);
+            else for (int i = 0; i < n; i++) sel[i] = base + i;
+            if (query.where != null) n = query.where.filter(store, sel, n);
+            n = Math.min(n, wanted - found);
+            if (found + n > out.length) out = Arrays.copyOf(out, Math.max(found + n, Math.min(total, out.length * 2)));
+            System.arraycopy(sel, 0, out, found, n);
+            found += n;
+        }
+        return out.length == found ? out : Arrays.copyOf(out, found);
+    }
+
+    // The first k rows in cmp order; a bounded heap when k is small next to the matches.
+    // rows belongs to the caller and may be sorted in place.
+    private static int[] sorted(int[] rows, int k, RowComparator cmp) {
+        if (k == 0) return new int[0];
+        if ((long) k * 8 < rows.length) {
+            // max-heap of the best k so far, its root the one to drop first
+            int[] heap = Arrays.copyOf(rows, k);
+            for (int i = k / 2 - 1; i >= 0; i--) siftDown(heap, i, k, cmp);
+            for (int i = k; i < rows.length; i++) {
+                if (cmp.compare(rows[i], heap[0]) < 0) {
+                    heap[0] = rows[i];
+                    siftDown(heap, 0, k, cmp);
+                }
+            }
+            sort(heap, cmp);
+            return heap;
+        }
+        sort(rows, cmp);
+        return rows.length == k ? rows : Arrays.copyOf(rows, k);
+    }
+
+    private static void siftDown(int[] heap, int i, int n, RowComparator cmp) {
+        int row = heap[i];
+        for (int child; (child = 2 * i + 1) < n; i = child) {
+            if (child + 1 < n && cmp.compare(heap[child + 1], heap[child]) > 0) child++;
+            if (cmp.compare(heap[child], row) <= 0) break;
+            heap[i] = heap[child];
+        }
+        heap[i] = row;
+    }
+
+    // Merge sort, so a costly comparator (text columns) runs O(n log n) times whatever the data
+    private static void sort(int[] rows, RowComparator cmp) {
+        mergeSort(rows.clone(), rows, 0, rows.length, cmp);
+    }
+
+    // Sorts [from, to) into dst; src holds the same rows there and is used as scratch
+    private static void mergeSort(int[] src, int[] dst, int from, int to, RowComparator cmp) {
+        if (to - from <= 16) {
+            for (int i = from + 1; i < to; i++) {
+                int row = dst[i];
+                int j = i;
+                for (; j > from && cmp.compare(dst[j - 1], row) > 0; j--) dst[j] = dst[j - 1];
+                dst[j] = row;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(dst, src, from, mid, cmp);
+        mergeSort(dst, src, mid, to, cmp);
+        if (cmp.compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, from, dst, from, to - from);
+            return;
+        }
+        for (int i = from, p = from, q = mid; i < to; i++) {
+            if (q >= to || (p < mid && cmp.compare(src[p], src[q]) <= 0)) dst[i] = src[p++];
+            else dst[i] = src[q++];
+        }
+    }
+}
+
+
+// STUDENT MANAGER BACKED BY THE COLUMNAR STORE
+
+class ColumnarStudentManager implements RecordActions {
+
+    private static final ActionTimers TIMERS = new ActionTimers("columnar");
+
+    private final ColumnarStudentStore store;
+
+    private final ChangeFeed feed = new ChangeFeed();
+
+    public ColumnarStudentManager(int expected) {
+        store = new ColumnarStudentStore(expected);
+    }
+
+    public ChangeFeed changes() {
+        return feed;
+    }
+
+    // The stored student as a new object, graded as stored; null if there is none
+    private Student stored(int rollNo) {
+        int row = store.rowOf(rollNo);
+        return row < 0 ? null : store.get(row);
+    }
+
+    public void addStudent(Student s) {
+        long t = TIMERS.add.start();
+        try {
+            if (store.contains(s.rollNo)) {
+                System.out.println("Duplicate Roll Number! Student NOT added.");
+                return;
+            }
+            store.add(s);
+            feed.publish(ChangeEvent.Type.ADD, s.rollNo, null, stored(s.rollNo));
+            System.out.println("Student added successfully.");
+        } finally {
+            TIMERS.add.stop(t);
+        }
+    }
+
+    public void deleteStudent(int rollNo) {
+        long t = TIMERS.delete.start();
+        try {
+            Student old = stored(rollNo);
+            if (old != null) {
+                store.remove(rollNo);
+                feed.publish(ChangeEvent.Type.DELETE, rollNo, old, null);
+                System.out.println("Student removed successfully.");
+            } else {
+                System.out.println("Student not found.");
+            }
+        } finally {
+            TIMERS.delete.stop(t);
+        }
+    }
+
+    public void updateStudent(int rollNo, Student newData) {
+        long t = TIMERS.update.start();
+        try {
+            Student old = stored(rollNo);
+            if (old == null) {
+                System.out.println("Student not found!");
+                return;
+            }
+            if (newData.rollNo != rollNo) {
+                if (store.contains(newData.rollNo)) {
+                    System.out.println("Duplicate Roll Number! Student NOT updated.");
+                    return;
+                }
+                store.remove(rollNo);
+                store.add(newData);
+                // stored under another roll number now, so subscribers see it move
+                feed.publish(ChangeEvent.Type.DELETE, rollNo, old, null);
+                feed.publish(ChangeEvent.Type.ADD, newData.rollNo, null, stored(newData.rollNo));
+            } else {
+                store.update(newData);
+                feed.publish(ChangeEvent.Type.UPDATE, rollNo, old, stored(rollNo));
+            }
+            System.out.println("Student updated successfully.");
+        } finally {
+            TIMERS.update.stop(t);
+        }
+    }
+
+    public Student searchStudent(int rollNo) {
+        long t = TIMERS.search.start();
+        try {
+            int row = store.rowOf(rollNo);
+            return row < 0 ? null : store.get(row);
+        } finally {
+            TIMERS.search.stop(t);
+        }
+    }
+
+    public void viewAllStudents() {
+        long t = TIMERS.viewAll.start();
+        try {
+            if (store.size() == 0) {
+                System.out.println("No records found.");
+                return;
+            }
+
+            store.forEach(Student::displayInfo);
+        } finally {
+            TIMERS.viewAll.stop(t);
+        }
+    }
+
+    public void regrade(GradingScheme scheme) {
+        long t = TIMERS.regrade.start();
+        try {
+            store.regrade(scheme);
+        } finally {
+            TIMERS.regrade.stop(t);
+        }
+    }
+
+    // Ad-hoc lookups, e.g. course = "M.Tech" and marks between 75 and 90, best first:
+    //   query(new StudentQuery().where(Condition.and(Condition.course("M.Tech"), Condition.marksBetween(75, 90)))
+    //           .orderBy(Column.MARKS, true).limit(10))
+    public QueryResult query(StudentQuery query) {
+        return QueryPlanner.execute(store, query);
+    }
+
+    public String explain(StudentQuery query) {
+        return QueryPlanner.plan(store, query).explain();
+    }
+
+    // Lets the planner answer filters on column from an index instead of a scan
+    public void createIndex(Column column) {
+        store.createIndex(column);
+    }
+
+    public BatchStatus[] addAll(List<Student> batch) {
+        long t = TIMERS.addAll.start();
+        try {
+            BatchStatus[] status = new BatchStatus[batch.size()];
+            IntIndex seen = new IntIndex(batch.size());
+            int accepted = 0;
+            for (int i = 0; i < status.length; i++) {
+                Student s = batch.get(i);
+                if (!BatchStatus.isValid(s)) status[i] = BatchStatus.INVALID;
+                else if (store.contains(s.rollNo) || seen.get(s.rollNo) >= 0) status[i] = BatchStatus.DUPLICATE;
+                else {
+                    seen.put(s.rollNo, i);
+                    status[i] = BatchStatus.OK;
+                    accepted++;
+                }
+            }
+            store.reserve(store.size() + accepted);
+            for (int i = 0; i < status.length; i++) {
+                if (status[i] != BatchStatus.OK) continue;
+                int rollNo = batch.get(i).rollNo;
+                store.add(batch.get(i));
+                feed.publish(ChangeEvent.Type.ADD, rollNo, null, stored(rollNo));
+            }
+            return status;
+        } finally {
+            TIMERS.addAll.stop(t);
+        }
+    }
+
+    public BatchStatus[] updateAll(List<Student> batch) {
+        long t = TIMERS.updateAll.start();
+        try {
+            BatchStatus[] status = new BatchStatus[batch.size()];
+            for (int i = 0; i < status.length; i++) {
+                Student s = batch.get(i);
+                if (!BatchStatus.isValid(s)) status[i] = BatchStatus.INVALID;
+                else if (!store.contains(s.rollNo)) status[i] = BatchStatus.NOT_FOUND;
+                else status[i] = BatchStatus.OK;
+            }
+            for (int i = 0; i < status.length; i++) {
+                if (status[i] != BatchStatus.OK) continue;
+                int rollNo = batch.get(i).rollNo;
+                Student old = stored(rollNo);
+                store.update(batch.get(i));
+                feed.publish(ChangeEvent.Type.UPDATE, rollNo, old, stored(rollNo));
+            }
+            return status;
+        } finally {
+            TIMERS.updateAll.stop(t);
+        }
+    }
+
+    public BatchStatus[] deleteAll(Collection<Integer> rollNos) {
+        long t = TIMERS.deleteAll.start();
+        try {
+            BatchStatus[] status = new BatchStatus[rollNos.size()];
+            int i = 0;
+            for (int rollNo : rollNos) {
+                Student old = stored(rollNo);
+                if (old != null) {
+                    store.remove(rollNo);
+                    feed.publish(ChangeEvent.Type.DELETE, rollNo, old, null);
+                }
+                status[i++] = old != null ? BatchStatus.OK : BatchStatus.NOT_FOUND;
+            }
+            return status;
+        } finally {
+            TIMERS.deleteAll.stop(t);
+        }
+    }
+}
+
+
+// OFF-HEAP MEMORY
+// Direct ByteBuffers addressed by a long offset. A small region is one buffer that is
+// reallocated as it grows; past PAGE_SIZE it becomes a list of full pages, so it is not
+// limited to 2 GB. Callers keep every value inside one page: fixed-width items have
+// power-of-two sizes and strings are placed so they never cross a page boundary.
+// Total size is capped by -XX:MaxDirectMemorySize (by default the maximum heap size).
+
+class OffHeapMemory {
+
+    static final int PAGE_SHIFT = 26;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT; // 64 MiB
+
+    private ByteBuffer[] pages;
+    private int shift;
+    private int mask;
+
+    public OffHeapMemory(long bytes) {
+        int size = (int) Math.min(PAGE_SIZE, roundUp(Math.max(64, bytes)));
+        pages = new ByteBuffer[] {allocate(size)};
+        shift = Integer.numberOfTrailingZeros(size);
+        mask = size - 1;
+        ensure(bytes);
+    }
+
+    public long capacity() {
+        return (long) pages.length << shift;
+    }
+
+    // New memory is zeroed
+    public void ensure(long bytes) {
+        if (bytes <= capacity()) return;
+        if (shift < PAGE_SHIFT) {
+            int size = (int) Math.min(PAGE_SIZE, roundUp(bytes));
+            ByteBuffer bigger = allocate(size);
+            bigger.put(pages[0].clear()).clear();
+            pages[0] = bigger;
+            shift = Integer.numberOfTrailingZeros(size);
+            mask = size - 1;
+            if (bytes <= capacity()) return;
+        }
+        int old = pages.length;
+        pages = Arrays.copyOf(pages, (int) ((bytes + PAGE_SIZE - 1) >>> PAGE_SHIFT));
+        for (int i = old; i < pages.length; i++) pages[i] = allocate(PAGE_SIZE);
+    }
+
+    public byte getByte(long at) {
+        return page(at).get(offset(at));
+    }
+
+    public void putByte(long at, byte value) {
+        page(at).put(offset(at), value);
+    }
+
+    public int getInt(long at) {
+        return page(at).getInt(offset(at));
+    }
+
+    public void putInt(long at, int value) {
+        page(at).putInt(offset(at), value);
+    }
+
+    public double getDouble(long at) {
+        return page(at).getDouble(offset(at));
+    }
+
+    public void putDouble(long at, double value) {
+        page(at).putDouble(offset(at), value);
+    }
+
+    public void getBytes(long at, byte[] dst, int length) {
+        page(at).get(offset(at), dst, 0, length);
+    }
+
+    public void putBytes(long at, byte[] src, int length) {
+        page(at).put(offset(at), src, 0, length);
+    }
+
+    private ByteBuffer page(long at) {
+        return pages[(int) (at >>> shift)];
+    }
+
+    private int offset(long at) {
+        return (int) at & mask;
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+
+    private static long roundUp(long bytes) {
+        return Long.highestOneBit(bytes - 1) << 1;
+    }
+}
+
+
+// OFF-HEAP INT -> INT INDEX
+// Same linear probing and backward-shift delete as IntIndex, with the table in direct memory.
+
+class OffHeapIntIndex {
+
+    private static final int MISSING = -1;
+    private static final int ENTRY = 8; // int key, int value + 1 (0 marks an empty slot)
+
+    private OffHeapMemory table;
+    private int capacity;
+    private int size;
+
+    public OffHeapIntIndex(int expected) {
+        capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        table = new OffHeapMemory((long) capacity * ENTRY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Returns the value for key, or -1
+    public int get(int key) {
+        for (int i = slot(key); ; i = next(i)) {
+            int value = value(i);
+            if (value == 0) return MISSING;
+            if (key(i) == key) return value - 1;
+        }
+    }
+
+    public void put(int key, int value) {
+        if ((size + 1) * 2L > capacity) grow();
+        for (int i = slot(key); ; i = next(i)) {
+            if (value(i) == 0) {
+                set(i, key, value + 1);
+                size++;
+                return;
+            }
+            if (key(i) == key) {
+                set(i, key, value + 1);
+                return;
+            }
+        }
+    }
+
+    public void remove(int key) {
+        int i = slot(key);
+        while (value(i) != 0 && key(i) != key) i = next(i);
+        if (value(i) == 0) return;
+        size--;
+        for (int j = next(i); value(j) != 0; j = next(j)) {
+            int home = slot(key(j));
+            // move j back to i unless its home slot lies cyclically in (i, j]
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                set(i, key(j), value(j));
+                i = j;
+            }
+        }
+        set(i, 0, 0);
+    }
+
+    // Grows the table once so that entries keys fit without further rehashing
+    public void reserve(int entries) {
+        while (entries * 2L > capacity) grow();
+    }
+
+    private void grow() {
+        OffHeapMemory old = table;
+        int oldCapacity = capacity;
+        capacity *= 2;
+        table = new OffHeapMemory((long) capacity * ENTRY);
+        size = 0;
+        for (int i = 0; i < oldCapacity; i++) {
+            int value = old.getInt((long) i * ENTRY + 4);
+            if (value != 0) put(old.getInt((long) i * ENTRY), value - 1);
+        }
+    }
+
+    private int key(int i) {
+        return table.getInt((long) i * ENTRY);
+    }
+
+    private int value(int i) {
+        return table.getInt((long) i * ENTRY + 4);
+    }
+
+    private void set(int i, int key, int value) {
+        table.putInt((long) i * ENTRY, key);
+        table.putInt((long) i * ENTRY + 4, value);
+    }
+
+    private int next(int i) {
+        return (i + 1) & (capacity - 1);
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (capacity - 1);
+    }
+}
+
+
+// OFF-HEAP STRING ARENA
+// Each distinct string is stored once as UTF-8 and named by an int ref (its offset / 8).
+// An off-heap table of refs interns them, so a course shared by a million students takes
+// one entry. Nothing is freed one by one; the store compacts by copying live strings
+// into a new arena. Ref -1 stands for null.
+
+class OffHeapStringArena {
+
+    private static final int ALIGN = 8;
+    private static final int HEADER = 8; // int hash, int UTF-8 length
+
+    private final OffHeapMemory bytes;
+    private long end;
+
+    private OffHeapMemory table; // int ref + 1 per slot, 0 marks an empty slot
+    private int capacity = 1024;
+    private int count;
+
+    private byte[] scratch = new byte[64];
+
+    public OffHeapStringArena(long expectedBytes) {
+        bytes = new OffHeapMemory(expectedBytes);
+        table = new OffHeapMemory((long) capacity * 4);
+    }
+
+    public long usedBytes() {
+        return end;
+    }
+
+    public int intern(String value) {
+        if (value == null) return -1;
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        return intern(utf8, utf8.length);
+    }
+
+    // Interns a string of another arena without turning it into a String first
+    public int copyFrom(OffHeapStringArena other, int ref) {
+        if (ref < 0) return -1;
+        int length = other.load(ref);
+        return intern(other.scratch, length);
+    }
+
+    public String decode(int ref) {
+        if (ref < 0) return null;
+        int length = load(ref); // may replace scratch
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private int intern(byte[] utf8, int length) {
+        int hash = hash(utf8, length);
+        if ((count + 1) * 2 > capacity) growTable();
+        for (int i = hash & (capacity - 1); ; i = (i + 1) & (capacity - 1)) {
+            int ref = table.getInt((long) i * 4) - 1;
+            if (ref < 0) {
+                ref = append(utf8, length, hash);
+                table.putInt((long) i * 4, ref + 1);
+                count++;
+                return ref;
+            }
+            if (matches(ref, hash, utf8, length)) return ref;
+        }
+    }
+
+    private int append(byte[] utf8, int length, int hash) {
+        int size = HEADER + length;
+        if (size > OffHeapMemory.PAGE_SIZE) throw new IllegalArgumentException("String too long for the arena");
+        long at = end;
+        if ((at >>> OffHeapMemory.PAGE_SHIFT) != ((at + size - 1) >>> OffHeapMemory.PAGE_SHIFT)) {
+            at = (at >>> OffHeapMemory.PAGE_SHIFT) + 1 << OffHeapMemory.PAGE_SHIFT;
+        }
+        if (at >>> 3 > Integer.MAX_VALUE) throw new IllegalStateException("String arena is full");
+        bytes.ensure(at + size);
+        bytes.putInt(at, hash);
+        bytes.putInt(at + 4, length);
+        bytes.putBytes(at + HEADER, utf8, length);
+        end = (at + size + ALIGN - 1) & -ALIGN;
+        return (int) (at >>> 3);
+    }
+
+    private boolean matches(int ref, int hash, byte[] utf8, int length) {
+        long at = (long) ref << 3;
+        if (bytes.getInt(at) != hash || bytes.getInt(at + 4) != length) return false;
+        load(ref);
+        return Arrays.equals(utf8, 0, length, scratch, 0, length);
+    }
+
+    // Copies the string's bytes into scratch and returns their count
+    private int load(int ref) {
+        long at = (long) ref << 3;
+        int length = bytes.getInt(at + 4);
+        if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        bytes.getBytes(at + HEADER, scratch, length);
+        return length;
+    }
+
+    private void growTable() {
+        OffHeapMemory old = table;
+        int oldCapacity = capacity;
+        capacity *= 2;
+        table = new OffHeapMemory((long) capacity * 4);
+        for (int i = 0; i < oldCapacity; i++) {
+            int ref = old.getInt((long) i * 4) - 1;
+            if (ref < 0) continue;
+            int j = bytes.getInt((long) ref << 3) & (capacity - 1);
+            while (table.getInt((long) j * 4) != 0) j = (j + 1) & (capacity - 1);
+            table.putInt((long) j * 4, ref + 1);
+        }
+    }
+
+    private static int hash(byte[] utf8, int length) {
+        int h = 1;
+        for (int i = 0; i < length; i++) h = 31 * h + utf8[i];
+        return h ^ (h >>> 16);
+    }
+}
+
+
+// OFF-HEAP STUDENT STORE
+// Fixed-width 32-byte records in direct memory, strings in an OffHeapStringArena and an
+// off-heap rollNo -> slot index, so the heap holds the same few objects however large the
+// roster grows. Deleting only marks a slot dead; compact() copies the live records and
+// their strings into fresh memory and rebuilds the index.
+
+class OffHeapStudentStore {
+
+    // Record layout
+    private static final int RECORD = 32;
+    private static final int ROLL_NO = 0;
+    private static final int NAME = 4;
+    private static final int EMAIL = 8;
+    private static final int COURSE = 12;
+    private static final int MARKS = 16;
+    private static final int GRADE = 24;
+    private static final int LIVE = 25;
+
+    private OffHeapMemory records;
+    private OffHeapStringArena strings;
+    private OffHeapIntIndex slotOf;
+    private int slots; // live and dead
+    private int dead;
+    private GradingScheme scheme = Student.DEFAULT_GRADING; // the GRADE bytes are codes in this
+
+    public OffHeapStudentStore(int expected) {
+        int capacity = Math.max(16, expected);
+        records = new OffHeapMemory((long) capacity * RECORD);
+        strings = new OffHeapStringArena((long) capacity * 32);
+        slotOf = new OffHeapIntIndex(capacity);
+    }
+
+    public int size() {
+        return slots - dead;
+    }
+
+    public int deadSlots() {
+        return dead;
+    }
+
+    // Bytes held off-heap by records and strings, live or not
+    public long offHeapBytes() {
+        return (long) slots * RECORD + strings.usedBytes();
+    }
+
+    public boolean contains(int rollNo) {
+        return slotOf.get(rollNo) >= 0;
+    }
+
+    public int slotOf(int rollNo) {
+        return slotOf.get(rollNo);
+    }
+
+    public void add(Student s) {
+        records.ensure((long) (slots + 1) * RECORD);
+        slotOf.put(s.rollNo, slots);
+        write(slots++, s);
+    }
+
+    // Sizes the records and the index for rows live entries in one step
+    public void reserve(int rows) {
+        records.ensure((long) (rows + dead) * RECORD);
+        slotOf.reserve(rows);
+    }
+
+    // Rewrites the slot for s.rollNo; returns false if there is none
+    public boolean update(Student s) {
+        int slot = slotOf.get(s.rollNo);
+        if (slot < 0) return false;
+        write(slot, s);
+        return true;
+    }
+
+    public boolean remove(int rollNo) {
+        int slot = slotOf.get(rollNo);
+        if (slot < 0) return false;
+        slotOf.remove(rollNo);
+        records.putByte((long) slot * RECORD + LIVE, (byte) 0);
+        dead++;
+        return true;
+    }
+
+    // New Student for the slot, safe to keep
+    public Student get(int slot) {
+        return view(slot, new Student());
+    }
+
+    // Points a reusable flyweight at the slot instead of allocating a Student
+    public Student view(int slot, Student flyweight) {
+        Objects.checkIndex(slot, slots);
+        long at = (long) slot * RECORD;
+        flyweight.rollNo = records.getInt(at + ROLL_NO);
+        flyweight.name = strings.decode(records.getInt(at + NAME));
+        flyweight.email = strings.decode(records.getInt(at + EMAIL));
+        flyweight.course = strings.decode(records.getInt(at + COURSE));
+        flyweight.marks = records.getDouble(at + MARKS);
+        flyweight.grade = records.getByte(at + GRADE);
+        flyweight.scheme = scheme;
+        return flyweight;
+    }
+
+    // The consumer sees one flyweight re-pointed at each live slot; copy it if it must outlive the call
+    public void forEach(Consumer<Student> action) {
+        Student flyweight = new Student();
+        for (int slot = 0; slot < slots; slot++) {
+            if (live(slot)) action.accept(view(slot, flyweight));
+        }
+    }
+
+    public void regrade(GradingScheme scheme) {
+        this.scheme = scheme;
+        for (long at = 0; at < (long) slots * RECORD; at += RECORD) {
+            records.putByte(at + GRADE, scheme.code(records.getDouble(at + MARKS)));
+        }
+    }
+
+    // Drops dead slots and the strings only they used. The old memory is released
+    // once the garbage collector clears its buffers.
+    public void compact() {
+        int live = size();
+        OffHeapMemory packed = new OffHeapMemory((long) Math.max(16, live) * RECORD);
+        OffHeapStringArena packedStrings = new OffHeapStringArena(Math.max(64, strings.usedBytes()));
+        OffHeapIntIndex packedIndex = new OffHeapIntIndex(Math.max(16, live));
+        int to = 0;
+        for (int from = 0; from < slots; from++) {
+            if (!live(from)) continue;
+            long src = (long) from * RECORD;
+            long dst = (long) to * RECORD;
+            int rollNo = records.getInt(src + ROLL_NO);
+            packed.putInt(dst + ROLL_NO, rollNo);
+            packed.putInt(dst + NAME, packedStrings.copyFrom(strings, records.getInt(src + NAME)));
+            packed.putInt(dst + EMAIL, packedStrings.copyFrom(strings, records.getInt(src + EMAIL)));
+            packed.putInt(dst + COURSE, packedStrings.copyFrom(strings, records.getInt(src + COURSE)));
+            packed.putDouble(dst + MARKS, records.getDouble(src + MARKS));
+            packed.putByte(dst + GRADE, records.getByte(src + GRADE));
+            packed.putByte(dst + LIVE, (byte) 1);
+            packedIndex.put(rollNo, to++);
+        }
+        records = packed;
+        strings = packedStrings;
+        slotOf = packedIndex;
+        slots = to;
+        dead = 0;
+    }
+
+    private boolean live(int slot) {
+        return records.getByte((long) slot * RECORD + LIVE) != 0;
+    }
+
+    // Overwritten strings stay in the arena until the next compaction
+    private void write(int slot, Student s) {
+        long at = (long) slot * RECORD;
+        records.putInt(at + ROLL_NO, s.rollNo);
+        records.putInt(at + NAME, strings.intern(s.name));
+        records.putInt(at + EMAIL, strings.intern(s.email));
+        records.putInt(at + COURSE, strings.intern(s.course));
+        records.putDouble(at + MARKS, s.marks);
+        records.putByte(at + GRADE, scheme.code(s.marks));
+        records.putByte(at + LIVE, (byte) 1);
+    }
+}
+
+
+// STUDENT MANAGER BACKED BY THE OFF-HEAP STORE
+
+class OffHeapStudentManager implements RecordActions {
+
+    private static final ActionTimers TIMERS = new ActionTimers("offheap");
+
+    private final OffHeapStudentStore store;
+
+    private final ChangeFeed feed = new ChangeFeed();
+
+    public OffHeapStudentManager(int expected) {
+        store = new OffHeapStudentStore(expected);
+    }
+
+    public ChangeFeed changes() {
+        return feed;
+    }
+
+    // The stored student as a new object, graded as stored; null if there is none
+    private Student stored(int rollNo) {
+        int slot = store.slotOf(rollNo);
+        return slot < 0 ? null : store.get(slot);
+    }
+
+    public void addStudent(Student s) {
+        long t = TIMERS.add.start();
+        try {
+            if (store.contains(s.rollNo)) {
+                System.out.println("Duplicate Roll Number! Student NOT added.");
+                return;
+            }
+            store.add(s);
+            feed.publish(ChangeEvent.Type.ADD, s.rollNo, null, stored(s.rollNo));
+            System.out.println("Student added successfully.");
+        } finally {
+            TIMERS.add.stop(t);
+        }
+    }
+
+    public void deleteStudent(int rollNo) {
+        long t = TIMERS.delete.start();
+        try {
+            Student old = stored(rollNo);
+            if (old != null) {
+                store.remove(rollNo);
+                feed.publish(ChangeEvent.Type.DELETE, rollNo, old, null);
+                System.out.println("Student removed successfully.");
+            } else {
+                System.out.println("Student not found.");
+            }
+        } finally {
+            TIMERS.delete.stop(t);
+        }
+    }
+
+    public void updateStudent(int rollNo, Student newData) {
+        long t = TIMERS.update.start();
+        try {
+            Student old = stored(rollNo);
+            if (old == null) {
+                System.out.println("Student not found!");
+                return;
+            }
+            if (newData.rollNo != rollNo) {
+                if (store.contains(newData.rollNo)) {
+                    System.out.println("Duplicate Roll Number! Student NOT updated.");
+                    return;
+                }
+                store.remove(rollNo);
+                store.add(newData);
+                // stored under another roll number now, so subscribers see it move
+                feed.publish(ChangeEvent.Type.DELETE, rollNo, old, null);
+                feed.publish(ChangeEvent.Type.ADD, newData.rollNo, null, stored(newData.rollNo));
+            } else {
+                store.update(newData);
+                feed.publish(ChangeEvent.Type.UPDATE, rollNo, old, stored(rollNo));
+            }
+            System.out.println("Student updated successfully.");
+        } finally {
+            TIMERS.update.stop(t);
+        }
+    }
+
+    public Student searchStudent(int rollNo) {
+        long t = TIMERS.search.start();
+        try {
+            int slot = store.slotOf(rollNo);
+            return slot < 0 ? null : store.get(slot);
+        } finally {
+            TIMERS.search.stop(t);
+        }
+    }
+
+    public void viewAllStudents() {
+        long t = TIMERS.viewAll.start();
+        try {
+            if (store.size() == 0) {
+                System.out.println("No records found.");
+                return;
+            }
+
+            store.forEach(Student::displayInfo);
+        } finally {
+            TIMERS.viewAll.stop(t);
+        }
+    }
+
+    // Reclaims the slots and strings left behind by deletes and updates
+    public void compact() {
+        store.compact();
+    }
+
+    public int deadSlots() {
+        return store.deadSlots();
+    }
+
+    public void regrade(GradingScheme scheme) {
+        long t = TIMERS.regrade.start();
+        try {
+            store.regrade(scheme);
+        } finally {
+            TIMERS.regrade.stop(t);
+        }
+    }
+
+    public BatchStatus[] addAll(List<Student> batch) {
+        long t = TIMERS.addAll.start();
+        try {
+            BatchStatus[] status = new BatchStatus[batch.size()];
+            IntIndex seen = new IntIndex(batch.size());
+            int accepted = 0;
+            for (int i = 0; i < status.length; i++) {
+                Student s = batch.get(i);
+                if (!BatchStatus.isValid(s)) status[i] = BatchStatus.INVALID;
+                else if (store.contains(s.rollNo) || seen.get(s.rollNo) >= 0) status[i] = BatchStatus.DUPLICATE;
+                else {
+                    seen.put(s.rollNo, i);
+                    status[i] = BatchStatus.OK;
+                    accepted++;
+                }
+            }
+            store.reserve(store.size() + accepted);
+            for (int i = 0; i < status.length; i++) {
+                if (status[i] != BatchStatus.OK) continue;
+                int rollNo = batch.get(i).rollNo;
+                store.add(batch.get(i));
+                feed.publish(ChangeEvent.Type.ADD, rollNo, null, stored(rollNo));
+            }
+            return status;
+        } finally {
+            TIMERS.addAll.stop(t);
+        }
+    }
+
+    public BatchStatus[] updateAll(List<Student> batch) {
+        long t = TIMERS.updateAll.start();
+        try {
+            BatchStatus[] status = new BatchStatus[batch.size()];
+            for (int i = 0; i < status.length; i++) {
+                Student s = batch.get(i);
+                if (!BatchStatus.isValid(s)) status[i] = BatchStatus.INVALID;
+                else if (!store.contains(s.rollNo)) status[i] = BatchStatus.NOT_FOUND;
+                else status[i] = BatchStatus.OK;
+            }
+            for (int i = 0; i < status.length; i++) {
+                if (status[i] != BatchStatus.OK) continue;
+                int rollNo = batch.get(i).rollNo;
+                Student old = stored(rollNo);
+                store.update(batch.get(i));
+                feed.publish(ChangeEvent.Type.UPDATE, rollNo, old, stored(rollNo));
+            }
+            return status;
+        } finally {
+            TIMERS.updateAll.stop(t);
+        }
+    }
+
+    public BatchStatus[] deleteAll(Collection<Integer> rollNos) {
+        long t = TIMERS.deleteAll.start();
+        try {
+            BatchStatus[] status = new BatchStatus[rollNos.size()];
+            int i = 0;
+            for (int rollNo : rollNos) {
+                Student old = stored(rollNo);
+                if (old != null) {
+                    store.remove(rollNo);
+                    feed.publish(ChangeEvent.Type.DELETE, rollNo, old, null);
+                }
+                status[i++] = old != null ? BatchStatus.OK : BatchStatus.NOT_FOUND;
+            }
+            return status;
+        } finally {
+            TIMERS.deleteAll.stop(t);
+        }
+    }
+}
+
+
+// THREAD-SAFE STUDENT MANAGER
+// Reads never lock: both maps are concurrent and stored students are private copies
+// that are never mutated after being published. Writers lock a stripe chosen by roll
+// number, so the record map and the name index change together for that student.
+// A name lookup may briefly see a roll number whose record is being renamed, so it
+// re-checks the record it finds.
+
+class ConcurrentStudentManager implements RecordActions {
+
+    private static final int STRIPES = 64;
+
+    // The RecordActions methods go through add, delete, update and find, which are timed
+    private static final ActionTimers TIMERS = new ActionTimers("concurrent");
+    private static final Metrics.Timer FIND_BY_NAME = Metrics.timer("concurrent.findByName");
+
+    private final ConcurrentHashMap<Integer, Student> byRoll = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Integer>> byName = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private volatile GradingScheme scheme = Student.DEFAULT_GRADING; // changed only while regrade holds every stripe
+    private final ChangeFeed feed = new ChangeFeed(); // published under the stripe lock, so in order per student
+
+    public ConcurrentStudentManager() {
+        for (int i = 0; i < STRIPES; i++) locks[i] = new ReentrantLock();
+    }
+
+    // Events carry copies of their own, like find(), so a subscriber cannot change a stored student
+    public ChangeFeed changes() {
+        return feed;
+    }
+
+    // Returns false if the roll number is taken
+    public boolean add(Student s) {
+        long t = TIMERS.add.start();
+        try {
+            ReentrantLock lock = lockFor(s.rollNo);
+            lock.lock();
+            try {
+                Student copy = copyOf(s.rollNo, s); // graded under the lock, so never with a scheme regrade replaced
+                if (byRoll.putIfAbsent(s.rollNo, copy) != null) return false;
+                indexName(copy.name, s.rollNo);
+                feed.publish(ChangeEvent.Type.ADD, s.rollNo, null, copy.copy());
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            TIMERS.add.stop(t);
+        }
+    }
+
+    // Returns false if there is no such student
+    public boolean delete(int rollNo) {
+        long t = TIMERS.delete.start();
+        try {
+            ReentrantLock lock = lockFor(rollNo);
+            lock.lock();
+            try {
+                Student old = byRoll.remove(rollNo);
+                if (old == null) return false;
+                unindexName(old.name, rollNo);
+                feed.publish(ChangeEvent.Type.DELETE, rollNo, old.copy(), null);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            TIMERS.delete.stop(t);
+        }
+    }
+
+    // Returns false if there is no such student
+    public boolean update(int rollNo, Student newData) {
+        long t = TIMERS.update.start();
+        try {
+            ReentrantLock lock = lockFor(rollNo);
+            lock.lock();
+            try {
+                Student old = byRoll.get(rollNo);
+                if (old == null) return false;
+                Student copy = copyOf(rollNo, newData);
+                indexName(copy.name, rollNo); // index first so a reader never misses the new name
+                byRoll.put(rollNo, copy);
+                if (!fold(old.name).equals(fold(copy.name))) unindexName(old.name, rollNo);
+                feed.publish(ChangeEvent.Type.UPDATE, rollNo, old.copy(), copy.copy());
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            TIMERS.update.stop(t);
+        }
+    }
+
+    public Student find(int rollNo) {
+        long t = TIMERS.search.start();
+        try {
+            Student s = byRoll.get(rollNo);
+            return s == null ? null : copyOf(rollNo, s);
+        } finally {
+            TIMERS.search.stop(t);
+        }
+    }
+
+    public List<Student> findByName(String name) {
+        long t = FIND_BY_NAME.start();
+        try {
+            String key = fold(name);
+            Set<Integer> rolls = byName.get(key);
+            List<Student> found = new ArrayList<>();
+            if (rolls == null) return found;
+            for (int rollNo : rolls) {
+                Student s = byRoll.get(rollNo);
+                if (s != null && fold(s.name).equals(key)) found.add(copyOf(rollNo, s));
+            }
+            return found;
+        } finally {
+            FIND_BY_NAME.stop(t);
+        }
+    }
+
+    public int size() {
+        return byRoll.size();
+    }
+
+    public void addStudent(Student s) {
+        if (add(s))
+            System.out.println("Student added successfully.");
+        else
+            System.out.println("Duplicate Roll Number! Student NOT added.");
+    }
+
+    public void deleteStudent(int rollNo) {
+        if (delete(rollNo))
+            System.out.println("Student removed successfully.");
+        else
+            System.out.println("Student not found.");
+    }
+
+    public void updateStudent(int rollNo, Student newData) {
+        if (update(rollNo, newData))
+            System.out.println("Student updated successfully.");
+        else
+            System.out.println("Student not found!");
+    }
+
+    public Student searchStudent(int rollNo) {
+        return find(rollNo);
+    }
+
+    public void viewAllStudents() {
+        long t = TIMERS.viewAll.start();
+        try {
+            if (byRoll.isEmpty()) {
+                System.out.println("No records found.");
+                return;
+            }
+
+            for (Student s : byRoll.values()) {
+                s.displayInfo();
+            }
+        } finally {
+            TIMERS.viewAll.stop(t);
+        }
+    }
+
+    // Batches lock every stripe they touch, in index order, so the whole batch appears at once
+    // and cannot deadlock with single-key writers or other batches
+    public BatchStatus[] addAll(List<Student> batch) {
+        long t = TIMERS.addAll.start();
+        try {
+            BatchStatus[] status = new BatchStatus[batch.size()];
+            Student[] copies = new Student[batch.size()];
+            int[] rolls = new int[batch.size()];
+            for (int i = 0; i < copies.length; i++) {
+                Student s = batch.get(i);
+                if (BatchStatus.isValid(s)) {
+                    rolls[i] = s.rollNo;
+                } else {
+                    status[i] = BatchStatus.INVALID;
+                }
+            }
+            boolean[] stripes = stripesFor(rolls, status);
+            lockAll(stripes);
+            try {
+                for (int i = 0; i < copies.length; i++) {
+                    if (status[i] != null) continue;
+                    copies[i] = copyOf(rolls[i], batch.get(i));
+                    if (byRoll.putIfAbsent(rolls[i], copies[i]) != null) {
+                        status[i] = BatchStatus.DUPLICATE;
+                    } else {
+                        indexName(copies[i].name, rolls[i]);
+                        feed.publish(ChangeEvent.Type.ADD, rolls[i], null, copies[i].copy());
+                        status[i] = BatchStatus.OK;
+                    }
+                }
+            } finally {
+                unlockAll(stripes);
+            }
+            return status;
+        } finally {
+            TIMERS.addAll.stop(t);
+        }
+    }
+
+    public BatchStatus[] updateAll(List<Student> batch) {
+        long t = TIMERS.updateAll.start();
+        try {
+            BatchStatus[] status = new BatchStatus[batch.size()];
+            Student[] copies = new Student[batch.size()];
+            int[] rolls = new int[batch.size()];
+            for (int i = 0; i < copies.length; i++) {
+                Student s = batch.get(i);
+                if (BatchStatus.isValid(s)) {
+                    rolls[i] = s.rollNo;
+                } else {
+                    status[i] = BatchStatus.INVALID;
+                }
+            }
+            boolean[] stripes = stripesFor(rolls, status);
+            lockAll(stripes);
+            try {
+                for (int i = 0; i < copies.length; i++) {
+                    if (status[i] != null) continue;
+                    Student old = byRoll.get(rolls[i]);
+                    if (old == null) {
+                        status[i] = BatchStatus.NOT_FOUND;
+                        continue;
+                    }
+                    copies[i] = copyOf(rolls[i], batch.get(i));
+                    indexName(copies[i].name, rolls[i]);
+                    byRoll.put(rolls[i], copies[i]);
+                    if (!fold(old.name).equals(fold(copies[i].name))) unindexName(old.name, rolls[i]);
+                    feed.publish(ChangeEvent.Type.UPDATE, rolls[i], old.copy(), copies[i].copy());
+                    status[i] = BatchStatus.OK;
+                }
+            } finally {
+                unlockAll(stripes);
+            }
+            return status;
+        } finally {
+            TIMERS.updateAll.stop(t);
+        }
+    }
+
+    public BatchStatus[] deleteAll(Collection<Integer> rollNos) {
+        long t = TIMERS.deleteAll.start();
+        try {
+            BatchStatus[] status = new BatchStatus[rollNos.size()];
+            int[] rolls = new int[rollNos.size()];
+            int n = 0;
+            for (int rollNo : rollNos) rolls[n++] = rollNo;
+            boolean[] stripes = stripesFor(rolls, status);
+            lockAll(stripes);
+            try {
+                for (int i = 0; i < rolls.length; i++) {
+                    Student old = byRoll.remove(rolls[i]);
+                    if (old == null) {
+                        status[i] = BatchStatus.NOT_FOUND;
+                    } else {
+                        unindexName(old.name, rolls[i]);
+                        feed.publish(ChangeEvent.Type.DELETE, rolls[i], old.copy(), null);
+                        status[i] = BatchStatus.OK;
+                    }
+                }
+            } finally {
+                unlockAll(stripes);
+            }
+            return status;
+        } finally {
+            TIMERS.deleteAll.stop(t);
+        }
+    }
+
+    // Stripes of the items that still need work (status not yet decided)
+    private boolean[] stripesFor(int[] rolls, BatchStatus[] status) {
+        boolean[] stripes = new boolean[STRIPES];
+        for (int i = 0; i < rolls.length; i++) {
+            if (status[i] == null) stripes[stripeOf(rolls[i])] = true;
+        }
+        return stripes;
+    }
+
+    private void lockAll(boolean[] stripes) {
+        for (int i = 0; i < STRIPES; i++) {
+            if (stripes[i]) locks[i].lock();
+        }
+    }
+
+    private void unlockAll(boolean[] stripes) {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            if (stripes[i]) locks[i].unlock();
+        }
+    }
+
+    // Holds every stripe, and writers grade their copies under their stripe's lock, so no
+    // writer can store a copy graded with the old scheme once this returns.
+    // find() and findByName() hand out fresh copies, so they grade with the new scheme at once.
+    public void regrade(GradingScheme scheme) {
+        long t = TIMERS.regrade.start();
+        try {
+            boolean[] stripes = new boolean[STRIPES];
+            Arrays.fill(stripes, true);
+            lockAll(stripes);
+            try {
+                this.scheme = scheme;
+                byRoll.replaceAll(this::copyOf);
+            } finally {
+                unlockAll(stripes);
+            }
+        } finally {
+            TIMERS.regrade.stop(t);
+        }
+    }
+
+    // Checks that the name index and the record map agree; only meaningful while no writer runs
+    boolean isConsistent() {
+        for (Map.Entry<Integer, Student> e : byRoll.entrySet()) {
+            Set<Integer> rolls = byName.get(fold(e.getValue().name));
+            if (rolls == null || !rolls.contains(e.getKey())) return false;
+        }
+        for (Map.Entry<String, Set<Integer>> e : byName.entrySet()) {
+            for (int rollNo : e.getValue()) {
+                Student s = byRoll.get(rollNo);
+                if (s == null || !fold(s.name).equals(e.getKey())) return false;
+            }
+        }
+        return true;
+    }
+
+    // Both index helpers change the set inside compute(), so an add can never land in a
+    // set that another writer has just dropped for being empty
+    private void indexName(String name, int rollNo) {
+        byName.compute(fold(name), (k, rolls) -> {
+            if (rolls == null) rolls = ConcurrentHashMap.newKeySet();
+            rolls.add(rollNo);
+            return rolls;
+        });
+    }
+
+    private void unindexName(String name, int rollNo) {
+        byName.computeIfPresent(fold(name), (k, rolls) -> {
+            rolls.remove(rollNo);
+            return rolls.isEmpty() ? null : rolls;
+        });
+    }
+
+    private ReentrantLock lockFor(int rollNo) {
+        return locks[stripeOf(rollNo)];
+    }
+
+    private static int stripeOf(int rollNo) {
+        int h = rollNo * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private Student copyOf(int rollNo, Student s) {
+        Student copy = new Student(rollNo, s.name, s.email, s.course, s.marks);
+        copy.calculateGrade(scheme);
+        return copy;
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
+
+
+// STRESS CHECK FOR THE THREAD-SAFE MANAGER
+// Run with: java ConcurrencyStress [threads] [seconds]
+// Every write stores name "S<marks>", so any reader that sees a name and marks that
+// disagree has observed a torn update.
+
+class ConcurrencyStress {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int keys = 1000;
+
+        ConcurrentStudentManager manager = new ConcurrentStudentManager();
+        AtomicLong operations = new AtomicLong();
+        AtomicReference<String> failure = new AtomicReference<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while (System.nanoTime() < deadline && failure.get() == null) {
+                    int rollNo = random.nextInt(keys);
+                    int marks = random.nextInt(101);
+                    Student s = new Student(rollNo, "S" + marks, rollNo + "@mail.com", "B.Tech", marks);
+                    switch (random.nextInt(6)) {
+                        case 0: manager.add(s); break;
+                        case 4: {
+                            List<Student> batch = new ArrayList<>();
+                            for (int k = 0; k < 8; k++) {
+                                int r = random.nextInt(keys), m = random.nextInt(101);
+                                batch.add(new Student(r, "S" + m, r + "@mail.com", "B.Tech", m));
+                            }
+                            if (random.nextBoolean()) manager.addAll(batch); else manager.updateAll(batch);
+                            break;
+                        }
+                        case 1: manager.update(rollNo, s); break;
+                        case 2: manager.delete(rollNo); break;
+                        case 3: {
+                            Student found = manager.find(rollNo);
+                            if (found != null && !found.name.equals("S" + (int) found.marks))
+                                failure.compareAndSet(null, "torn read for roll " + rollNo + ": " + found.name + "/" + found.marks);
+                            break;
+                        }
+                        default:
+                            for (Student found : manager.findByName("S" + marks)) {
+                                if ((int) found.marks != marks)
+                                    failure.compareAndSet(null, "name index returned " + found.name + " for S" + marks);
+                            }
+                    }
+                    done++;
+                }
+                operations.addAndGet(done);
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(seconds + 30L, TimeUnit.SECONDS);
+
+        if (failure.get() == null && !manager.isConsistent()) failure.set("name index and record map disagree");
+        System.out.println(threads + " threads, " + operations.get() + " operations, " + manager.size() + " students left.");
+        if (failure.get() != null) {
+            System.out.println("FAILED: " + failure.get());
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+}
+
+
+// WIRE PROTOCOL FOR THE STUDENT SERVER
+// Request:  byte op, int id, then the op's arguments.
+// Response: int id, byte status (a BatchStatus ordinal), then the op's result when OK.
+// Strings are written with writeUTF (null as ""), a student as roll, name, email, course, marks.
+// Responses come back in request order, so a client may send many requests before
+// reading any answers (pipelining).
+
+final class StudentProtocol {
+
+    static final byte ADD = 1;          // student                -> status
+    static final byte UPDATE = 2;       // int rollNo, student    -> status
+    static final byte DELETE = 3;       // int rollNo             -> status
+    static final byte FIND = 4;         // int rollNo             -> student
+    static final byte FIND_BY_NAME = 5; // name                   -> int count, students
+    static final byte SIZE = 6;         //                        -> int size
+
+    static final BatchStatus[] STATUSES = BatchStatus.values();
+
+    private StudentProtocol() {}
+
+    static void writeStudent(DataOutputStream out, Student s) throws IOException {
+        out.writeInt(s.rollNo);
+        out.writeUTF(s.name == null ? "" : s.name);
+        out.writeUTF(s.email == null ? "" : s.email);
+        out.writeUTF(s.course == null ? "" : s.course);
+        out.writeDouble(s.marks);
+    }
+
+    static Student readStudent(DataInputStream in) throws IOException {
+        return new Student(in.readInt(), in.readUTF(), in.readUTF(), in.readUTF(), in.readDouble());
+    }
+}
+
+
+// STUDENT SERVER
+// Serves a ConcurrentStudentManager over TCP on localhost, one thread per connection.
+// Each connection reads requests in order and answers them in order; replies to a burst
+// of pipelined requests are flushed together once no more input is waiting.
+// Run with: java StudentServer [port] [students to preload]
+
+class StudentServer implements Closeable {
+
+    private static final int BUFFER = 64 * 1024;
+
+    private final ConcurrentStudentManager manager;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = perConnectionExecutor();
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+
+    public StudentServer(ConcurrentStudentManager manager, int port) throws IOException {
+        this.manager = manager;
+        serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(this::acceptLoop, "student-server");
+        acceptor.start();
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : open) socket.close();
+        connections.shutdown();
+    }
+
+    // Virtual threads when the JDK has them (21 and later), so thousands of mostly idle
+    // connections stay cheap; otherwise a cached pool of platform threads
+    static ExecutorService perConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "student-connection");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                open.add(socket);
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) System.out.println("Error accepting connection: " + e.getMessage());
+            } catch (RejectedExecutionException e) {
+                return; // closing
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER))) {
+            socket.setTcpNoDelay(true);
+            int op;
+            while ((op = in.read()) >= 0) {
+                handle((byte) op, in.readInt(), in, out);
+                if (in.available() == 0) out.flush();
+            }
+        } catch (IOException e) {
+            // client went away or sent something unreadable; either way the connection is done
+        } finally {
+            open.remove(socket);
+        }
+    }
+
+    private void handle(byte op, int id, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (op) {
+            case StudentProtocol.ADD: {
+                Student s = StudentProtocol.readStudent(in);
+                if (!BatchStatus.isValid(s)) reply(out, id, BatchStatus.INVALID);
+                else reply(out, id, manager.add(s) ? BatchStatus.OK : BatchStatus.DUPLICATE);
+                break;
+            }
+            case StudentProtocol.UPDATE: {
+                int rollNo = in.readInt();
+                Student s = StudentProtocol.readStudent(in);
+                if (!BatchStatus.isValid(s)) reply(out, id, BatchStatus.INVALID);
+                else reply(out, id, manager.update(rollNo, s) ? BatchStatus.OK : BatchStatus.NOT_FOUND);
+                break;
+            }
+            case StudentProtocol.DELETE:
+                reply(out, id, manager.delete(in.readInt()) ? BatchStatus.OK : BatchStatus.NOT_FOUND);
+                break;
+            case StudentProtocol.FIND: {
+                Student s = manager.find(in.readInt());
+                reply(out, id, s == null ? BatchStatus.NOT_FOUND : BatchStatus.OK);
+                if (s != null) StudentProtocol.writeStudent(out, s);
+                break;
+            }
+            case StudentProtocol.FIND_BY_NAME: {
+                List<Student> found = manager.findByName(in.readUTF());
+                reply(out, id, BatchStatus.OK);
+                out.writeInt(found.size());
+                for (Student s : found) StudentProtocol.writeStudent(out, s);
+                break;
+            }
+            case StudentProtocol.SIZE:
+                reply(out, id, BatchStatus.OK);
+                out.writeInt(manager.size());
+                break;
+            default:
+                throw new IOException("Unknown request type " + op);
+        }
+    }
+
+    private static void reply(DataOutputStream out, int id, BatchStatus status) throws IOException {
+        out.writeInt(id);
+        out.writeByte(status.ordinal());
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        int preload = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        ConcurrentStudentManager manager = new ConcurrentStudentManager();
+        for (int i = 1; i <= preload; i++) {
+            manager.add(new Student(i, Bench.name(i), Bench.email(i), Bench.course(i), Bench.marks(i)));
+        }
+        StudentServer server = new StudentServer(manager, port);
+        System.out.println("Serving " + manager.size() + " students on localhost:" + server.port());
+        server.acceptor.join();
+    }
+}
+
+
+// STUDENT CLIENT
+// Every call sends its request straight away and returns a future, so callers can keep
+// many requests in flight on one connection. A reader thread completes the futures in
+// the order the answers arrive, which is the order the requests were sent.
+
+class StudentClient implements Closeable {
+
+    private static final class Pending {
+        final byte op;
+        final int id;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Pending(byte op, int id) {
+            this.op = op;
+            this.id = id;
+        }
+    }
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final Thread reader;
+    private int nextId;
+    private IOException failure; // set once the reader stops or a send fails, guarded by out
+
+    public StudentClient(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+        reader = new Thread(this::readLoop, "student-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public CompletableFuture<BatchStatus> add(Student s) {
+        return send(StudentProtocol.ADD, out -> StudentProtocol.writeStudent(out, s));
+    }
+
+    public CompletableFuture<BatchStatus> update(int rollNo, Student s) {
+        return send(StudentProtocol.UPDATE, out -> {
+            out.writeInt(rollNo);
+            StudentProtocol.writeStudent(out, s);
+        });
+    }
+
+    public CompletableFuture<BatchStatus> delete(int rollNo) {
+        return send(StudentProtocol.DELETE, out -> out.writeInt(rollNo));
+    }
+
+    // Completes with null when there is no such student
+    public CompletableFuture<Student> find(int rollNo) {
+        return send(StudentProtocol.FIND, out -> out.writeInt(rollNo));
+    }
+
+    public CompletableFuture<List<Student>> findByName(String name) {
+        return send(StudentProtocol.FIND_BY_NAME, out -> out.writeUTF(name));
+    }
+
+    public CompletableFuture<Integer> size() {
+        return send(StudentProtocol.SIZE, out -> {});
+    }
+
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> send(byte op, Body body) {
+        synchronized (out) {
+            Pending p = new Pending(op, nextId++);
+            if (failure != null) {
+                p.result.completeExceptionally(failure);
+                return (CompletableFuture<T>) (CompletableFuture<?>) p.result;
+            }
+            pending.add(p); // queued before the bytes go out, so the reader always finds it
+            try {
+                out.writeByte(op);
+                out.writeInt(p.id);
+                body.write(out);
+                out.flush();
+            } catch (IOException | RuntimeException e) {
+                // part of the request may already be on the stream, so nothing after it would
+                // be read correctly: fail it with everything queued and close the connection
+                fail(e instanceof IOException ? (IOException) e : new IOException("Cannot send request: " + e, e));
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // already failed
+                }
+            }
+            return (CompletableFuture<T>) (CompletableFuture<?>) p.result;
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                int id = in.readInt();
+                BatchStatus status = StudentProtocol.STATUSES[in.readByte()];
+                Pending p = pending.poll();
+                if (p == null || p.id != id) throw new IOException("Answer " + id + " does not match any request");
+                p.result.complete(readResult(p.op, status));
+            }
+        } catch (IOException e) {
+            // under the send lock, so no request can be queued after the queue is drained
+            synchronized (out) {
+                fail(e);
+            }
+        }
+    }
+
+    // Called holding out; the first failure is the one later requests report
+    private void fail(IOException e) {
+        if (failure == null) failure = e;
+        Pending p;
+        while ((p = pending.poll()) != null) p.result.completeExceptionally(e);
+    }
+
+    private Object readResult(byte op, BatchStatus status) throws IOException {
+        switch (op) {
+            case StudentProtocol.FIND:
+                return status == BatchStatus.OK ? StudentProtocol.readStudent(in) : null;
+            case StudentProtocol.FIND_BY_NAME: {
+                int count = in.readInt();
+                List<Student> found = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) found.add(StudentProtocol.readStudent(in));
+                return found;
+            }
+            case StudentProtocol.SIZE:
+                return in.readInt();
+            default:
+                return status;
+        }
+    }
+}
+
+
+// LOAD GENERATOR FOR THE STUDENT SERVER
+// Run with: javac -d out StudentManagementSystem.java Bench.java GradingScheme.java Metrics.java
+//           java -cp out LoadGenerator [port] [connections] [pipeline depth] [seconds] [students]
+// Port 0 starts a server in this JVM. Each connection keeps up to depth requests in
+// flight, 90% lookups by roll number and 10% updates, and records the time from send to
+// answer for every request.
+
+class LoadGenerator {
+
+    private static final int WRITE_PERCENT = 10;
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int students = args.length > 4 ? Integer.parseInt(args[4]) : 100_000;
+
+        StudentServer server = null;
+        if (port == 0) {
+            ConcurrentStudentManager manager = new ConcurrentStudentManager();
+            for (int i = 1; i <= students; i++) manager.add(student(i, Bench.marks(i)));
+            server = new StudentServer(manager, 0);
+            port = server.port();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<long[]> samples = Collections.synchronizedList(new ArrayList<>());
+        Thread[] drivers = new Thread[connections];
+        for (int c = 0; c < connections; c++) {
+            int connectionPort = port;
+            drivers[c] = new Thread(() -> samples.add(drive(connectionPort, depth, students, deadline)));
+            drivers[c].start();
+        }
+        for (Thread t : drivers) t.join();
+        if (server != null) server.close();
+
+        long[] all = samples.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length == 0) {
+            System.out.println("No requests completed.");
+            return;
+        }
+        System.out.printf("%d connections x depth %d, %d requests in %ds: %.0f req/s%n",
+                connections, depth, all.length, seconds, all.length / (double) seconds);
+        System.out.printf("latency us: p50 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999), all[all.length - 1] / 1000.0);
+    }
+
+    // Runs one connection until the deadline and returns its latencies in nanoseconds
+    private static long[] drive(int port, int depth, int students, long deadline) {
+        long[][] latencies = {new long[1 << 16]};
+        int[] count = {0};
+        Semaphore window = new Semaphore(depth);
+        try (StudentClient client = new StudentClient("localhost", port)) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                window.acquire();
+                int rollNo = 1 + random.nextInt(students);
+                long start = System.nanoTime();
+                CompletableFuture<?> answer = random.nextInt(100) < WRITE_PERCENT
+                        ? client.update(rollNo, student(rollNo, random.nextInt(101)))
+                        : client.find(rollNo);
+                // usually runs on the client's reader thread, but on this one if the answer is already in
+                answer.whenComplete((result, error) -> {
+                    long elapsed = System.nanoTime() - start;
+                    if (error == null) {
+                        synchronized (latencies) {
+                            if (count[0] == latencies[0].length) latencies[0] = Arrays.copyOf(latencies[0], count[0] * 2);
+                            latencies[0][count[0]++] = elapsed;
+                        }
+                    }
+                    window.release();
+                });
+            }
+            window.acquire(depth); // let the last answers arrive
+        } catch (IOException | InterruptedException e) {
+            System.out.println("Connection failed: " + e.getMessage());
+        }
+        synchronized (latencies) {
+            return Arrays.copyOf(latencies[0], count[0]);
+        }
+    }
+
+    private static Student student(int rollNo, double marks) {
+        return new Student(rollNo, Bench.name(rollNo), Bench.email(rollNo), Bench.course(rollNo), marks);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1000.0;
+    }
+}
+
+
+// BENCHMARK
+// Run with: javac -d out StudentManagementSystem.java Bench.java GradingScheme.java Metrics.java && java -cp out StudentBenchmark [sizes]
+// Add -Dmetrics=true to measure the instrumented build; the operation metrics are printed at the end.
+// (or ./bench.sh). Compares the HashMap, columnar, off-heap and thread-safe managers.
+
+class StudentBenchmark {
+
+    interface Factory {
+        RecordActions create(int expected);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Bench.silenceStdout();
+        Bench.header();
+        for (int size : Bench.sizes(args, "1000,10000,100000,1000000")) {
+            run("HashMap StudentManager", size, n -> new StudentManager());
+            run("ColumnarStudentManager", size, ColumnarStudentManager::new);
+            run("OffHeapStudentManager", size, OffHeapStudentManager::new);
+            run("ConcurrentStudentManager", size, n -> new ConcurrentStudentManager());
+        }
+        if (Metrics.ENABLED) Bench.note(Metrics.report());
+    }
+
+    private static void run(String variant, int size, Factory factory) throws Exception {
+        int ops = Math.min(size, 100_000);
+        RecordActions manager = factory.create(size + ops);
+        for (int i = 1; i <= size; i++) manager.addStudent(student(i));
+
+        Bench.runCold(variant, "add", size, ops, i -> manager.addStudent(student(size + 1 + i)));
+        Bench.run(variant, "search-by-roll", size, ops, i -> manager.searchStudent(1 + i % size));
+        if (manager instanceof ConcurrentStudentManager) {
+            ConcurrentStudentManager concurrent = (ConcurrentStudentManager) manager;
+            Bench.run(variant, "search-by-name", size, ops, i -> concurrent.findByName(Bench.name(i)));
+        }
+        if (manager instanceof ColumnarStudentManager) {
+            ColumnarStudentManager columnar = (ColumnarStudentManager) manager;
+            int queries = Math.max(10, ops / 100);
+            StudentQuery topInCourse = new StudentQuery()
+                    .where(Condition.and(Condition.course("M.Tech"), Condition.marksBetween(75, 90)))
+                    .select(Column.ROLL_NO, Column.NAME, Column.MARKS)
+                    .orderBy(Column.MARKS, true)
+                    .limit(10);
+            Bench.run(variant, "query-scan", size, queries, i -> columnar.query(topInCourse));
+            Bench.run(variant, "query-name-scan", size, queries, i -> columnar.query(byName(i)));
+            columnar.createIndex(Column.NAME);
+            columnar.createIndex(Column.COURSE);
+            columnar.createIndex(Column.MARKS);
+            Bench.run(variant, "query-index", size, queries, i -> columnar.query(topInCourse));
+            Bench.run(variant, "query-name-index", size, ops, i -> columnar.query(byName(i)));
+            Bench.note("  " + columnar.explain(topInCourse).replace("\n", "\n  ").trim());
+        }
+        Bench.run(variant, "regrade", size, 5, i -> manager.regrade(GradingScheme.LETTER));
+        Bench.runCold(variant, "delete", size, ops, i -> manager.deleteStudent(1 + i));
+    }
+
+    private static StudentQuery byName(int i) {
+        return new StudentQuery().where(Condition.name(Bench.name(i))).select(Column.ROLL_NO, Column.MARKS);
+    }
+
+    private static Student student(int i) {
+        return new Student(i, Bench.name(i), Bench.email(i), Bench.course(i), Bench.marks(i));
+    }
+}
+
+
 // MAIN CLASS
 
 public class StudentManagementSystem {
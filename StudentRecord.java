@@ -1,157 +1,2822 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+// Result of one item in a batch
+enum BatchStatus {
+    OK, DUPLICATE, NOT_FOUND, INVALID,
+    FAILED // accepted, but the change log failed before it was durable, so it was not applied
+}
 
 // Custom Exception
 class StudentNotFoundException extends Exception {
     StudentNotFoundException(String message) {
         super(message);
     }
-}
+}
+
+// A batch the change log could not make durable; the accepted items are FAILED in statuses()
+class BatchFailedException extends IOException {
+    private final BatchStatus[] statuses;
+
+    BatchFailedException(BatchStatus[] statuses, IOException cause) {
+        super("Batch not saved: " + cause.getMessage(), cause);
+        this.statuses = statuses;
+    }
+
+    BatchStatus[] statuses() {
+        return statuses;
+    }
+}
+
+// Abstract Class Person
+abstract class Person {
+    protected final String name;
+    protected final String email;
+
+    Person(String name, String email) {
+        this.name = name;
+        this.email = email;
+    }
+
+    public abstract void displayInfo();  // will override in Student
+}
+
+// Student Class
+// Immutable, so a roster snapshot can hand out its students without copying them; a change
+// to a student is a new Student replacing the old one.
+class Student extends Person {
+    // Scheme from -Dgrading that a StudentManager starts with; its regrade changes only its own roster
+    static final GradingScheme DEFAULT_GRADING = GradingScheme.configured(GradingScheme.PLUS);
+
+    private final int rollNo;
+    private final String course;
+    private final double marks;
+    private final GradingScheme scheme; // the one grade was computed with
+    private final byte grade;
+
+    public Student(int rollNo, String name, String email, String course, double marks) {
+        this(rollNo, name, email, course, marks, DEFAULT_GRADING);
+    }
+
+    private Student(int rollNo, String name, String email, String course, double marks, GradingScheme scheme) {
+        super(name, email);
+        this.rollNo = rollNo;
+        this.course = course;
+        this.marks = marks;
+        this.scheme = scheme;
+        this.grade = scheme.code(marks);
+    }
+
+    public int getRollNo() { return rollNo; }
+    public String getName() { return name; }
+    public String getEmail() { return email; }
+    public String getCourse() { return course; }
+    public double getMarks() { return marks; }
+    public String getGrade() { return scheme.label(grade); }
+    public byte getGradeCode() { return grade; }
+
+    // This student graded with scheme, the holding manager's
+    public Student regraded(GradingScheme scheme) {
+        return this.scheme == scheme ? this : new Student(rollNo, name, email, course, marks, scheme);
+    }
+
+    public void displayDetails() {
+        System.out.println("Roll No: " + rollNo);
+        System.out.println("Name: " + name);
+        System.out.println("Email: " + email);
+        System.out.println("Course: " + course);
+        System.out.println("Marks: " + marks);
+        System.out.println("Grade: " + getGrade());
+        System.out.println("------------------");
+    }
+
+    public void displayInfo() {
+        displayDetails();
+    }
+
+    public String toFileString() {
+        return rollNo + "," + name + "," + email + "," + course + "," + marks;
+    }
+
+    public static Student fromFileString(String line) {
+        String[] parts = line.split(",");
+        return new Student(
+            Integer.parseInt(parts[0]),
+            parts[1],
+            parts[2],
+            parts[3],
+            Double.parseDouble(parts[4])
+        );
+    }
+}
+
+// Interface for Student Actions
+interface RecordActions {
+    void addStudent() throws IOException;
+    void deleteStudent() throws IOException;
+    void updateStudent() throws IOException;
+    void searchStudent();
+    void searchByPrefix();
+    void viewAllStudents();
+    void sortByMarks();
+    void showTopByMarks();
+    void showRank();
+    void showMarksRange();
+    void showCourseStats();
+    void changeGradingScheme();
+    void showLoadStatus();
+    void showChangeFeed();
+}
+
+// Progress Reporter
+// Long operations (load, save) report how far they have got. A shared scheduler only
+// starts printing once an operation has run longer than DELAY_MS, so quick ones stay silent.
+class Progress implements AutoCloseable {
+    private static final long DELAY_MS = 500;
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "progress-reporter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String label;
+    private final long total; // -1 when unknown
+    private final AtomicLong done = new AtomicLong();
+    private final ScheduledFuture<?> ticker;
+    private volatile boolean reported;
+
+    private Progress(String label, long total) {
+        this.label = label;
+        this.total = total;
+        ticker = SCHEDULER.scheduleAtFixedRate(this::report, DELAY_MS, DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    static Progress start(String label, long total) {
+        return new Progress(label, total);
+    }
+
+    void step() {
+        done.incrementAndGet();
+    }
+
+    public void close() {
+        ticker.cancel(false);
+        if (reported) System.out.println("\r" + label + "... done (" + done.get() + ")");
+    }
+
+    private void report() {
+        reported = true;
+        System.out.print("\r" + label + "... " + done.get() + (total >= 0 ? "/" + total : ""));
+    }
+}
+
+// Durable Rename
+// A file written to a temp name and forced is renamed over its target, then the directory
+// is forced too, so after a power loss the target holds the new contents and not an empty
+// or partial file. Anything the new file supersedes, like the change log, can go after this.
+final class DurableRename {
+    private DurableRename() {}
+
+    static void replace(Path temp, Path target) throws IOException {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target);
+    }
+
+    static void syncDirectory(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (AccessDeniedException e) {
+            // directories cannot be opened on every platform (Windows); the rename is still atomic
+        }
+    }
+}
+
+// Write-Ahead Log for Student Changes
+// Every change is appended here before it is applied in memory, and the log is
+// replayed on top of the last snapshot at startup.
+// Entry layout: [payload length][CRC32 of payload][payload]
+class StudentLog implements Closeable {
+    static final byte ADD = 1;
+    static final byte UPDATE = 2;
+    static final byte DELETE = 3;
+    static final byte BATCH = 4; // several entries written and replayed as one
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD = 256 << 20;
+
+    private static final Metrics.Timer FORCE = Metrics.timer("log.force");
+    private static final Metrics.Counter LOG_BYTES = Metrics.counter("log.bytes");
+
+    // Decoded log entry, student is null for deletes
+    static class Entry {
+        final byte op;
+        final int rollNo;
+        final Student student;
+
+        Entry(byte op, int rollNo, Student student) {
+            this.op = op;
+            this.rollNo = rollNo;
+            this.student = student;
+        }
+    }
+
+    private final FileChannel channel;
+    private final Thread writer;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSeq; // last sequence handed out
+    private long durableSeq;  // last sequence forced to disk
+    private IOException failure;
+    private boolean closed;
+    private boolean truncating; // appends wait while set
+    private volatile LongConsumer onDurable = seq -> {};
+
+    private StudentLog(FileChannel channel) {
+        this.channel = channel;
+        writer = new Thread(this::writeLoop, "student-log-writer");
+        writer.setDaemon(true);
+    }
+
+    // Replays every intact entry into apply, drops a torn tail, then starts accepting appends
+    static StudentLog open(String filename, Consumer<Entry> apply) throws IOException {
+        FileChannel ch = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        StudentLog log = new StudentLog(ch);
+        try {
+            log.replay(apply);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+        log.writer.start();
+        return log;
+    }
+
+    static byte[] encode(byte op, int rollNo, Student s) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeEntry(out, op, rollNo, s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory stream, cannot happen
+        }
+        return bytes.toByteArray();
+    }
+
+    // One payload for the whole batch, so a crash keeps all of it or none of it
+    static byte[] encodeBatch(List<Entry> entries) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(BATCH);
+            out.writeInt(entries.size());
+            for (Entry e : entries) writeEntry(out, e.op, e.rollNo, e.student);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory stream, cannot happen
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeEntry(DataOutputStream out, byte op, int rollNo, Student s) throws IOException {
+        out.writeByte(op);
+        out.writeInt(rollNo);
+        if (s != null) {
+            out.writeUTF(s.getName());
+            out.writeUTF(s.getEmail());
+            out.writeUTF(s.getCourse());
+            out.writeDouble(s.getMarks());
+        }
+    }
+
+    private static List<Entry> decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        if (op != BATCH) return List.of(readEntry(in, op));
+        int count = in.readInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) entries.add(readEntry(in, in.readByte()));
+        return entries;
+    }
+
+    private static Entry readEntry(DataInputStream in, byte op) throws IOException {
+        int rollNo = in.readInt();
+        if (op == DELETE) return new Entry(op, rollNo, null);
+        if (op != ADD && op != UPDATE) throw new IOException("Unknown log entry type " + op);
+        return new Entry(op, rollNo,
+                new Student(rollNo, in.readUTF(), in.readUTF(), in.readUTF(), in.readDouble()));
+    }
+
+    // Queues an entry for the next group commit and returns its sequence number
+    synchronized long append(byte[] payload) throws IOException {
+        try {
+            while (truncating) wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for change log");
+        }
+        if (failure != null) throw failure;
+        if (closed) throw new IOException("Change log is closed");
+        if (payload.length > MAX_PAYLOAD) throw new IOException("Change too large for one log entry");
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        DataOutputStream out = new DataOutputStream(pending);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+        notifyAll();
+        return ++appendedSeq;
+    }
+
+    // Told each new durable sequence from the writer thread, without any caller having to wait
+    void onDurable(LongConsumer listener) {
+        onDurable = listener;
+    }
+
+    // Blocks until the entry with this sequence number has been forced to disk
+    synchronized void awaitDurable(long seq) throws IOException {
+        try {
+            while (durableSeq < seq && failure == null) wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for change log");
+        }
+        if (durableSeq < seq) throw failure;
+    }
+
+    synchronized long durableSeq() {
+        return durableSeq;
+    }
+
+    void sync() throws IOException {
+        long seq;
+        synchronized (this) {
+            seq = appendedSeq;
+        }
+        awaitDurable(seq);
+    }
+
+    // Empties the log once its entries are covered by a snapshot. Appends are held off from
+    // the start, since waiting for the writer gives up the monitor, so nothing can slip in
+    // between the last entry reaching disk and the truncate.
+    synchronized void truncate() throws IOException {
+        truncating = true;
+        try {
+            awaitDurable(appendedSeq);
+            channel.truncate(0);
+            channel.position(0);
+        } finally {
+            truncating = false;
+            notifyAll();
+        }
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+    }
+
+    // Group commit: everything appended while the previous force() ran goes out in one write
+    private void writeLoop() {
+        while (true) {
+            byte[] batch;
+            long batchSeq;
+            synchronized (this) {
+                try {
+                    while (pending.size() == 0 && !closed) wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (pending.size() == 0) return; // closed and drained
+                batch = pending.toByteArray();
+                pending = new ByteArrayOutputStream();
+                batchSeq = appendedSeq;
+            }
+            try {
+                ByteBuffer buf = ByteBuffer.wrap(batch);
+                while (buf.hasRemaining()) channel.write(buf);
+                long t = FORCE.start();
+                channel.force(false);
+                FORCE.stop(t);
+                LOG_BYTES.add(batch.length);
+                synchronized (this) {
+                    durableSeq = batchSeq;
+                    notifyAll();
+                }
+                onDurable.accept(batchSeq);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    private void replay(Consumer<Entry> apply) throws IOException {
+        long size = channel.size();
+        long valid = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        while (valid + HEADER_SIZE <= size) {
+            readFully(header.clear(), valid);
+            int length = header.getInt(0);
+            int checksum = header.getInt(4);
+            if (length <= 0 || length > MAX_PAYLOAD || valid + HEADER_SIZE + length > size) break;
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, valid + HEADER_SIZE);
+            crc.reset();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) break;
+            for (Entry e : decode(payload.array())) apply.accept(e);
+            valid += HEADER_SIZE + length;
+        }
+        if (valid < size) {
+            System.out.println("Discarding damaged change log tail.");
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) throw new EOFException();
+        }
+    }
+}
+
+// Name Index
+// Case-folded name -> roll numbers, plus a sorted key set for prefix search
+class NameIndex {
+    private final Map<String, Set<Integer>> byName = new HashMap<>();
+    private final TreeSet<String> names = new TreeSet<>();
+
+    static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    void add(String name, int rollNo) {
+        String key = fold(name);
+        byName.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(rollNo);
+        names.add(key);
+    }
+
+    void remove(String name, int rollNo) {
+        String key = fold(name);
+        Set<Integer> rolls = byName.get(key);
+        if (rolls == null) return;
+        rolls.remove(rollNo);
+        if (rolls.isEmpty()) {
+            byName.remove(key);
+            names.remove(key);
+        }
+    }
+
+    Set<Integer> find(String name) {
+        Set<Integer> rolls = byName.get(fold(name));
+        return rolls == null ? Collections.emptySet() : Collections.unmodifiableSet(rolls);
+    }
+
+    List<Integer> findByPrefix(String prefix) {
+        String key = fold(prefix);
+        List<Integer> rolls = new ArrayList<>();
+        for (String name : names.subSet(key, true, key + Character.MAX_VALUE, true)) {
+            rolls.addAll(byName.get(name));
+        }
+        return rolls;
+    }
+}
+
+// Marks Ranking
+// Order-statistic treap keyed by (marks descending, roll no ascending). Every node
+// knows its subtree size, so rank, top-K and range queries are O(log n) plus output
+// and never touch the roster.
+// Persistent: nodes created since the last snapshot() are changed in place, older ones are
+// copied first, so a snapshot keeps seeing exactly the tree it was taken from.
+class MarksRanking {
+    private static class Node {
+        final Student student;
+        final double marks;
+        final int rollNo;
+        final int priority;
+        final Object edit; // token of the writer that may change this node in place
+        int size = 1;
+        Node left, right;
+
+        Node(Student student, int priority, Object edit) {
+            this.student = student;
+            this.marks = student.getMarks();
+            this.rollNo = student.getRollNo();
+            this.priority = priority;
+            this.edit = edit;
+        }
+
+        Node copy(Object edit) {
+            return copy(student, edit);
+        }
+
+        Node copy(Student student, Object edit) {
+            Node n = new Node(student, priority, edit);
+            n.size = size;
+            n.left = left;
+            n.right = right;
+            return n;
+        }
+    }
+
+    private final Random random = new Random();
+    private Node root;
+    private Object edit; // null for a read-only snapshot
+
+    MarksRanking() {
+        edit = new Object();
+    }
+
+    private MarksRanking(Node root) {
+        this.root = root;
+    }
+
+    // Read-only view of the ranking as it is now; later changes no longer touch its nodes
+    MarksRanking snapshot() {
+        edit = new Object();
+        return new MarksRanking(root);
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    void add(Student s) {
+        root = insert(root, new Node(s, random.nextInt(), writable()));
+    }
+
+    void remove(Student s) {
+        root = delete(root, s.getMarks(), s.getRollNo());
+    }
+
+    // Swaps every student for replacement(student), which must keep marks and roll number
+    void replaceAll(UnaryOperator<Student> replacement) {
+        root = replace(root, replacement, writable());
+    }
+
+    // 1-based position in the ranking, or -1 if the entry is not indexed
+    int rankOf(double marks, int rollNo) {
+        int before = 0;
+        Node n = root;
+        while (n != null) {
+            int c = compare(marks, rollNo, n);
+            if (c < 0) {
+                n = n.left;
+            } else if (c > 0) {
+                before += size(n.left) + 1;
+                n = n.right;
+            } else {
+                return before + size(n.left) + 1;
+            }
+        }
+        return -1;
+    }
+
+    // The k highest-ranked students
+    List<Student> top(int k) {
+        List<Student> found = new ArrayList<>(Math.min(k, size()));
+        Deque<Node> stack = new ArrayDeque<>();
+        Node n = root;
+        while (found.size() < k && (n != null || !stack.isEmpty())) {
+            while (n != null) {
+                stack.push(n);
+                n = n.left;
+            }
+            n = stack.pop();
+            found.add(n.student);
+            n = n.right;
+        }
+        return found;
+    }
+
+    // Students with min <= marks <= max, best first
+    List<Student> range(double min, double max) {
+        List<Student> found = new ArrayList<>();
+        collect(root, min, max, found);
+        return found;
+    }
+
+    List<Student> all() {
+        return top(size());
+    }
+
+    private Object writable() {
+        if (edit == null) throw new UnsupportedOperationException("Ranking snapshots are read-only");
+        return edit;
+    }
+
+    private Node editable(Node n) {
+        return n.edit == edit ? n : n.copy(edit);
+    }
+
+    private static void collect(Node n, double min, double max, List<Student> out) {
+        if (n == null) return;
+        if (n.marks > max) {
+            collect(n.right, min, max, out);
+        } else if (n.marks < min) {
+            collect(n.left, min, max, out);
+        } else {
+            collect(n.left, min, max, out);
+            out.add(n.student);
+            collect(n.right, min, max, out);
+        }
+    }
+
+    // Negative when (marks, rollNo) ranks ahead of n
+    private static int compare(double marks, int rollNo, Node n) {
+        int c = Double.compare(n.marks, marks);
+        return c != 0 ? c : Integer.compare(rollNo, n.rollNo);
+    }
+
+    private Node insert(Node n, Node x) {
+        if (n == null) return x;
+        n = editable(n);
+        if (compare(x.marks, x.rollNo, n) < 0) {
+            n.left = insert(n.left, x);
+            if (n.left.priority > n.priority) n = rotateRight(n);
+        } else {
+            n.right = insert(n.right, x);
+            if (n.right.priority > n.priority) n = rotateLeft(n);
+        }
+        resize(n);
+        return n;
+    }
+
+    private Node delete(Node n, double marks, int rollNo) {
+        if (n == null) return null;
+        int c = compare(marks, rollNo, n);
+        if (c == 0) return merge(n.left, n.right);
+        n = editable(n);
+        if (c < 0) n.left = delete(n.left, marks, rollNo);
+        else n.right = delete(n.right, marks, rollNo);
+        resize(n);
+        return n;
+    }
+
+    private Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a = editable(a);
+            a.right = merge(a.right, b);
+            resize(a);
+            return a;
+        }
+        b = editable(b);
+        b.left = merge(a, b.left);
+        resize(b);
+        return b;
+    }
+
+    private static Node replace(Node n, UnaryOperator<Student> replacement, Object edit) {
+        if (n == null) return null;
+        Node r = n.copy(replacement.apply(n.student), edit);
+        r.left = replace(n.left, replacement, edit);
+        r.right = replace(n.right, replacement, edit);
+        return r;
+    }
+
+    // Both rotations are only applied to nodes already made editable by insert
+    private static Node rotateRight(Node n) {
+        Node l = n.left;
+        n.left = l.right;
+        l.right = n;
+        resize(n);
+        resize(l);
+        return l;
+    }
+
+    private static Node rotateLeft(Node n) {
+        Node r = n.right;
+        n.right = r.left;
+        r.left = n;
+        resize(n);
+        resize(r);
+        return r;
+    }
+
+    private static void resize(Node n) {
+        n.size = size(n.left) + size(n.right) + 1;
+    }
+
+    private static int size(Node n) {
+        return n == null ? 0 : n.size;
+    }
+}
+
+// Roll Number Trie
+// Persistent map from roll number to Student: a 32-way trie on the roll number's bits, so a
+// lookup is at most seven array reads and a change copies only the nodes on its path. Each
+// node keeps its children packed behind a bitmap (as in a hash array mapped trie), and
+// iteration visits roll numbers in ascending order. Like MarksRanking, nodes created since
+// the last snapshot() are changed in place, so a batch of changes copies each path only once.
+class StudentTrie implements Iterable<Student> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int TOP_SHIFT = 30; // 2 bits at the root, then six levels of 5
+
+    private static final class Node {
+        final Object edit;
+        int bitmap;
+        Object[] slots; // child Nodes, or Students at the bottom level
+
+        Node(Object edit, int bitmap, Object[] slots) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    private Node root;
+    private int size;
+    private Object edit; // null for a read-only snapshot
+    private boolean changed; // set by put/remove when the size changes
+
+    StudentTrie() {
+        edit = new Object();
+    }
+
+    private StudentTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    StudentTrie snapshot() {
+        edit = new Object();
+        return new StudentTrie(root, size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    Student get(int rollNo) {
+        int key = rollNo ^ Integer.MIN_VALUE; // unsigned order of key = signed order of rollNo
+        Node n = root;
+        for (int shift = TOP_SHIFT; n != null; shift -= BITS) {
+            int bit = 1 << ((key >>> shift) & MASK);
+            if ((n.bitmap & bit) == 0) return null;
+            Object child = n.slots[Integer.bitCount(n.bitmap & (bit - 1))];
+            if (shift == 0) return (Student) child;
+            n = (Node) child;
+        }
+        return null;
+    }
+
+    // Adds s, or replaces the student with its roll number
+    void put(Student s) {
+        if (edit == null) throw new UnsupportedOperationException("Trie snapshots are read-only");
+        changed = false;
+        root = put(root, s.getRollNo() ^ Integer.MIN_VALUE, TOP_SHIFT, s);
+        if (changed) size++;
+    }
+
+    void remove(int rollNo) {
+        if (edit == null) throw new UnsupportedOperationException("Trie snapshots are read-only");
+        changed = false;
+        root = remove(root, rollNo ^ Integer.MIN_VALUE, TOP_SHIFT);
+        if (changed) size--;
+    }
+
+    // Swaps every student for replacement(student), which must keep the roll number
+    void replaceAll(UnaryOperator<Student> replacement) {
+        if (edit == null) throw new UnsupportedOperationException("Trie snapshots are read-only");
+        root = replace(root, TOP_SHIFT, replacement);
+    }
+
+    private Node put(Node n, int key, int shift, Student s) {
+        int bit = 1 << ((key >>> shift) & MASK);
+        if (n != null && (n.bitmap & bit) != 0) {
+            int i = Integer.bitCount(n.bitmap & (bit - 1));
+            Object child = shift == 0 ? s : put((Node) n.slots[i], key, shift - BITS, s);
+            if (child == n.slots[i]) return n;
+            n = editable(n);
+            n.slots[i] = child;
+            return n;
+        }
+        Object child;
+        if (shift == 0) {
+            child = s;
+            changed = true;
+        } else {
+            child = put(null, key, shift - BITS, s);
+        }
+        if (n == null) return new Node(edit, bit, new Object[] {child});
+        int i = Integer.bitCount(n.bitmap & (bit - 1));
+        Object[] slots = new Object[n.slots.length + 1];
+        System.arraycopy(n.slots, 0, slots, 0, i);
+        slots[i] = child;
+        System.arraycopy(n.slots, i, slots, i + 1, n.slots.length - i);
+        if (n.edit != edit) return new Node(edit, n.bitmap | bit, slots);
+        n.bitmap |= bit;
+        n.slots = slots;
+        return n;
+    }
+
+    // null when the node is left empty
+    private Node remove(Node n, int key, int shift) {
+        int bit = 1 << ((key >>> shift) & MASK);
+        if (n == null || (n.bitmap & bit) == 0) return n;
+        int i = Integer.bitCount(n.bitmap & (bit - 1));
+        if (shift != 0) {
+            Node child = remove((Node) n.slots[i], key, shift - BITS);
+            if (child == n.slots[i]) return n;
+            if (child != null) {
+                n = editable(n);
+                n.slots[i] = child;
+                return n;
+            }
+        } else {
+            changed = true;
+        }
+        if (n.slots.length == 1) return null;
+        Object[] slots = new Object[n.slots.length - 1];
+        System.arraycopy(n.slots, 0, slots, 0, i);
+        System.arraycopy(n.slots, i + 1, slots, i, slots.length - i);
+        if (n.edit != edit) return new Node(edit, n.bitmap & ~bit, slots);
+        n.bitmap &= ~bit;
+        n.slots = slots;
+        return n;
+    }
+
+    private Node replace(Node n, int shift, UnaryOperator<Student> replacement) {
+        if (n == null) return null;
+        Object[] slots = new Object[n.slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = shift == 0 ? replacement.apply((Student) n.slots[i]) : replace((Node) n.slots[i], shift - BITS, replacement);
+        }
+        return new Node(edit, n.bitmap, slots);
+    }
+
+    private Node editable(Node n) {
+        return n.edit == edit ? n : new Node(edit, n.bitmap, n.slots.clone());
+    }
+
+    // Ascending roll number order
+    public Iterator<Student> iterator() {
+        return new Iterator<>() {
+            private final Node[] nodes = new Node[7];
+            private final int[] next = new int[7];
+            private int depth = -1;
+            private Student pending;
+
+            {
+                if (root != null) {
+                    nodes[0] = root;
+                    depth = 0;
+                }
+                advance();
+            }
+
+            public boolean hasNext() {
+                return pending != null;
+            }
+
+            public Student next() {
+                if (pending == null) throw new NoSuchElementException();
+                Student s = pending;
+                advance();
+                return s;
+            }
+
+            private void advance() {
+                pending = null;
+                while (depth >= 0) {
+                    Node n = nodes[depth];
+                    if (next[depth] == n.slots.length) {
+                        next[depth--] = 0;
+                    } else if (depth == nodes.length - 1) {
+                        pending = (Student) n.slots[next[depth]++];
+                        return;
+                    } else {
+                        nodes[depth + 1] = (Node) n.slots[next[depth]++];
+                        depth++;
+                    }
+                }
+            }
+        };
+    }
+}
+
+// Roster Snapshot
+// One published version of the roster, handed to readers by StudentManager.snapshot().
+// Its trie and ranking are frozen and its students immutable, so it can be read from any
+// thread, for as long as needed, while writers go on publishing newer versions.
+final class Roster implements Iterable<Student> {
+    final long version;
+    private final StudentTrie byRoll;
+    private final MarksRanking ranking;
+
+    Roster(long version, StudentTrie byRoll, MarksRanking ranking) {
+        this.version = version;
+        this.byRoll = byRoll;
+        this.ranking = ranking;
+    }
+
+    int size() {
+        return byRoll.size();
+    }
+
+    boolean isEmpty() {
+        return byRoll.size() == 0;
+    }
+
+    Student get(int rollNo) {
+        return byRoll.get(rollNo);
+    }
+
+    // Ascending roll number order
+    public Iterator<Student> iterator() {
+        return byRoll.iterator();
+    }
+
+    List<Student> sortedByMarks() {
+        return ranking.all();
+    }
+
+    List<Student> top(int k) {
+        return ranking.top(k);
+    }
+
+    List<Student> range(double min, double max) {
+        return ranking.range(min, max);
+    }
+
+    // 1-based position by marks, or -1 if s is not in this version
+    int rankOf(Student s) {
+        return ranking.rankOf(s.getMarks(), s.getRollNo());
+    }
+}
+
+// Course Statistics
+// Running totals per course, updated on every add, update and delete, so a course
+// summary is read straight off the totals and never scans the roster. Marks also go
+// into a histogram of 0.1-mark buckets: quantiles come out to within one bucket and,
+// unlike a streaming sketch, the histogram can take removals.
+class CourseStats {
+    private static final int BUCKETS = 1001; // 0.0, 0.1, ... 100.0
+
+    // Point-in-time figures for one course
+    static final class Summary {
+        final String course;
+        final long count;
+        final double mean;
+        final double stdDev;
+        final double min;
+        final double max;
+        final double median;
+        final double p90;
+        final List<String> grades;
+        final long[] gradeCounts; // same order as grades
+
+        private Summary(String course, Totals t, GradingScheme scheme) {
+            this.course = course;
+            count = t.count;
+            mean = t.sum / t.count;
+            stdDev = Math.sqrt(Math.max(0, t.sumSquares / t.count - mean * mean));
+            min = t.min;
+            max = t.max;
+            median = t.quantile(0.5);
+            p90 = t.quantile(0.9);
+            grades = scheme.labels();
+            gradeCounts = t.grades.clone();
+        }
+    }
+
+    private static final class Totals {
+        long count;
+        double sum;
+        double sumSquares;
+        double min;
+        double max;
+        final long[] grades;
+        final long[] histogram = new long[BUCKETS];
+        // exact marks -> how many students have them, only consulted when min or max leaves
+        final TreeMap<Double, Integer> distinct = new TreeMap<>();
+
+        Totals(int gradeCount) {
+            grades = new long[gradeCount];
+        }
+
+        void add(double marks, byte grade) {
+            if (count == 0 || marks < min) min = marks;
+            if (count == 0 || marks > max) max = marks;
+            count++;
+            sum += marks;
+            sumSquares += marks * marks;
+            grades[grade]++;
+            histogram[bucket(marks)]++;
+            distinct.merge(marks, 1, Integer::sum);
+        }
+
+        void remove(double marks, byte grade) {
+            count--;
+            sum -= marks;
+            sumSquares -= marks * marks;
+            grades[grade]--;
+            histogram[bucket(marks)]--;
+            if (distinct.merge(marks, -1, Integer::sum) == 0) distinct.remove(marks);
+            if (count == 0) return;
+            if (marks == min) min = distinct.firstKey();
+            if (marks == max) max = distinct.lastKey();
+        }
+
+        // Walks at most BUCKETS counters, whatever the size of the course
+        double quantile(double q) {
+            long target = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                seen += histogram[b];
+                if (seen >= target) return Math.min(max, Math.max(min, b / 10.0));
+            }
+            return max;
+        }
+    }
+
+    private final GradingScheme scheme;
+    private final Map<String, Totals> byCourse = new HashMap<>();
+
+    // Grade counts are kept per code of scheme, so a new scheme needs a new CourseStats
+    CourseStats(GradingScheme scheme) {
+        this.scheme = scheme;
+    }
+
+    void add(Student s) {
+        byCourse.computeIfAbsent(key(s.getCourse()), k -> new Totals(scheme.size())).add(s.getMarks(), s.getGradeCode());
+    }
+
+    void remove(Student s) {
+        String course = key(s.getCourse());
+        Totals t = byCourse.get(course);
+        if (t == null) return;
+        t.remove(s.getMarks(), s.getGradeCode());
+        if (t.count == 0) byCourse.remove(course);
+    }
+
+    // null if nobody is enrolled in the course
+    Summary summary(String course) {
+        Totals t = byCourse.get(key(course));
+        return t == null ? null : new Summary(key(course), t, scheme);
+    }
+
+    // Estimated marks at quantile q (0..1) within the course, or NaN if it has no students
+    double quantile(String course, double q) {
+        Totals t = byCourse.get(key(course));
+        return t == null ? Double.NaN : t.quantile(q);
+    }
+
+    Set<String> courses() {
+        return new TreeSet<>(byCourse.keySet());
+    }
+
+    private static String key(String course) {
+        return course == null ? "" : course;
+    }
+
+    private static int bucket(double marks) {
+        return (int) Math.min(BUCKETS - 1, Math.max(0, Math.round(marks * 10)));
+    }
+}
+
+// Sharded Snapshot
+// The roster split by roll number into N files, <data>.0 to <data>.N-1, in the same line
+// format as the single snapshot, with N recorded in <data>.shards. Each shard has its own
+// writer thread and dirty flag: a save rewrites only the shards changed since the last one,
+// each through a forced temp file and DurableRename, and a load parses every shard at once.
+// Once the first save has moved a single-file snapshot into shards, the single file and its
+// delta are deleted, so a later start cannot pick them up in place of the shards.
+// Dirty flags are guarded by the owning StudentManager's lock.
+class ShardedSnapshot implements Closeable {
+    private final String base;
+    private final int count;
+    private final boolean[] dirty;
+    private final ExecutorService[] writers;
+    private int stored; // shard count of the files on disk, 0 for none or a single-file snapshot
+    private boolean rewriteAll;
+    private boolean fromSingleFile;
+
+    ShardedSnapshot(String base, int count) {
+        if (count < 1) throw new IllegalArgumentException("Need at least one shard");
+        this.base = base;
+        this.count = count;
+        dirty = new boolean[count];
+        writers = new ExecutorService[count];
+        for (int i = 0; i < count; i++) {
+            String name = "shard-writer-" + i;
+            writers[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    // Shard count recorded next to base, 0 when the snapshot is not sharded
+    static int storedCount(String base) throws IOException {
+        Path manifest = Paths.get(base + ".shards");
+        if (!Files.exists(manifest)) return 0;
+        try {
+            return Integer.parseInt(new String(Files.readAllBytes(manifest), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad shard count in " + manifest);
+        }
+    }
+
+    int shardOf(int rollNo) {
+        return Math.floorMod(rollNo, count);
+    }
+
+    void markDirty(int rollNo) {
+        dirty[shardOf(rollNo)] = true;
+    }
+
+    // True once load() has read the single snapshot file, whose delta then still applies
+    boolean fromSingleFile() {
+        return fromSingleFile;
+    }
+
+    int dirtyCount() {
+        int n = 0;
+        for (boolean d : dirty) if (d) n++;
+        return n;
+    }
+
+    // Every shard's students, parsed in parallel, one thread per shard. Files from another
+    // shard count, or the single snapshot file when there are no shards yet, are read as
+    // they are and every shard is rewritten on the next save.
+    List<List<Student>> load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        stored = storedCount(base);
+        if (stored > 0) {
+            for (int i = 0; i < stored; i++) files.add(shardFile(i));
+        } else if (Files.exists(Paths.get(base))) {
+            files.add(Paths.get(base));
+            fromSingleFile = true;
+        }
+        rewriteAll = stored != count;
+        List<Future<List<Student>>> parsed = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            parsed.add(writers[i % count].submit(() -> read(file)));
+        }
+        List<List<Student>> shards = new ArrayList<>();
+        try {
+            for (Future<List<Student>> f : parsed) shards.add(f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted loading shards");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                    : new IOException("Error loading shards: " + e.getCause(), e.getCause());
+        }
+        return shards;
+    }
+
+    // Called once the loaded students are installed, which marked their shards dirty
+    void loaded() {
+        Arrays.fill(dirty, rewriteAll);
+    }
+
+    // Writes every dirty shard from roster on that shard's writer thread, then the manifest if
+    // the layout changed. Returns the bytes written. A shard that fails stays dirty.
+    long save(Roster roster) throws IOException {
+        List<List<Student>> byShard = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) byShard.add(dirty[i] ? new ArrayList<>() : null);
+        for (Student s : roster) {
+            List<Student> shard = byShard.get(shardOf(s.getRollNo()));
+            if (shard != null) shard.add(s);
+        }
+        List<Future<Long>> writes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<Student> students = byShard.get(i);
+            Path file = shardFile(i);
+            writes.add(students == null ? null : writers[i].submit(() -> write(file, students)));
+        }
+        long bytes = 0;
+        IOException failure = null;
+        for (int i = 0; i < count; i++) {
+            if (writes.get(i) == null) continue;
+            try {
+                bytes += writes.get(i).get();
+                dirty[i] = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) failure = new InterruptedIOException("Interrupted saving shards");
+            } catch (ExecutionException e) {
+                if (failure == null) failure = e.getCause() instanceof IOException ? (IOException) e.getCause()
+                        : new IOException("Error saving shard " + i + ": " + e.getCause(), e.getCause());
+            }
+        }
+        if (failure != null) throw failure;
+        if (stored != count) {
+            write(Paths.get(base + ".shards"), (count + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            for (int i = count; i < stored; i++) Files.deleteIfExists(shardFile(i));
+            stored = count;
+        }
+        if (fromSingleFile) {
+            // every student is in the shards now, which the caller is about to empty the log against
+            Files.deleteIfExists(Paths.get(base));
+            Files.deleteIfExists(Paths.get(base + ".idx"));
+            Files.deleteIfExists(Paths.get(base + SnapshotDelta.EXTENSION));
+            DurableRename.syncDirectory(Paths.get(base));
+            fromSingleFile = false;
+        }
+        return bytes;
+    }
+
+    public void close() {
+        for (ExecutorService w : writers) w.shutdown();
+    }
+
+    private Path shardFile(int shard) {
+        return Paths.get(base + "." + shard);
+    }
+
+    private static List<Student> read(Path file) throws IOException {
+        List<Student> students = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.isEmpty()) students.add(Student.fromFileString(line));
+            }
+        } catch (NoSuchFileException e) {
+            // a shard with no students yet
+        }
+        return students;
+    }
+
+    // Forced before the rename: the change log is emptied once save() returns
+    private static long write(Path file, List<Student> students) throws IOException {
+        Path temp = Paths.get(file + ".tmp");
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(ch),
+                     StandardCharsets.UTF_8), 1 << 16)) {
+            for (Student s : students) {
+                out.write(s.toFileString());
+                out.newLine();
+            }
+            out.flush();
+            ch.force(true);
+        }
+        long size = Files.size(temp);
+        DurableRename.replace(temp, file);
+        return size;
+    }
+
+    private static void write(Path file, byte[] content) throws IOException {
+        Path temp = Paths.get(file + ".tmp");
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.wrap(content);
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        DurableRename.replace(temp, file);
+    }
+}
+
+// Snapshot Offset Index
+// Roll number -> byte offset of that student's line in the snapshot, sorted by roll number so a
+// lookup is a binary search and one positional read. saveToFile writes it next to the snapshot
+// as <file>.idx, stamped with the snapshot's length and modification time. A missing or stale
+// index is rebuilt by scanning the snapshot for line starts, which is far cheaper than parsing it,
+// and written back, since a save that only appends to the delta leaves the snapshot as it is.
+// Index layout: [magic][count][snapshot length][snapshot mtime][count roll numbers][count offsets]
+class SnapshotIndex implements Closeable {
+    private static final int MAGIC = 0x53494458; // "SIDX"
+    private static final int HEADER_SIZE = 24;
+
+    private final FileChannel data;
+    private final long dataLength;
+    private final int[] rollNos;
+    private final long[] offsets;
+
+    private SnapshotIndex(FileChannel data, long dataLength, int[] rollNos, long[] offsets) {
+        this.data = data;
+        this.dataLength = dataLength;
+        this.rollNos = rollNos;
+        this.offsets = offsets;
+    }
+
+    // Throws NoSuchFileException when there is no snapshot yet
+    static SnapshotIndex open(String dataFile) throws IOException {
+        FileChannel data = FileChannel.open(Paths.get(dataFile), StandardOpenOption.READ);
+        try {
+            long length = data.size();
+            SnapshotIndex index = readIndex(dataFile, data, length);
+            if (index != null) return index;
+            index = scan(data, length);
+            try {
+                write(dataFile, index.rollNos, index.offsets);
+            } catch (IOException e) {
+                // a read-only directory: the next lazy start scans again
+            }
+            return index;
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            throw e;
+        }
+    }
+
+    // Called once the snapshot is in place, so the stamp matches the file readers will open
+    static void write(String dataFile, int[] rollNos, long[] offsets) throws IOException {
+        int count = rollNos.length;
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) order[i] = (long) rollNos[i] << 32 | i;
+        Arrays.sort(order);
+        Path data = Paths.get(dataFile);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + count * 12);
+        buf.putInt(MAGIC).putInt(count).putLong(Files.size(data)).putLong(Files.getLastModifiedTime(data).toMillis());
+        for (long o : order) buf.putInt(rollNos[(int) o]);
+        for (long o : order) buf.putLong(offsets[(int) o]);
+        Path temp = Paths.get(dataFile + ".idx.tmp");
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+        }
+        Files.move(temp, Paths.get(dataFile + ".idx"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // null when the index is missing or does not describe this snapshot
+    private static SnapshotIndex readIndex(String dataFile, FileChannel data, long length) throws IOException {
+        Path path = Paths.get(dataFile + ".idx");
+        if (!Files.exists(path)) return null;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_SIZE) return null;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(ch, header, 0);
+            int count = header.getInt(4);
+            if (header.getInt(0) != MAGIC || count < 0 || size != HEADER_SIZE + count * 12L
+                    || header.getLong(8) != length
+                    || header.getLong(16) != Files.getLastModifiedTime(Paths.get(dataFile)).toMillis()) return null;
+            ByteBuffer body = ByteBuffer.allocate(count * 12);
+            readFully(ch, body, HEADER_SIZE);
+            int[] rollNos = new int[count];
+            long[] offsets = new long[count];
+            body.flip();
+            body.asIntBuffer().get(rollNos);
+            body.position(count * 4);
+            body.asLongBuffer().get(offsets);
+            return new SnapshotIndex(data, length, rollNos, offsets);
+        }
+    }
+
+    // Reads the leading roll number of every non-blank line
+    private static SnapshotIndex scan(FileChannel data, long length) throws IOException {
+        int[] rollNos = new int[1024];
+        long[] offsets = new long[1024];
+        int count = 0;
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        long position = 0;
+        long lineStart = 0;
+        boolean inRoll = true, negative = false, blank = true;
+        long roll = 0;
+        while (position < length) {
+            buf.clear();
+            int n = data.read(buf, position);
+            if (n < 0) break;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (b == '\n') {
+                    if (inRoll && !blank) throw new IOException("Malformed snapshot line at byte " + lineStart);
+                    lineStart = position + i + 1;
+                    inRoll = true;
+                    negative = false;
+                    blank = true;
+                    roll = 0;
+                } else if (inRoll) {
+                    if (b == ',' && !blank) {
+                        if (count == rollNos.length) {
+                            rollNos = Arrays.copyOf(rollNos, count * 2);
+                            offsets = Arrays.copyOf(offsets, count * 2);
+                        }
+                        rollNos[count] = (int) (negative ? -roll : roll);
+                        offsets[count++] = lineStart;
+                        inRoll = false;
+                    } else if (b == '-' && blank && !negative) {
+                        negative = true;
+                    } else if (b >= '0' && b <= '9') {
+                        roll = roll * 10 + (b - '0');
+                        blank = false;
+                        if (roll > (negative ? 1L << 31 : Integer.MAX_VALUE))
+                            throw new IOException("Roll number out of range at byte " + lineStart);
+                    } else if (b != '\r') {
+                        throw new IOException("Malformed snapshot line at byte " + lineStart);
+                    }
+                }
+            }
+            position += n;
+        }
+        if (inRoll && !blank) throw new IOException("Malformed snapshot line at byte " + lineStart);
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) order[i] = (long) rollNos[i] << 32 | i;
+        Arrays.sort(order);
+        int[] sortedRolls = new int[count];
+        long[] sortedOffsets = new long[count];
+        for (int i = 0; i < count; i++) {
+            sortedRolls[i] = rollNos[(int) order[i]];
+            sortedOffsets[i] = offsets[(int) order[i]];
+        }
+        return new SnapshotIndex(data, length, sortedRolls, sortedOffsets);
+    }
+
+    int size() {
+        return rollNos.length;
+    }
+
+    // The snapshot's copy of a student, or null when the snapshot does not have one
+    Student read(int rollNo) throws IOException {
+        int i = Arrays.binarySearch(rollNos, rollNo);
+        if (i < 0) return null;
+        long start = offsets[i];
+        ByteBuffer buf = ByteBuffer.allocate(256);
+        int end;
+        while (true) {
+            int n = data.read(buf, start + buf.position());
+            end = indexOf(buf, '\n');
+            if (end >= 0 || n < 0 || start + buf.position() >= dataLength) break;
+            if (!buf.hasRemaining()) buf = ByteBuffer.allocate(buf.capacity() * 2).put(buf.flip());
+        }
+        Student s = parse(buf.array(), 0, end >= 0 ? end : buf.position());
+        if (s == null || s.getRollNo() != rollNo) throw new IOException("Snapshot index is out of date");
+        return s;
+    }
+
+    // Line start offsets in file order, for splitting the snapshot into chunks of whole lines
+    long[] lineStarts() {
+        long[] starts = offsets.clone();
+        Arrays.sort(starts);
+        return starts;
+    }
+
+    long length() {
+        return dataLength;
+    }
+
+    // Parses every line in [from, to), which must start and end on line boundaries
+    List<Student> readLines(long from, long to) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate((int) (to - from));
+        readFully(data, buf, from);
+        byte[] bytes = buf.array();
+        List<Student> parsed = new ArrayList<>();
+        int lineStart = 0;
+        for (int i = 0; i <= bytes.length; i++) {
+            if (i == bytes.length || bytes[i] == '\n') {
+                Student s = parse(bytes, lineStart, i);
+                if (s != null) parsed.add(s);
+                lineStart = i + 1;
+            }
+        }
+        return parsed;
+    }
+
+    public void close() throws IOException {
+        data.close();
+    }
+
+    private static Student parse(byte[] bytes, int from, int to) {
+        if (to > from && bytes[to - 1] == '\r') to--;
+        if (to <= from) return null;
+        return Student.fromFileString(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+    }
+
+    private static int indexOf(ByteBuffer buf, char c) {
+        for (int i = 0; i < buf.position(); i++) {
+            if (buf.get(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) throw new EOFException();
+        }
+    }
+}
+
+// Snapshot Delta
+// Students changed since the single-file snapshot was last written whole, kept in <file>.delta
+// so that a save writes only them. Each save appends a batch, a U line per added or changed
+// student and a D line per deleted one, closed by a commit line; a batch torn by a crash has
+// no commit line and is cut off by the next save. Once the delta would outgrow half the
+// snapshot, the save rewrites the snapshot instead and deletes the delta.
+// The header carries the snapshot's length and modification time, like the offset index, so a
+// delta left behind by a crash between a rewrite and the delete no longer matches and is ignored.
+// Lines:  S,<snapshot length>,<snapshot mtime>  header   U,<student line>   D,<roll no>
+//         C,<lines in batch>  commit
+class SnapshotDelta {
+    static final String EXTENSION = ".delta";
+
+    private final Path data;
+    private final Path file;
+    private long committed; // end of the last committed batch, 0 when there is no delta yet
+
+    SnapshotDelta(String dataFile) {
+        data = Paths.get(dataFile);
+        file = Paths.get(dataFile + EXTENSION);
+    }
+
+    // Roll number -> latest student from every committed batch, null for a deleted one
+    Map<Integer, Student> load() throws IOException {
+        Map<Integer, Student> changes = new LinkedHashMap<>();
+        committed = 0;
+        if (!Files.exists(file) || !Files.exists(data)) return changes;
+        long size = Files.size(file);
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = br.readLine();
+            if (header == null) return changes;
+            long position = utf8Length(header) + 1;
+            if (!header.equals(header()) || position > size) {
+                System.out.println("Ignoring " + file + ", it was written for a different version of " + data + ".");
+                return changes;
+            }
+            committed = position;
+            List<String> batch = new ArrayList<>();
+            String line;
+            while ((line = br.readLine()) != null) {
+                position += utf8Length(line) + 1;
+                if (!line.startsWith("C,")) {
+                    batch.add(line);
+                    continue;
+                }
+                if (position > size || !line.equals("C," + batch.size())) break;
+                for (String change : batch) {
+                    if (change.startsWith("D,")) {
+                        changes.put(Integer.parseInt(change.substring(2)), null);
+                    } else {
+                        Student s = Student.fromFileString(change.substring(2));
+                        changes.put(s.getRollNo(), s);
+                    }
+                }
+                batch.clear();
+                committed = position;
+            }
+        }
+        return changes;
+    }
+
+    // Appends one forced batch with every roll number's student in roster, or a delete when
+    // roster no longer has it. Returns the bytes written, or -1, having written nothing, when
+    // there is no snapshot or the delta would outgrow half of it: rewrite the snapshot instead.
+    long append(Collection<Integer> rollNos, Roster roster) throws IOException {
+        if (!Files.exists(data)) return -1;
+        long limit = Files.size(data) / 2 - committed;
+        StringBuilder batch = new StringBuilder();
+        if (committed == 0) batch.append(header()).append('\n');
+        for (int rollNo : rollNos) {
+            Student s = roster.get(rollNo);
+            if (s == null) batch.append("D,").append(rollNo).append('\n');
+            else batch.append("U,").append(s.toFileString()).append('\n');
+            if (batch.length() > limit) return -1;
+        }
+        batch.append("C,").append(rollNos.size()).append('\n');
+        ByteBuffer bytes = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+        int written = bytes.remaining();
+        if (written > limit) return -1;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ch.truncate(committed);
+            long position = committed;
+            while (bytes.hasRemaining()) position += ch.write(bytes, position);
+            ch.force(true); // on disk before the change log is emptied
+        }
+        if (committed == 0) DurableRename.syncDirectory(file);
+        committed += written;
+        return written;
+    }
+
+    // Called once the snapshot has been rewritten whole, so the next batch starts a new delta
+    void reset() throws IOException {
+        if (Files.deleteIfExists(file)) DurableRename.syncDirectory(file);
+        committed = 0;
+    }
+
+    private String header() throws IOException {
+        return "S," + Files.size(data) + "," + Files.getLastModifiedTime(data).toMillis();
+    }
+
+    private static int utf8Length(String line) {
+        return line.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
+
+// Change Event
+// One add, update or delete as a change feed subscriber sees it. before is null for an
+// add and after for a delete. RESYNC means the events up to sequence are no longer held
+// by the feed: the subscriber should re-read StudentManager.snapshot() and carry on.
+final class ChangeEvent {
+    enum Type { ADD, UPDATE, DELETE, RESYNC }
+
+    final long sequence;
+    final Type type;
+    final int rollNo;
+    final Student before;
+    final Student after;
+    final long logSeq; // change log entry that must be durable before subscribers see this, 0 if already
+
+    ChangeEvent(long sequence, Type type, int rollNo, Student before, Student after, long logSeq) {
+        this.sequence = sequence;
+        this.type = type;
+        this.rollNo = rollNo;
+        this.before = before;
+        this.after = after;
+        this.logSeq = logSeq;
+    }
+
+    public String toString() {
+        return sequence + " " + type + (type == Type.RESYNC ? "" : " " + rollNo);
+    }
+}
+
+// Change Feed
+// Bounded ring of ChangeEvents for in-process subscribers (dashboards, a search index) so
+// they no longer re-read students.txt. StudentManager publishes one event per add, update
+// and delete while holding its lock, so there is a single producer at a time, and neither
+// side takes a lock: the producer writes the slot, then moves the published cursor; every
+// subscriber moves its own cursor as it consumes.
+//   - Backpressure: the producer does not overwrite an event a subscriber has not consumed.
+//     It waits instead, which holds up writers, so a subscriber must keep polling and must
+//     not write to the manager from the thread that consumes the feed. The wait is bounded
+//     by feed.stallMillis (default 5000): subscribers still in the way after that are
+//     dropped from backpressure and get a RESYNC on their next poll.
+//   - Durability: an event is only handed out once its change log entry is on disk, so a
+//     sequence number a subscriber has seen is never reused after a crash.
+//   - Resume: sequence numbers carry on across restarts (the log is replayed into the feed
+//     at startup), and named subscribers commit() their position to <data file>.feed. A
+//     subscriber that resumes further back than the ring reaches gets a RESYNC event first.
+class ChangeFeed {
+    private static final String SNAPSHOT_SEQUENCE = "snapshot.sequence";
+    private static final String SNAPSHOT_LOG_EVENTS = "snapshot.logEvents";
+    private static final String SUBSCRIBER = "subscriber.";
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("feed.stallMillis", 5000));
+
+    private final AtomicReferenceArray<ChangeEvent> slots;
+    private final int mask;
+    private final long first;                            // sequence of the first event this ring held
+    private final AtomicLong published = new AtomicLong(); // written by the producer only
+    private final AtomicLong durable = new AtomicLong();   // highest change log entry known to be on disk
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Path stateFile; // null: nothing is persisted
+    private final Properties state = new Properties();
+
+    // capacity is rounded up to a power of two
+    ChangeFeed(int capacity, Path stateFile) throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        this.stateFile = stateFile;
+        if (stateFile != null && Files.exists(stateFile)) {
+            try (Reader in = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+                state.load(in);
+            }
+        }
+        published.set(number(SNAPSHOT_SEQUENCE, 0));
+        first = published.get() + 1;
+    }
+
+    long head() {
+        return published.get();
+    }
+
+    // Sequence of the last event the data file includes, and how many events in the change
+    // log came before it (a crash between saving and emptying the log leaves them there)
+    long snapshotSequence() {
+        return number(SNAPSHOT_SEQUENCE, 0);
+    }
+
+    long snapshotLogEvents() {
+        return number(SNAPSHOT_LOG_EVENTS, 0);
+    }
+
+    synchronized void markSnapshot(long sequence, long logEvents) throws IOException {
+        state.setProperty(SNAPSHOT_SEQUENCE, Long.toString(sequence));
+        state.setProperty(SNAPSHOT_LOG_EVENTS, Long.toString(logEvents));
+        store();
+    }
+
+    // Producer side, one caller at a time. Waits while the slot still holds an event
+    // some subscriber has not consumed.
+    long publish(ChangeEvent.Type type, int rollNo, Student before, Student after, long logSeq) {
+        long seq = published.get() + 1;
+        long wrap = seq - slots.length();
+        if (wrap > 0 && slowest() < wrap) awaitSubscribers(wrap);
+        slots.lazySet(index(seq), new ChangeEvent(seq, type, rollNo, before, after, logSeq));
+        published.lazySet(seq);
+        return seq;
+    }
+
+    // Change log entries up to logSeq are on disk, so their events can be handed out
+    void durable(long logSeq) {
+        durable.accumulateAndGet(logSeq, Math::max);
+    }
+
+    // Picks up where the named subscriber last committed, or at the head for a new name
+    Subscription subscribe(String name) {
+        return subscribe(name, number(SUBSCRIBER + name, published.get()));
+    }
+
+    // Starts with the first event after sequence
+    Subscription subscribe(String name, long sequence) {
+        Subscription s = new Subscription(name, sequence);
+        subscriptions.add(s);
+        return s;
+    }
+
+    // Name -> committed sequence, for every subscriber that ever committed
+    synchronized Map<String, Long> committed() {
+        Map<String, Long> positions = new TreeMap<>();
+        for (String key : state.stringPropertyNames()) {
+            if (key.startsWith(SUBSCRIBER)) positions.put(key.substring(SUBSCRIBER.length()), number(key, 0));
+        }
+        return positions;
+    }
+
+    List<Subscription> subscriptions() {
+        return List.copyOf(subscriptions);
+    }
+
+    // Drops whoever still holds the slot once STALL_NANOS have passed, so a subscriber that
+    // stopped polling without close() cannot hold up writers for good
+    private void awaitSubscribers(long wrap) {
+        long deadline = System.nanoTime() + STALL_NANOS;
+        for (int spins = 0; slowest() < wrap; spins++) {
+            if (System.nanoTime() - deadline >= 0) {
+                for (Subscription s : subscriptions) {
+                    if (s.consumed.get() < wrap) s.drop();
+                }
+                return;
+            }
+            if (spins < 100) Thread.onSpinWait();
+            else LockSupport.parkNanos(50_000);
+        }
+    }
+
+    private long slowest() {
+        long min = Long.MAX_VALUE;
+        for (Subscription s : subscriptions) min = Math.min(min, s.consumed.get());
+        return min;
+    }
+
+    private int index(long seq) {
+        return (int) seq & mask;
+    }
+
+    private synchronized long number(String key, long otherwise) {
+        String value = state.getProperty(key);
+        return value == null ? otherwise : Long.parseLong(value.trim());
+    }
+
+    private synchronized void commit(String name, long sequence) throws IOException {
+        state.setProperty(SUBSCRIBER + name, Long.toString(sequence));
+        store();
+    }
+
+    // Temp file and rename, like the snapshot, so a crash leaves the old state or the new
+    private void store() throws IOException {
+        if (stateFile == null) return;
+        Path temp = Paths.get(stateFile + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            state.store(out, "Change feed positions");
+        }
+        Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // One consumer's view of the feed; use it from one thread
+    class Subscription implements AutoCloseable {
+        final String name;
+        private final AtomicLong consumed; // read by the producer for backpressure
+        private long position;             // last sequence handed out
+        private volatile boolean dropped;  // by the producer, for stalling it
+        private volatile boolean closed;
+
+        private Subscription(String name, long sequence) {
+            this.name = name;
+            this.position = sequence;
+            // a subscriber further back than the ring reaches cannot hold up the producer
+            this.consumed = new AtomicLong(Math.max(sequence, published.get() - slots.length()));
+        }
+
+        long position() {
+            return position;
+        }
+
+        // Events published but not yet consumed
+        long lag() {
+            return published.get() - position;
+        }
+
+        // The next event, or null if there is none yet
+        ChangeEvent poll() {
+            long next = position + 1;
+            if (next > published.get()) return null;
+            ChangeEvent e = slots.get(index(next));
+            if (dropped || next < first || e == null || e.sequence != next) {
+                // overwritten, dropped or from before this ring: skip to the oldest event still held
+                long oldest = Math.max(first, published.get() - slots.length() + 1);
+                position = oldest - 1;
+                consumed.set(position);
+                if (dropped && !closed) {
+                    dropped = false;
+                    subscriptions.add(this);
+                }
+                return new ChangeEvent(position, ChangeEvent.Type.RESYNC, 0, null, null, 0);
+            }
+            if (e.logSeq > durable.get()) return null;
+            position = next;
+            consumed.lazySet(next);
+            return e;
+        }
+
+        // Waits up to timeout for the next event; null if none arrived
+        ChangeEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            for (int spins = 0; ; spins++) {
+                ChangeEvent e = poll();
+                if (e != null) return e;
+                if (Thread.interrupted()) throw new InterruptedException();
+                long left = deadline - System.nanoTime();
+                if (left <= 0) return null;
+                if (spins < 100) Thread.onSpinWait();
+                else LockSupport.parkNanos(Math.min(left, 100_000));
+            }
+        }
+
+        // Saves the position, so subscribe(name) resumes after it on the next start
+        void commit() throws IOException {
+            ChangeFeed.this.commit(name, position);
+        }
+
+        // Stops holding up the producer; the committed position is kept
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+        }
+
+        private void drop() {
+            dropped = true;
+            subscriptions.remove(this);
+        }
+    }
+}
+
+// Student Manager Class
+// Writers change the trie and indexes under the manager's lock and then publish() a frozen
+// Roster; readers take the latest one from snapshot() without locking and never see a
+// half-applied change. The name index and course figures are writer-side and read under the lock.
+// A change is published before its log entry reaches disk; if the log then fails, every change
+// it had not confirmed is undone and the manager refuses further changes (see fail).
+class StudentManager implements RecordActions {
+    private final StudentTrie byRoll = new StudentTrie();
+    private final MarksRanking ranking = new MarksRanking();
+    private NameIndex nameIndex = new NameIndex();
+    private volatile GradingScheme scheme = Student.DEFAULT_GRADING; // every stored student is graded with it
+    private CourseStats courseStats = new CourseStats(scheme);
+    private long version;
+    private volatile Roster current = new Roster(0, new StudentTrie().snapshot(), new MarksRanking().snapshot());
+    private final String FILE_NAME;
+    private final String LOG_NAME;
+    private final ShardedSnapshot shards; // null: one snapshot file
+    private final SnapshotDelta delta;    // with one snapshot file, the changes saved since it was written whole
+    private final Set<Integer> unsaved = new HashSet<>(); // without shards, roll numbers changed since the last save
+    private static final long COMPACT_THRESHOLD = 1 << 20; // log bytes before folding into a snapshot
+
+    // Operation metrics, free unless -Dmetrics=true (see Metrics.java). Only the
+    // non-interactive operations are timed; the menu methods would include typing time.
+    private static final Metrics.Timer LOAD = Metrics.timer("load");
+    private static final Metrics.Timer SAVE = Metrics.timer("save");
+    private static final Metrics.Timer ADD = Metrics.timer("add");
+    private static final Metrics.Timer UPDATE = Metrics.timer("update");
+    private static final Metrics.Timer DELETE = Metrics.timer("delete");
+    private static final Metrics.Timer ADD_ALL = Metrics.timer("addAll");
+    private static final Metrics.Timer UPDATE_ALL = Metrics.timer("updateAll");
+    private static final Metrics.Timer DELETE_ALL = Metrics.timer("deleteAll");
+    private static final Metrics.Timer FIND = Metrics.timer("find");
+    private static final Metrics.Timer FIND_BY_NAME = Metrics.timer("findByName");
+    private static final Metrics.Timer SORT = Metrics.timer("sortByMarks");
+    private static final Metrics.Timer COURSE_STATS = Metrics.timer("courseSummary");
+    private static final Metrics.Counter BYTES_READ = Metrics.counter("bytes.read");
+    private static final Metrics.Counter BYTES_WRITTEN = Metrics.counter("bytes.written");
+    private static final Metrics.Counter RECORDS_PARSED = Metrics.counter("records.parsed");
+    private static final Metrics.Counter RECORDS_WRITTEN = Metrics.counter("records.written");
+    private Scanner sc = new Scanner(System.in);
+    private StudentLog log;
+
+    // Change feed: one event per add, update and delete, numbered across restarts. logEvents
+    // counts the events whose changes are in the current log; replaySkip of those were
+    // already numbered before the last snapshot (see compact)
+    private static final int FEED_CAPACITY = 1 << 16;
+    private ChangeFeed feed;
+    private long logEvents;
+    private long replaySkip;
+
+    // Changes published but not yet durable, oldest first, with what to restore if the log fails
+    private static final class Undo {
+        final long seq;
+        final Student before; // null for an add
+        final Student after;  // null for a delete
+
+        Undo(long seq, Student before, Student after) {
+            this.seq = seq;
+            this.before = before;
+            this.after = after;
+        }
+    }
+
+    private final ArrayDeque<Undo> undurable = new ArrayDeque<>(); // also its own lock, see durable
+    private volatile IOException failure; // the change log's failure, once it has failed
+    private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "student-log-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Lazy startup: the snapshot stays on disk behind its offset index while a background
+    // loader parses it. Until the load is done, point lookups go through resolve() and
+    // anything that needs the whole roster waits for readiness.
+    private static final int LOAD_CHUNK_LINES = 8192;
+    private SnapshotIndex snapshot;   // open while loading
+    private Set<Integer> settled;     // roll numbers whose in-memory state is final while loading
+    private volatile boolean ready = true;
+    private final CompletableFuture<Void> readiness = new CompletableFuture<>();
+    private final AtomicLong loadedCount = new AtomicLong();
+    private long loadTotal;
+    private Thread loader;
+
+    public StudentManager() {
+        this("students.txt", "students.log");
+    }
+
+    public StudentManager(String dataFile, String logFile) {
+        this(dataFile, logFile, false);
+    }
+
+    // lazy: returns once the snapshot's offset index is open and the log replayed,
+    // and parses the students themselves in the background
+    public StudentManager(String dataFile, String logFile, boolean lazy) {
+        this(dataFile, logFile, lazy, 0);
+    }
+
+    // shards > 0 keeps the snapshot as that many files (see ShardedSnapshot); they load in
+    // parallel up front, so lazy does not apply to them. With shards 0 a snapshot that is
+    // already sharded keeps its recorded count, since the single file no longer holds it.
+    public StudentManager(String dataFile, String logFile, boolean lazy, int shards) {
+        FILE_NAME = dataFile;
+        LOG_NAME = logFile;
+        if (shards == 0) shards = storedShards(dataFile);
+        this.shards = shards > 0 ? new ShardedSnapshot(dataFile, shards) : null;
+        delta = new SnapshotDelta(dataFile);
+        if (this.shards != null) loadShards();
+        else if (!lazy || !openSnapshot()) loadFromFile();
+        try {
+            feed = new ChangeFeed(FEED_CAPACITY, Paths.get(FILE_NAME + ".feed"));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error reading change feed positions, numbering restarts: " + e.getMessage());
+            try {
+                feed = new ChangeFeed(FEED_CAPACITY, null);
+            } catch (IOException cannotHappen) {
+                throw new UncheckedIOException(cannotHappen); // nothing to read
+            }
+        }
+        replaySkip = feed.snapshotLogEvents();
+        try {
+            log = StudentLog.open(LOG_NAME, this::replay);
+            // events become visible as the log reaches disk, even while a writer holds the lock
+            log.onDurable(this::durable);
+        } catch (IOException e) {
+            System.out.println("Error opening change log, changes will not be logged: " + e.getMessage());
+        }
+        if (logEvents < replaySkip) {
+            // the log was emptied after the last snapshot, so nothing in it had a number yet
+            logEvents = 0;
+            try {
+                feed.markSnapshot(feed.snapshotSequence(), 0);
+            } catch (IOException e) {
+                System.out.println("Error saving change feed positions: " + e.getMessage());
+            }
+        }
+        synchronized (this) {
+            publish();
+        }
+        if (snapshot == null) {
+            readiness.complete(null);
+        } else {
+            loader = new Thread(this::loadInBackground, "student-loader");
+            loader.setDaemon(true);
+            loader.start();
+        }
+        compactor.scheduleWithFixedDelay(this::compactIfNeeded, 30, 30, TimeUnit.SECONDS);
+    }
+
+    private static int storedShards(String dataFile) {
+        try {
+            int stored = ShardedSnapshot.storedCount(dataFile);
+            if (stored > 0) System.out.println(dataFile + " is kept in " + stored + " shards, loading them.");
+            return stored;
+        } catch (IOException e) {
+            // loading the single file instead could bring back students the shards have since changed
+            throw new UncheckedIOException("Cannot read the shard count for " + dataFile, e);
+        }
+    }
+
+    // Returns false when the snapshot cannot be indexed, so the caller loads it in full instead
+    private boolean openSnapshot() {
+        try {
+            Map<Integer, Student> changes = delta.load();
+            snapshot = SnapshotIndex.open(FILE_NAME);
+            settled = new HashSet<>();
+            loadTotal = snapshot.size();
+            ready = false;
+            applyDelta(changes); // settles the roll numbers it changed, so the loader skips their stale lines
+            return true;
+        } catch (NoSuchFileException e) {
+            System.out.println("No previous data found, starting fresh.");
+            return true;
+        } catch (IOException e) {
+            System.out.println("Cannot index " + FILE_NAME + ", loading it in full: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Parses runs of snapshot lines in parallel and installs them in file order, skipping
+    // roll numbers already settled so changes made during the load are never overwritten
+    private void loadInBackground() {
+        long t = LOAD.start();
+        SnapshotIndex index = snapshot;
+        List<Future<List<Student>>> chunks = new ArrayList<>();
+        ExecutorService parsers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread th = new Thread(r, "student-parser");
+            th.setDaemon(true);
+            return th;
+        });
+        try {
+            long[] starts = index.lineStarts();
+            for (int from = 0; from < starts.length; from += LOAD_CHUNK_LINES) {
+                int to = Math.min(from + LOAD_CHUNK_LINES, starts.length);
+                long begin = starts[from];
+                long end = to < starts.length ? starts[to] : index.length();
+                chunks.add(parsers.submit(() -> index.readLines(begin, end)));
+            }
+            for (Future<List<Student>> chunk : chunks) {
+                List<Student> parsed = chunk.get();
+                synchronized (this) {
+                    for (Student s : parsed) {
+                        if (!settled.contains(s.getRollNo()) && byRoll.get(s.getRollNo()) == null) install(s.regraded(scheme));
+                    }
+                    publish();
+                }
+                loadedCount.addAndGet(parsed.size());
+                RECORDS_PARSED.add(parsed.size());
+            }
+            synchronized (this) {
+                snapshot = null;
+                settled = null;
+                ready = true;
+            }
+            index.close();
+            if (Metrics.ENABLED) BYTES_READ.add(index.length());
+            readiness.complete(null);
+        } catch (ExecutionException e) {
+            readiness.completeExceptionally(e.getCause());
+        } catch (InterruptedException e) {
+            readiness.completeExceptionally(new InterruptedIOException("Loading interrupted"));
+        } catch (IOException e) {
+            readiness.completeExceptionally(e);
+        } finally {
+            // no interrupts: a parser interrupted mid-read would close the channel resolve() still uses
+            for (Future<List<Student>> chunk : chunks) chunk.cancel(false);
+            parsers.shutdown();
+            LOAD.stop(t);
+        }
+    }
+
+    // The in-memory copy of a student, read from the snapshot first if a lazy load has not
+    // reached it yet. Either way the roll number is settled from then on.
+    private synchronized Student resolve(int rollNo) {
+        Student s = byRoll.get(rollNo);
+        if (s != null || snapshot == null || !settled.add(rollNo)) return s;
+        try {
+            s = snapshot.read(rollNo);
+        } catch (IOException e) {
+            settled.remove(rollNo);
+            throw new UncheckedIOException(e);
+        }
+        if (s != null) {
+            install(s);
+            publish();
+        }
+        return s;
+    }
+
+    // Readiness: true once every student is in memory (always, unless started lazily)
+    boolean isReady() {
+        return ready;
+    }
+
+    // Fraction of the snapshot loaded so far, 0..1
+    double loadProgress() {
+        return ready || loadTotal == 0 ? 1 : Math.min(1, loadedCount.get() / (double) loadTotal);
+    }
+
+    // Blocks until a lazy load finishes; throws if it failed
+    void awaitReady() throws IOException {
+        try {
+            readiness.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for students to load");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Error loading students: " + cause, cause);
+        }
+    }
+
+    private void requireReady() {
+        if (ready) return;
+        try {
+            awaitReady();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void loadShards() {
+        long t = LOAD.start();
+        try {
+            int parsed = 0;
+            for (List<Student> shard : shards.load()) {
+                for (Student s : shard) install(s);
+                parsed += shard.size();
+            }
+            if (shards.fromSingleFile()) applyDelta(delta.load());
+            shards.loaded();
+            RECORDS_PARSED.add(parsed);
+            if (parsed == 0) System.out.println("No previous data found, starting fresh.");
+        } catch (IOException e) {
+            System.out.println("Error loading shards, starting fresh: " + e.getMessage());
+        } finally {
+            LOAD.stop(t);
+        }
+    }
+
+    private void loadFromFile() {
+        long t = LOAD.start();
+        try (BufferedReader br = new BufferedReader(new FileReader(FILE_NAME));
+             Progress progress = Progress.start("Loading", -1)) {
+            String line;
+            int parsed = 0;
+            while ((line = br.readLine()) != null) {
+                progress.step();
+                install(Student.fromFileString(line));
+                parsed++;
+            }
+            applyDelta(delta.load());
+            RECORDS_PARSED.add(parsed);
+            if (Metrics.ENABLED) BYTES_READ.add(Files.size(Paths.get(FILE_NAME)));
+        } catch (IOException e) {
+            System.out.println("No previous data found, starting fresh.");
+        } finally {
+            LOAD.stop(t);
+        }
+    }
+
+    // The snapshot's changes saved since it was last written whole, over the students just
+    // read from it. While loading lazily, each one is settled so the loader leaves it alone.
+    private void applyDelta(Map<Integer, Student> changes) {
+        for (Map.Entry<Integer, Student> c : changes.entrySet()) {
+            Student existing = byRoll.get(c.getKey());
+            if (settled != null) settled.add(c.getKey());
+            if (c.getValue() == null) {
+                if (existing != null) uninstall(existing);
+            } else if (existing != null) {
+                replace(existing, c.getValue());
+            } else {
+                install(c.getValue());
+            }
+        }
+    }
+
+    // Writes a temp file and renames it over the old snapshot so a crash never leaves a half-written file
+    private boolean saveToFile() {
+        long t = SAVE.start();
+        try {
+            return shards != null ? writeShards() : writeChanges();
+        } finally {
+            SAVE.stop(t);
+        }
+    }
+
+    // Only the students changed since the last save go to the delta, until it has grown to
+    // half the snapshot and rewriting the snapshot is the cheaper save
+    private boolean writeChanges() {
+        if (unsaved.isEmpty() && Files.exists(Paths.get(FILE_NAME))) return true;
+        try {
+            long bytes = delta.append(unsaved, current);
+            if (bytes >= 0) {
+                BYTES_WRITTEN.add(bytes);
+                RECORDS_WRITTEN.add(unsaved.size());
+                unsaved.clear();
+                return true;
+            }
+        } catch (IOException e) {
+            System.out.println("Error saving changes: " + e.getMessage());
+            return false;
+        }
+        return writeSnapshot();
+    }
+
+    // Only the shards touched since the last save are rewritten
+    private boolean writeShards() {
+        try {
+            long bytes = shards.save(current);
+            BYTES_WRITTEN.add(bytes);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error saving shards: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Also records where each line starts, for the offset index written next to the snapshot
+    private boolean writeSnapshot() {
+        Path target = Paths.get(FILE_NAME);
+        Path temp = Paths.get(FILE_NAME + ".tmp");
+        Roster roster = current;
+        int[] rollNos = new int[roster.size()];
+        long[] offsets = new long[roster.size()];
+        byte[] newline = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+        try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16);
+             Progress progress = Progress.start("Saving", roster.size())) {
+            long position = 0;
+            int i = 0;
+            for (Student s : roster) {
+                progress.step();
+                byte[] line = s.toFileString().getBytes(StandardCharsets.UTF_8);
+                rollNos[i] = s.getRollNo();
+                offsets[i++] = position;
+                out.write(line);
+                out.write(newline);
+                position += line.length + newline.length;
+            }
+            out.flush();
+            ch.force(true); // on disk before it replaces the snapshot and the log is emptied
+        } catch (IOException e) {
+            System.out.println("Error saving to file: " + e.getMessage());
+            return false;
+        }
+        try {
+            if (Metrics.ENABLED) {
+                BYTES_WRITTEN.add(Files.size(temp));
+                RECORDS_WRITTEN.add(roster.size());
+            }
+            DurableRename.replace(temp, target);
+            delta.reset(); // the snapshot holds every change now
+            unsaved.clear();
+        } catch (IOException e) {
+            System.out.println("Error saving to file: " + e.getMessage());
+            return false;
+        }
+        try {
+            SnapshotIndex.write(FILE_NAME, rollNos, offsets);
+        } catch (IOException e) {
+            System.out.println("Error writing snapshot index, it will be rebuilt on the next lazy start: " + e.getMessage());
+        }
+        return true;
+    }
+
+    // Replay is idempotent: adds and updates overwrite, deletes of missing records are ignored.
+    // Entries past the ones the snapshot already numbered go back into the change feed under
+    // the numbers they had before the restart.
+    private void replay(StudentLog.Entry e) {
+        Student existing = resolve(e.rollNo);
+        if (e.op == StudentLog.DELETE) {
+            if (existing != null) uninstall(existing);
+        } else if (existing != null) {
+            replace(existing, e.student);
+        } else {
+            install(e.student);
+        }
+        if (shards == null) unsaved.add(e.rollNo);
+        if (++logEvents > replaySkip) {
+            feed.publish(eventType(e.op), e.rollNo, existing, e.op == StudentLog.DELETE ? null : e.student, 0);
+        }
+    }
+
+    // Called under the lock right after the change is applied, so events go out in log order
+    private void emit(byte op, Student before, Student after, long logSeq) {
+        int rollNo = before != null ? before.getRollNo() : after.getRollNo();
+        if (shards == null) unsaved.add(rollNo);
+        feed.publish(eventType(op), rollNo, before, after, log == null ? 0 : logSeq);
+        logEvents++;
+        if (log != null) {
+            synchronized (undurable) {
+                undurable.add(new Undo(logSeq, before, after));
+            }
+        }
+    }
 
-// Abstract Class Person
-abstract class Person {
-    protected String name;
-    protected String email;
+    // Everything up to seq is on disk. Called by waiting writers and by the log's writer thread,
+    // which must not wait for the manager's lock, hence the separate one.
+    private void durable(long seq) {
+        synchronized (undurable) {
+            while (!undurable.isEmpty() && undurable.peekFirst().seq <= seq) undurable.pollFirst();
+        }
+        feed.durable(seq);
+    }
 
-    Person(String name, String email) {
-        this.name = name;
-        this.email = email;
+    // The log could not make a change durable. Undoes, newest first, every change it had not
+    // confirmed, so readers and saves only see what reached disk; later changes are refused.
+    private synchronized void fail(IOException e) {
+        if (failure != null) return;
+        failure = e;
+        durable(log.durableSeq()); // the writer thread may not have reported its last batch yet
+        synchronized (undurable) {
+            while (!undurable.isEmpty()) {
+                Undo u = undurable.pollLast();
+                if (u.before == null) uninstall(u.after);
+                else if (u.after == null) install(u.before);
+                else replace(u.after, u.before);
+            }
+        }
+        publish();
+        System.out.println("Change log failed, unsaved changes were undone: " + e.getMessage());
     }
 
-    public abstract void displayInfo();  // will override in Student
-}
+    private static ChangeEvent.Type eventType(byte op) {
+        switch (op) {
+            case StudentLog.ADD: return ChangeEvent.Type.ADD;
+            case StudentLog.UPDATE: return ChangeEvent.Type.UPDATE;
+            case StudentLog.DELETE: return ChangeEvent.Type.DELETE;
+            default: throw new IllegalArgumentException("Not a change: " + op);
+        }
+    }
 
-// Student Class
-class Student extends Person {
-    private int rollNo;
-    private String course;
-    private double marks;
-    private String grade;
+    // The apply* methods log a change and then apply it, returning the sequence to wait on,
+    // or -1 when the roll number is taken (add) or missing (update, delete)
+    private synchronized long applyAdd(Student s) throws IOException {
+        if (resolve(s.getRollNo()) != null) return -1;
+        long seq = logChange(StudentLog.ADD, s.getRollNo(), s);
+        Student added = s.regraded(scheme);
+        install(added);
+        publish();
+        emit(StudentLog.ADD, null, added, seq);
+        return seq;
+    }
 
-    public Student(int rollNo, String name, String email, String course, double marks) {
-        super(name, email);
-        this.rollNo = rollNo;
-        this.course = course;
-        this.marks = marks;
-        calculateGrade();
+    private synchronized long applyUpdate(int rollNo, String name, String email, String course, double marks)
+            throws IOException {
+        Student s = resolve(rollNo);
+        if (s == null) return -1;
+        Student updated = new Student(rollNo, name, email, course, marks).regraded(scheme);
+        long seq = logChange(StudentLog.UPDATE, rollNo, updated);
+        replace(s, updated);
+        publish();
+        emit(StudentLog.UPDATE, s, updated, seq);
+        return seq;
     }
 
-    public int getRollNo() { return rollNo; }
-    public String getName() { return name; }
-    public double getMarks() { return marks; }
+    private synchronized long applyDelete(int rollNo) throws IOException {
+        Student s = resolve(rollNo);
+        if (s == null) return -1;
+        long seq = logChange(StudentLog.DELETE, s.getRollNo(), null);
+        uninstall(s);
+        publish();
+        emit(StudentLog.DELETE, s, null, seq);
+        return seq;
+    }
 
-    public void setName(String name) { this.name = name; }
-    public void setEmail(String email) { this.email = email; }
-    public void setCourse(String course) { this.course = course; }
-    public void setMarks(double marks) { 
-        this.marks = marks; 
-        calculateGrade();
+    private long logChange(byte op, int rollNo, Student s) throws IOException {
+        if (failure != null) throw failure;
+        return log == null ? 0 : log.append(StudentLog.encode(op, rollNo, s));
     }
 
-    public void calculateGrade() {
-        if (marks >= 90) grade = "A+";
-        else if (marks >= 80) grade = "A";
-        else if (marks >= 70) grade = "B+";
-        else if (marks >= 60) grade = "B";
-        else grade = "C";
+    private boolean awaitDurable(long seq) throws IOException {
+        if (seq < 0) return false;
+        if (log != null) {
+            try {
+                log.awaitDurable(seq);
+            } catch (InterruptedIOException e) {
+                throw e; // the change is still on its way to disk
+            } catch (IOException e) {
+                fail(e);
+                throw e;
+            }
+            durable(seq);
+        }
+        return true;
     }
 
-    public void displayDetails() {
-        System.out.println("Roll No: " + rollNo);
-        System.out.println("Name: " + name);
-        System.out.println("Email: " + email);
-        System.out.println("Course: " + course);
-        System.out.println("Marks: " + marks);
-        System.out.println("Grade: " + grade);
-        System.out.println("------------------");
+    // Waits until every logged change is durable, leaving nothing to undo
+    private void syncLog() throws IOException {
+        if (failure != null) throw failure;
+        if (log == null) return;
+        try {
+            log.sync();
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+        durable(log.durableSeq());
     }
 
-    public void displayInfo() {
-        displayDetails();
+    // Every change goes through install, uninstall and replace, so the trie, the indexes and
+    // the course figures always agree; publish() then makes the change visible to readers
+    private void install(Student s) {
+        byRoll.put(s);
+        index(s);
+        if (shards != null) shards.markDirty(s.getRollNo());
     }
 
-    public String toFileString() {
-        return rollNo + "," + name + "," + email + "," + course + "," + marks;
+    private void uninstall(Student s) {
+        byRoll.remove(s.getRollNo());
+        unindex(s);
+        if (shards != null) shards.markDirty(s.getRollNo());
     }
 
-    public static Student fromFileString(String line) {
-        String[] parts = line.split(",");
-        return new Student(
-            Integer.parseInt(parts[0]),
-            parts[1],
-            parts[2],
-            parts[3],
-            Double.parseDouble(parts[4])
-        );
+    private void replace(Student old, Student updated) {
+        unindex(old);
+        byRoll.put(updated);
+        index(updated);
+        if (shards != null) shards.markDirty(updated.getRollNo());
     }
-}
 
-// Interface for Student Actions
-interface RecordActions {
-    void addStudent() throws IOException;
-    void deleteStudent() throws IOException;
-    void updateStudent() throws IOException;
-    void searchStudent();
-    void viewAllStudents();
-    void sortByMarks();
-}
+    private void index(Student s) {
+        nameIndex.add(s.getName(), s.getRollNo());
+        ranking.add(s);
+        courseStats.add(s);
+    }
+
+    private void unindex(Student s) {
+        nameIndex.remove(s.getName(), s.getRollNo());
+        ranking.remove(s);
+        courseStats.remove(s);
+    }
 
-// Loader Class for Multithreading
-class Loader implements Runnable {
-    public void run() {
-        System.out.print("Loading");
+    // Freezes the writer's trie and ranking as the version readers see from now on. Nodes
+    // made before this are copied rather than changed by later writes.
+    private void publish() {
+        current = new Roster(++version, byRoll.snapshot(), ranking.snapshot());
+    }
+
+    // The latest published version: consistent, immutable and free to read without locking
+    Roster snapshot() {
+        return current;
+    }
+
+    // Every add, update and delete from here on, and from before a restart (see ChangeFeed)
+    ChangeFeed changes() {
+        return feed;
+    }
+
+    // Folds the log into the snapshot, or its delta; the log is only emptied once they are safely on disk.
+    // The feed records which sequence the snapshot reaches in two steps around the truncate, so
+    // that a restart at any point numbers the log's events as before: first "the log still holds
+    // logEvents already numbered", then, once it is empty, "it holds none".
+    private synchronized void compact() throws IOException {
+        if (!ready) throw new IOException("Students are still loading");
+        syncLog();
+        if (!saveToFile()) return;
+        feed.markSnapshot(feed.head(), logEvents);
+        if (log != null) {
+            log.truncate();
+            feed.markSnapshot(feed.head(), 0);
+        }
+        logEvents = 0;
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (ready && log != null && log.size() > COMPACT_THRESHOLD) compact();
+        } catch (IOException e) {
+            System.out.println("Error compacting change log: " + e.getMessage());
+        }
+    }
+
+    // Non-interactive operations, shared by the menu methods below and the benchmark.
+    // Mutations return once the change is durable in the log.
+    boolean add(Student s) throws IOException {
+        long t = ADD.start();
+        try {
+            return awaitDurable(applyAdd(s));
+        } finally {
+            ADD.stop(t);
+        }
+    }
+
+    boolean update(int rollNo, String name, String email, String course, double marks) throws IOException {
+        long t = UPDATE.start();
+        try {
+            return awaitDurable(applyUpdate(rollNo, name, email, course, marks));
+        } finally {
+            UPDATE.stop(t);
+        }
+    }
+
+    boolean delete(int rollNo) throws IOException {
+        long t = DELETE.start();
+        try {
+            return awaitDurable(applyDelete(rollNo));
+        } finally {
+            DELETE.stop(t);
+        }
+    }
+
+    // Batch versions: every item is validated first, then the accepted ones go into the log
+    // as a single entry and are applied under one lock. Returns a status per item.
+    BatchStatus[] addAll(List<Student> batch) throws IOException {
+        long t = ADD_ALL.start();
         try {
-            for(int i=0;i<3;i++) {
-                Thread.sleep(500);
-                System.out.print(".");
+            return applyAddAll(batch);
+        } finally {
+            ADD_ALL.stop(t);
+        }
+    }
+
+    private BatchStatus[] applyAddAll(List<Student> batch) throws IOException {
+        BatchStatus[] status = new BatchStatus[batch.size()];
+        long seq;
+        synchronized (this) {
+            Set<Integer> seen = new HashSet<>(batch.size() * 2);
+            List<StudentLog.Entry> accepted = new ArrayList<>();
+            for (int i = 0; i < status.length; i++) {
+                Student s = batch.get(i);
+                if (!isValid(s)) status[i] = BatchStatus.INVALID;
+                else if (resolve(s.getRollNo()) != null || !seen.add(s.getRollNo())) status[i] = BatchStatus.DUPLICATE;
+                else {
+                    status[i] = BatchStatus.OK;
+                    accepted.add(new StudentLog.Entry(StudentLog.ADD, s.getRollNo(), s));
+                }
             }
-        } catch (InterruptedException e) {
-            System.out.println("Interrupted!");
+            seq = logBatch(accepted, status);
+            for (StudentLog.Entry e : accepted) install(e.student.regraded(scheme));
+            publish();
+            for (StudentLog.Entry e : accepted) emit(StudentLog.ADD, null, byRoll.get(e.rollNo), seq);
         }
-        System.out.println();
+        return awaitDurable(seq, status);
     }
-}
 
-// Student Manager Class
-class StudentManager implements RecordActions {
-    private List<Student> students = new ArrayList<>();
-    private Map<Integer, Student> studentMap = new HashMap<>();
-    private final String FILE_NAME = "students.txt";
-    private Scanner sc = new Scanner(System.in);
+    // Matched by each student's roll number
+    BatchStatus[] updateAll(List<Student> batch) throws IOException {
+        long t = UPDATE_ALL.start();
+        try {
+            return applyUpdateAll(batch);
+        } finally {
+            UPDATE_ALL.stop(t);
+        }
+    }
 
-    public StudentManager() {
-        loadFromFile();
+    private BatchStatus[] applyUpdateAll(List<Student> batch) throws IOException {
+        BatchStatus[] status = new BatchStatus[batch.size()];
+        long seq;
+        synchronized (this) {
+            List<StudentLog.Entry> accepted = new ArrayList<>();
+            for (int i = 0; i < status.length; i++) {
+                Student s = batch.get(i);
+                if (!isValid(s)) status[i] = BatchStatus.INVALID;
+                else if (resolve(s.getRollNo()) == null) status[i] = BatchStatus.NOT_FOUND;
+                else {
+                    status[i] = BatchStatus.OK;
+                    accepted.add(new StudentLog.Entry(StudentLog.UPDATE, s.getRollNo(), s));
+                }
+            }
+            seq = logBatch(accepted, status);
+            List<Student> before = new ArrayList<>(accepted.size());
+            for (StudentLog.Entry e : accepted) {
+                before.add(byRoll.get(e.rollNo));
+                replace(byRoll.get(e.rollNo), e.student.regraded(scheme));
+            }
+            publish();
+            for (int i = 0; i < accepted.size(); i++) {
+                emit(StudentLog.UPDATE, before.get(i), byRoll.get(accepted.get(i).rollNo), seq);
+            }
+        }
+        return awaitDurable(seq, status);
     }
 
-    private void loadFromFile() {
-        try (BufferedReader br = new BufferedReader(new FileReader(FILE_NAME))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                Student s = Student.fromFileString(line);
-                students.add(s);
-                studentMap.put(s.getRollNo(), s);
+    BatchStatus[] deleteAll(Collection<Integer> rollNos) throws IOException {
+        long t = DELETE_ALL.start();
+        try {
+            return applyDeleteAll(rollNos);
+        } finally {
+            DELETE_ALL.stop(t);
+        }
+    }
+
+    private BatchStatus[] applyDeleteAll(Collection<Integer> rollNos) throws IOException {
+        BatchStatus[] status = new BatchStatus[rollNos.size()];
+        long seq;
+        synchronized (this) {
+            Set<Integer> seen = new HashSet<>(rollNos.size() * 2);
+            List<StudentLog.Entry> accepted = new ArrayList<>();
+            int i = 0;
+            for (int rollNo : rollNos) {
+                if (resolve(rollNo) == null || !seen.add(rollNo)) status[i++] = BatchStatus.NOT_FOUND;
+                else {
+                    status[i++] = BatchStatus.OK;
+                    accepted.add(new StudentLog.Entry(StudentLog.DELETE, rollNo, null));
+                }
             }
+            seq = logBatch(accepted, status);
+            List<Student> removed = new ArrayList<>(accepted.size());
+            for (StudentLog.Entry e : accepted) {
+                removed.add(byRoll.get(e.rollNo));
+                uninstall(removed.get(removed.size() - 1));
+            }
+            publish();
+            for (Student s : removed) emit(StudentLog.DELETE, s, null, seq);
+        }
+        return awaitDurable(seq, status);
+    }
+
+    private static boolean isValid(Student s) {
+        return s != null && s.getName() != null && !s.getName().trim().isEmpty()
+                && s.getMarks() >= 0 && s.getMarks() <= 100;
+    }
+
+    private long logBatch(List<StudentLog.Entry> entries, BatchStatus[] status) throws IOException {
+        if (entries.isEmpty()) return -1;
+        try {
+            if (failure != null) throw failure;
+            return log == null ? 0 : log.append(StudentLog.encodeBatch(entries));
+        } catch (InterruptedIOException e) {
+            throw e;
         } catch (IOException e) {
-            System.out.println("No previous data found, starting fresh.");
+            throw batchFailed(status, e);
         }
     }
 
-    private void saveToFile() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(FILE_NAME))) {
-            for (Student s : students) {
-                bw.write(s.toFileString());
-                bw.newLine();
-            }
+    private BatchStatus[] awaitDurable(long seq, BatchStatus[] status) throws IOException {
+        try {
+            awaitDurable(seq);
+        } catch (InterruptedIOException e) {
+            throw e;
         } catch (IOException e) {
-            System.out.println("Error saving to file: " + e.getMessage());
+            throw batchFailed(status, e); // fail() has undone the batch
+        }
+        return status;
+    }
+
+    private static BatchFailedException batchFailed(BatchStatus[] status, IOException cause) {
+        for (int i = 0; i < status.length; i++) {
+            if (status[i] == BatchStatus.OK) status[i] = BatchStatus.FAILED;
+        }
+        return new BatchFailedException(status, cause);
+    }
+
+    Student find(int rollNo) {
+        long t = FIND.start();
+        try {
+            return ready ? current.get(rollNo) : resolve(rollNo);
+        } finally {
+            FIND.stop(t);
+        }
+    }
+
+    List<Student> findByName(String name) {
+        requireReady();
+        long t = FIND_BY_NAME.start();
+        try {
+            List<Student> found = new ArrayList<>();
+            synchronized (this) {
+                for (int rollNo : nameIndex.find(name)) found.add(byRoll.get(rollNo));
+            }
+            return found;
+        } finally {
+            FIND_BY_NAME.stop(t);
+        }
+    }
+
+    List<Student> findByPrefix(String prefix) {
+        requireReady();
+        List<Student> found = new ArrayList<>();
+        synchronized (this) {
+            for (int rollNo : nameIndex.findByPrefix(prefix)) found.add(byRoll.get(rollNo));
+        }
+        return found;
+    }
+
+    List<Student> sortedByMarks() {
+        requireReady();
+        long t = SORT.start();
+        try {
+            return current.sortedByMarks();
+        } finally {
+            SORT.stop(t);
+        }
+    }
+
+    CourseStats.Summary courseSummary(String course) {
+        requireReady();
+        long t = COURSE_STATS.start();
+        try {
+            synchronized (this) {
+                return courseStats.summary(course);
+            }
+        } finally {
+            COURSE_STATS.stop(t);
+        }
+    }
+
+    Set<String> courses() {
+        requireReady();
+        synchronized (this) {
+            return courseStats.courses();
+        }
+    }
+
+    // Switches every Student to scheme, regrades the roster and rebuilds the per-course figures
+    void regrade(GradingScheme scheme) {
+        requireReady();
+        synchronized (this) {
+            this.scheme = scheme;
+            byRoll.replaceAll(s -> s.regraded(scheme));
+            ranking.replaceAll(s -> byRoll.get(s.getRollNo()));
+            CourseStats stats = new CourseStats(scheme);
+            for (Student s : byRoll) stats.add(s);
+            courseStats = stats;
+            synchronized (undurable) {
+                // an undo must restore, and find installed, students of the new scheme
+                List<Undo> regraded = new ArrayList<>(undurable.size());
+                for (Undo u : undurable) {
+                    regraded.add(new Undo(u.seq, u.before == null ? null : u.before.regraded(scheme),
+                            u.after == null ? null : u.after.regraded(scheme)));
+                }
+                undurable.clear();
+                undurable.addAll(regraded);
+            }
+            publish();
+        }
+    }
+
+    // A snapshot written before a lazy load finished would lose the students not yet loaded
+    void save() throws IOException {
+        awaitReady();
+        compact();
+    }
+
+    void close() throws IOException {
+        compactor.shutdownNow();
+        if (loader != null) {
+            loader.interrupt();
+            try {
+                loader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                if (snapshot != null) snapshot.close();
+            }
         }
+        if (log != null) log.close();
+        if (shards != null) shards.close();
     }
 
     public void addStudent() {
         try {
             System.out.print("Enter Roll No: ");
             int rollNo = Integer.parseInt(sc.nextLine());
-            if(studentMap.containsKey(rollNo)) {
+            if(find(rollNo) != null) {
                 System.out.println("Roll No already exists!");
                 return;
             }
@@ -169,45 +2834,29 @@ class StudentManager implements RecordActions {
                 return;
             }
 
-            Thread loader = new Thread(new Loader());
-            loader.start();
-            loader.join();
-
-            Student s = new Student(rollNo, name, email, course, marks);
-            students.add(s);
-            studentMap.put(rollNo, s);
-            System.out.println("Student added successfully.");
+            if (add(new Student(rollNo, name, email, course, marks)))
+                System.out.println("Student added successfully.");
+            else
+                System.out.println("Roll No already exists!");
         } catch (NumberFormatException e) {
             System.out.println("Invalid input!");
-        } catch (InterruptedException e) {
-            System.out.println("Interrupted!");
+        } catch (IOException e) {
+            System.out.println("Error writing change log: " + e.getMessage());
         }
     }
 
     public void deleteStudent() {
+        if (!waitForLoad()) return;
         try {
             System.out.print("Enter name to delete: ");
             String name = sc.nextLine();
-            Student found = null;
-            for (Student s : students) {
-                if (s.getName().equalsIgnoreCase(name)) {
-                    found = s;
-                    break;
-                }
-            }
-            if (found == null) throw new StudentNotFoundException("Student not found!");
-
-            Thread loader = new Thread(new Loader());
-            loader.start();
-            loader.join();
-
-            students.remove(found);
-            studentMap.remove(found.getRollNo());
+            Iterator<Student> found = findByName(name).iterator();
+            if (!found.hasNext() || !delete(found.next().getRollNo())) throw new StudentNotFoundException("Student not found!");
             System.out.println("Student record deleted.");
         } catch (StudentNotFoundException e) {
             System.out.println(e.getMessage());
-        } catch (InterruptedException e) {
-            System.out.println("Interrupted!");
+        } catch (IOException e) {
+            System.out.println("Error writing change log: " + e.getMessage());
         }
     }
 
@@ -215,82 +2864,298 @@ class StudentManager implements RecordActions {
         try {
             System.out.print("Enter roll number to update: ");
             int rollNo = Integer.parseInt(sc.nextLine());
-            Student s = studentMap.get(rollNo);
-            if (s == null) throw new StudentNotFoundException("Student not found!");
+            if (find(rollNo) == null) throw new StudentNotFoundException("Student not found!");
 
             System.out.print("Enter new Name: ");
-            s.setName(sc.nextLine());
+            String name = sc.nextLine();
             System.out.print("Enter new Email: ");
-            s.setEmail(sc.nextLine());
+            String email = sc.nextLine();
             System.out.print("Enter new Course: ");
-            s.setCourse(sc.nextLine());
+            String course = sc.nextLine();
             System.out.print("Enter new Marks: ");
             double marks = Double.parseDouble(sc.nextLine());
             if(marks < 0 || marks > 100) {
                 System.out.println("Invalid marks!");
                 return;
             }
-            s.setMarks(marks);
-
-            Thread loader = new Thread(new Loader());
-            loader.start();
-            loader.join();
-
+            if (!update(rollNo, name, email, course, marks)) throw new StudentNotFoundException("Student not found!");
             System.out.println("Student record updated.");
         } catch (StudentNotFoundException e) {
             System.out.println(e.getMessage());
         } catch (NumberFormatException e) {
             System.out.println("Invalid input!");
-        } catch (InterruptedException e) {
-            System.out.println("Interrupted!");
+        } catch (IOException e) {
+            System.out.println("Error writing change log: " + e.getMessage());
         }
     }
 
     public void searchStudent() {
+        if (!waitForLoad()) return;
         System.out.print("Enter name to search: ");
         String name = sc.nextLine();
-        boolean found = false;
-        for (Student s : students) {
-            if (s.getName().equalsIgnoreCase(name)) {
-                System.out.println("Student Info:");
-                s.displayDetails();
-                found = true;
-            }
+        List<Student> found = findByName(name);
+        for (Student s : found) {
+            System.out.println("Student Info:");
+            s.displayDetails();
         }
-        if(!found) System.out.println("Student not found!");
+        if(found.isEmpty()) System.out.println("Student not found!");
+    }
+
+    public void searchByPrefix() {
+        if (!waitForLoad()) return;
+        System.out.print("Enter name prefix to search: ");
+        String prefix = sc.nextLine();
+        List<Student> found = findByPrefix(prefix);
+        for (Student s : found) s.displayDetails();
+        if(found.isEmpty()) System.out.println("Student not found!");
     }
 
     public void viewAllStudents() {
-        if(students.isEmpty()) {
+        if (!waitForLoad()) return;
+        Roster roster = snapshot();
+        if(roster.isEmpty()) {
             System.out.println("No student records found.");
             return;
         }
-        for (Student s : students) s.displayDetails();
+        for (Student s : roster) s.displayDetails();
     }
 
+    // Reads the ranking index, the stored order of students is left alone
     public void sortByMarks() {
-        students.sort((s1, s2) -> Double.compare(s2.getMarks(), s1.getMarks()));
+        if (!waitForLoad()) return;
         System.out.println("Sorted Student List by Marks:");
-        for (Student s : students) s.displayDetails();
+        for (Student s : sortedByMarks()) s.displayDetails();
+    }
+
+    public void showTopByMarks() {
+        if (!waitForLoad()) return;
+        try {
+            System.out.print("Enter how many top students to show: ");
+            int k = Integer.parseInt(sc.nextLine());
+            List<Student> top = snapshot().top(Math.max(k, 0));
+            if (top.isEmpty()) System.out.println("No student records found.");
+            for (Student s : top) s.displayDetails();
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid input!");
+        }
+    }
+
+    public void showRank() {
+        if (!waitForLoad()) return;
+        try {
+            System.out.print("Enter roll number: ");
+            int rollNo = Integer.parseInt(sc.nextLine());
+            Roster roster = snapshot();
+            Student s = roster.get(rollNo);
+            if (s == null) throw new StudentNotFoundException("Student not found!");
+            System.out.println(s.getName() + " is ranked " + roster.rankOf(s)
+                    + " of " + roster.size() + " by marks.");
+        } catch (StudentNotFoundException e) {
+            System.out.println(e.getMessage());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid input!");
+        }
+    }
+
+    public void showMarksRange() {
+        if (!waitForLoad()) return;
+        try {
+            System.out.print("Enter minimum marks: ");
+            double min = Double.parseDouble(sc.nextLine());
+            System.out.print("Enter maximum marks: ");
+            double max = Double.parseDouble(sc.nextLine());
+            List<Student> found = snapshot().range(min, max);
+            if (found.isEmpty()) System.out.println("No student found in that range.");
+            for (Student s : found) s.displayDetails();
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid input!");
+        }
+    }
+
+    // Empty input lists every course
+    public void showCourseStats() {
+        if (!waitForLoad()) return;
+        System.out.print("Enter course (blank for all): ");
+        String course = sc.nextLine().trim();
+        Collection<String> courses = course.isEmpty() ? courses() : List.of(course);
+        if (courses.isEmpty()) System.out.println("No student records found.");
+        for (String c : courses) {
+            CourseStats.Summary s = courseSummary(c);
+            if (s == null) {
+                System.out.println("No students in course " + c + ".");
+                continue;
+            }
+            System.out.println("Course: " + s.course);
+            System.out.println("Students: " + s.count);
+            System.out.printf("Average: %.2f (std dev %.2f)%n", s.mean, s.stdDev);
+            System.out.println("Min / Median / 90th / Max: " + s.min + " / " + s.median + " / " + s.p90 + " / " + s.max);
+            StringBuilder grades = new StringBuilder("Grades:");
+            for (int i = 0; i < s.grades.size(); i++) {
+                grades.append(' ').append(s.grades.get(i)).append('=').append(s.gradeCounts[i]);
+            }
+            System.out.println(grades);
+            System.out.println("------------------");
+        }
+    }
+
+    public void changeGradingScheme() {
+        if (!waitForLoad()) return;
+        System.out.println("Current scheme: " + scheme);
+        System.out.print("Enter new scheme (e.g. A=85,B=70,C=50,D): ");
+        try {
+            regrade(GradingScheme.parse(sc.nextLine()));
+            System.out.println("All students regraded.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid scheme: " + e.getMessage());
+        }
+    }
+
+    // Menu options that need the whole roster wait here while a lazy load finishes
+    private boolean waitForLoad() {
+        if (ready) return true;
+        if (!readiness.isDone())
+            System.out.printf("Still loading students (%.0f%%), please wait...%n", loadProgress() * 100);
+        try {
+            awaitReady();
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error loading students: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public void showLoadStatus() {
+        if (ready) System.out.println("All students loaded.");
+        else if (!readiness.isDone()) System.out.printf("Loading students: %.0f%% of %d%n", loadProgress() * 100, loadTotal);
+        else waitForLoad(); // prints why the load failed
+    }
+
+    public void showChangeFeed() {
+        System.out.println("Latest change: " + feed.head());
+        for (ChangeFeed.Subscription s : feed.subscriptions()) {
+            System.out.println("Subscriber " + s.name + ": at " + s.position() + ", " + s.lag() + " behind");
+        }
+        for (Map.Entry<String, Long> e : feed.committed().entrySet()) {
+            System.out.println("Subscriber " + e.getKey() + ": committed " + e.getValue());
+        }
     }
 
     public void saveAndExit() {
-        Thread loader = new Thread(new Loader());
+        compactor.shutdownNow();
         try {
-            loader.start();
-            loader.join();
-        } catch (InterruptedException e) {
-            System.out.println("Interrupted!");
+            save();
+            close();
+        } catch (IOException e) {
+            System.out.println("Error saving change log: " + e.getMessage());
         }
-        saveToFile();
         System.out.println("Saved and exiting.");
     }
 }
 
+// Benchmark
+// Run with: javac -d out StudentRecord.java Bench.java GradingScheme.java Metrics.java && java -cp out StudentBenchmark [sizes]
+// Data and log files go to a temp directory. Mutations wait for the log fsync, so they run fewer ops.
+// Add -Dmetrics=true to measure the instrumented build; the operation metrics are printed at the end.
+class StudentBenchmark {
+    private static final String VARIANT = "StudentRecord MVCC trie";
+
+    public static void main(String[] args) throws Exception {
+        Bench.silenceStdout();
+        Bench.header();
+        Path dir = Files.createTempDirectory("student-bench");
+        for (int size : Bench.sizes(args, "1000,10000,100000,1000000")) {
+            String data = dir.resolve("students-" + size + ".txt").toString();
+            String log = dir.resolve("students-" + size + ".log").toString();
+            writeRoster(data, size);
+
+            StudentManager[] loaded = new StudentManager[1];
+            Bench.runWithSetup(VARIANT, "load", size, 3, i -> {
+                if (loaded[0] != null) loaded[0].close();
+                Files.deleteIfExists(Paths.get(log));
+            }, i -> loaded[0] = new StudentManager(data, log));
+            StudentManager manager = loaded[0];
+
+            int ops = Math.min(size, 100_000);
+            int durableOps = Math.min(size, 500);
+            Bench.run(VARIANT, "search-by-roll", size, ops, i -> manager.find(1 + i % size));
+            Bench.run(VARIANT, "search-by-name", size, ops, i -> manager.findByName(Bench.name(i)));
+            Bench.run(VARIANT, "sort", size, 5, i -> manager.sortedByMarks());
+            Bench.run(VARIANT, "snapshot-scan", size, 5, i -> {
+                for (Student s : manager.snapshot()) s.getMarks();
+            });
+            Bench.run(VARIANT, "course-stats", size, ops, i -> manager.courseSummary(Bench.course(i)));
+            Bench.runCold(VARIANT, "add", size, durableOps, i -> manager.add(student(size + 1 + i)));
+            Bench.runCold(VARIANT, "delete", size, durableOps, i -> manager.delete(1 + i));
+            Bench.runCold(VARIANT, "save", size, 3, i -> manager.save());
+            Bench.runWithSetup(VARIANT, "save-one-changed", size, 3,
+                    i -> manager.update(size - i, "Changed", "changed@mail.com", "MBA", 50),
+                    i -> manager.save());
+            manager.close();
+
+            // The ring on its own: one publish and one poll per op, one subscriber
+            ChangeFeed ring = new ChangeFeed(1 << 16, null);
+            ChangeFeed.Subscription reader = ring.subscribe("bench", ring.head());
+            Student changed = student(1);
+            Bench.run(VARIANT, "feed-publish-poll", size, ops, i -> {
+                ring.publish(ChangeEvent.Type.UPDATE, 1, changed, changed, 0);
+                reader.poll();
+            });
+
+            // The first lazy start writes the offset index it scanned for, later ones only read that
+            StudentManager[] lazy = new StudentManager[1];
+            Bench.Op closeLazy = i -> {
+                if (lazy[0] != null) lazy[0].close();
+            };
+            Bench.runWithSetup(VARIANT, "open-lazy", size, 3, closeLazy, i -> lazy[0] = new StudentManager(data, log, true));
+            Bench.run(VARIANT, "find-while-load", size, Math.min(size, 1000), i -> lazy[0].find(1 + (int) (i * 7919L % size)));
+            Bench.runWithSetup(VARIANT, "load-lazy", size, 3, closeLazy, i -> {
+                lazy[0] = new StudentManager(data, log, true);
+                lazy[0].awaitReady();
+            });
+            lazy[0].close();
+
+            // Sharded: the first start reads the single file and writes every shard; after
+            // that loads parse all shards at once and a save after one change rewrites one
+            String sharded = "StudentRecord 8 shards";
+            String shardLog = dir.resolve("students-" + size + "-shards.log").toString();
+            StudentManager[] shardedManager = {new StudentManager(data, shardLog, false, 8)};
+            Bench.runCold(sharded, "save-all", size, 1, i -> shardedManager[0].save());
+            Bench.runWithSetup(sharded, "load", size, 3, i -> shardedManager[0].close(),
+                    i -> shardedManager[0] = new StudentManager(data, shardLog, false, 8));
+            Bench.runWithSetup(sharded, "save-one-changed", size, 3,
+                    i -> shardedManager[0].update(1 + i, "Changed", "changed@mail.com", "MBA", 50),
+                    i -> shardedManager[0].save());
+            shardedManager[0].close();
+        }
+        if (Metrics.ENABLED) Bench.note(Metrics.report());
+    }
+
+    private static void writeRoster(String file, int size) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(file))) {
+            for (int i = 1; i <= size; i++) {
+                bw.write(student(i).toFileString());
+                bw.newLine();
+            }
+        }
+    }
+
+    private static Student student(int i) {
+        return new Student(i, Bench.name(i), Bench.email(i), Bench.course(i), Bench.marks(i));
+    }
+}
+
 // Main Class
 public class StudentRecord{
+    // --lazy starts answering straight away and loads students.txt in the background;
+    // --shards N keeps it as N files instead (students.txt.0 ...), saving only changed ones
     public static void main(String[] args) {
-        StudentManager manager = new StudentManager();
+        boolean lazy = false;
+        int shards = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--lazy")) lazy = true;
+            else if (args[i].equals("--shards") && i + 1 < args.length) shards = Integer.parseInt(args[++i]);
+        }
+        StudentManager manager = new StudentManager("students.txt", "students.log", lazy, shards);
         Scanner sc = new Scanner(System.in);
         int choice;
 
@@ -303,6 +3168,14 @@ public class StudentRecord{
             System.out.println("5. Sort by Marks");
             System.out.println("6. Update Student");
             System.out.println("7. Save and Exit");
+            System.out.println("8. Search by Name Prefix");
+            System.out.println("9. Top Students by Marks");
+            System.out.println("10. Rank of Student");
+            System.out.println("11. Students in Marks Range");
+            System.out.println("12. Course Statistics");
+            System.out.println("13. Change Grading Scheme");
+            System.out.println("14. Loading Status");
+            System.out.println("15. Change Feed Status");
             System.out.print("Enter choice: ");
             choice = Integer.parseInt(sc.nextLine());
 
@@ -314,6 +3187,14 @@ public class StudentRecord{
                 case 5 -> manager.sortByMarks();
                 case 6 -> manager.updateStudent();
                 case 7 -> manager.saveAndExit();
+                case 8 -> manager.searchByPrefix();
+                case 9 -> manager.showTopByMarks();
+                case 10 -> manager.showRank();
+                case 11 -> manager.showMarksRange();
+                case 12 -> manager.showCourseStats();
+                case 13 -> manager.changeGradingScheme();
+                case 14 -> manager.showLoadStatus();
+                case 15 -> manager.showChangeFeed();
                 default -> System.out.println("Invalid choice!");
             }
 
@@ -1,13 +1,40 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 // STUDENT CLASS
 class Student {
-    int rollNo;
-    String name;
-    String email;
-    String course;
-    double marks;
+    final int rollNo;
+    private String name;
+    private String email;
+    private String course;
+    private double marks;
+
+    // Line this student came from in its CSV file (see IncrementalCsvFile), -1 until saved there.
+    // The fields only change through the setters, which mark the student dirty so the next
+    // save writes it.
+    int slot = -1;
+    boolean dirty = true;
 
     public Student(int rollNo, String name, String email, String course, double marks) {
         this.rollNo = rollNo;
@@ -17,86 +44,2855 @@ class Student {
         this.marks = marks;
     }
 
-    public void display() {
-        System.out.println("Roll No: " + rollNo);
-        System.out.println("Name: " + name);
-        System.out.println("Email: " + email);
-        System.out.println("Course: " + course);
-        System.out.println("Marks: " + marks);
-        System.out.println("----------------");
+    public String getName() { return name; }
+    public String getEmail() { return email; }
+    public String getCourse() { return course; }
+    public double getMarks() { return marks; }
+
+    // Name and marks are indexed, so change them through StudentManager once a student is added
+    public void setName(String name) {
+        this.name = name;
+        dirty = true;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+        dirty = true;
+    }
+
+    public void setCourse(String course) {
+        this.course = course;
+        dirty = true;
+    }
+
+    public void setMarks(double marks) {
+        this.marks = marks;
+        dirty = true;
+    }
+
+    public void display() {
+        System.out.print(describe());
+    }
+
+    // The lines display() prints, so a whole roster can be formatted off the printing thread
+    public String describe() {
+        String nl = System.lineSeparator();
+        return "Roll No: " + rollNo + nl
+                + "Name: " + name + nl
+                + "Email: " + email + nl
+                + "Course: " + course + nl
+                + "Marks: " + marks + nl
+                + "----------------" + nl;
+    }
+
+    // Convert Student to CSV string
+    public String toCSV() {
+        return rollNo + "," + name + "," + email + "," + course + "," + marks;
+    }
+
+    // Create Student from CSV string
+    public static Student fromCSV(String line) {
+        String[] parts = line.split(",");
+        return new Student(
+                Integer.parseInt(parts[0]),
+                parts[1],
+                parts[2],
+                parts[3],
+                Double.parseDouble(parts[4])
+        );
+    }
+}
+
+// FILE UTIL CLASS
+class FileUtil {
+    static final String BINARY_EXTENSION = ".dat";
+    static final String COMPRESSED_EXTENSION = ".snap";
+
+    // File I/O metrics, free unless -Dmetrics=true (see Metrics.java). A mapped .dat file is
+    // read by the page cache, so its bytes and records are not counted, only its opening.
+    static final Metrics.Counter BYTES_READ = Metrics.counter("bytes.read");
+    static final Metrics.Counter BYTES_WRITTEN = Metrics.counter("bytes.written");
+    static final Metrics.Counter RECORDS_PARSED = Metrics.counter("records.parsed");
+    static final Metrics.Counter RECORDS_WRITTEN = Metrics.counter("records.written");
+    private static final Metrics.Timer DAT_OPEN = Metrics.timer("dat.open");
+    private static final Metrics.Timer DAT_WRITE = Metrics.timer("dat.write");
+
+    public static boolean isBinaryFile(String filename) {
+        return filename.endsWith(BINARY_EXTENSION);
+    }
+
+    public static boolean isCompressedFile(String filename) {
+        return filename.endsWith(COMPRESSED_EXTENSION);
+    }
+
+    // Picks the reader from the file extension
+    public static List<Student> readStudents(String filename) {
+        if (isBinaryFile(filename)) return readStudentsFromBinaryFile(filename);
+        if (isCompressedFile(filename)) return readStudentsFromCompressedFile(filename);
+        return readStudentsFromFile(filename);
+    }
+
+    public static List<Student> readStudentsFromFile(String filename) {
+        return readStudentsFromFile(new IncrementalCsvFile(filename));
+    }
+
+    // The CSV with its journal replayed; file remembers the slots so it can save incrementally
+    public static List<Student> readStudentsFromFile(IncrementalCsvFile file) {
+        try {
+            return file.load();
+        } catch (IOException e) {
+            System.out.println("Error reading file: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    // Maps the binary file; records are decoded only when the list is read
+    public static List<Student> readStudentsFromBinaryFile(String filename) {
+        long t = DAT_OPEN.start();
+        try {
+            try {
+                return new BinaryStudentList(BinaryStudentStore.open(filename), filename);
+            } catch (IOException | IllegalStateException e) {
+                System.out.println("Error reading file: " + e.getMessage());
+                return new ArrayList<>();
+            }
+        } finally {
+            DAT_OPEN.stop(t);
+        }
+    }
+
+    // Decodes every block; CompressedStudentFile.find reads a single student without that
+    public static List<Student> readStudentsFromCompressedFile(String filename) {
+        if (!new File(filename).exists()) return new ArrayList<>();
+        try (CompressedStudentFile file = CompressedStudentFile.open(filename)) {
+            return file.readAll();
+        } catch (IOException | IllegalStateException e) {
+            System.out.println("Error reading file: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    public static void writeStudentsToFile(String filename, List<Student> students) {
+        if (isBinaryFile(filename)) {
+            writeStudentsToBinaryFile(filename, students);
+            return;
+        }
+        if (isCompressedFile(filename)) {
+            try {
+                CompressedStudentFile.write(filename, students);
+            } catch (IOException e) {
+                System.out.println("Error writing file: " + e.getMessage());
+            }
+            return;
+        }
+        try {
+            IncrementalCsvFile.writeAll(filename, students);
+        } catch (IOException e) {
+            System.out.println("Error writing file: " + e.getMessage());
+        }
+    }
+
+    // Records already living in this file were written in place, so only flush them
+    private static void writeStudentsToBinaryFile(String filename, List<Student> students) {
+        long t = DAT_WRITE.start();
+        try {
+            if (students instanceof BinaryStudentList && ((BinaryStudentList) students).isBackedBy(filename)) {
+                try {
+                    ((BinaryStudentList) students).flush();
+                } catch (IOException e) {
+                    System.out.println("Error writing file: " + e.getMessage());
+                }
+                return;
+            }
+            // Built beside the old file and renamed over it, so a failed write leaves the old roster
+            Path temp = Paths.get(filename + ".tmp");
+            try {
+                try (BinaryStudentStore store = BinaryStudentStore.create(temp.toString())) {
+                    for (Student s : students) {
+                        store.append(s);
+                    }
+                }
+                RECORDS_WRITTEN.add(students.size());
+                BYTES_WRITTEN.add(Files.size(temp));
+                Files.move(temp, Paths.get(filename), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Error writing file: " + e.getMessage());
+            }
+        } finally {
+            DAT_WRITE.stop(t);
+        }
+    }
+
+    // CSV -> binary conversion, returns the number of records written
+    // Reads through readStudentsFromFile so changes still in the CSV's journal are included
+    public static int convertCsvToBinary(String csvFile, String binaryFile) {
+        int count = 0;
+        try (BinaryStudentStore store = BinaryStudentStore.create(binaryFile)) {
+            for (Student s : readStudentsFromFile(csvFile)) {
+                store.append(s);
+                count++;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error converting file: " + e.getMessage());
+        }
+        return count;
+    }
+
+    // Any format -> any format by extension, e.g. to or from a compressed snapshot
+    public static int convert(String from, String to) {
+        List<Student> students = readStudents(from);
+        writeStudentsToFile(to, students);
+        return students.size();
+    }
+
+    // Binary -> CSV conversion, returns the number of records written
+    public static int convertBinaryToCsv(String binaryFile, String csvFile) {
+        int count = 0;
+        try (BinaryStudentStore store = BinaryStudentStore.open(binaryFile)) {
+            IncrementalCsvFile.writeAll(csvFile, new BinaryStudentList(store, binaryFile));
+            count = store.size();
+        } catch (IOException | IllegalStateException e) {
+            System.out.println("Error converting file: " + e.getMessage());
+        }
+        return count;
+    }
+}
+
+// INCREMENTAL CSV SAVE
+// A CSV data file plus <file>.journal, the changes saved since the CSV was last written whole.
+// Every loaded student remembers its slot, the CSV line it came from or the number it was
+// given when first journaled. A save appends a batch of lines for the dirty, added and
+// deleted students and ends it with a commit line, so a crash mid-save loses at most that
+// batch and never touches the CSV. When the roster has been reordered, or the journal would
+// outgrow half the CSV, the save rewrites the CSV to a temp file, renames it over the old one
+// and drops the journal.
+//
+// Journal lines:  B,<csv bytes>,<csv crc>  header    U,<slot>,<csv>  added or changed
+//                 D,<slot>  deleted                    C,<lines in batch>  commit
+// The header ties the journal to one version of the CSV; a journal left behind by a crash
+// between the rename and the delete no longer matches and is ignored.
+class IncrementalCsvFile {
+    static final String JOURNAL_EXTENSION = ".journal";
+
+    private static final Metrics.Timer CSV_LOAD = Metrics.timer("csv.load");
+    private static final Metrics.Timer CSV_JOURNAL = Metrics.timer("csv.journal");
+    private static final Metrics.Timer CSV_WRITE = Metrics.timer("csv.write");
+
+    private final Path file;
+    private final Path journal;
+    private long baseBytes;
+    private long baseCrc;
+    private long journalBytes; // end of the last committed batch; 0 starts a new journal
+    private BitSet live = new BitSet(); // slots holding a student
+    private int nextSlot;
+
+    IncrementalCsvFile(String filename) {
+        file = Paths.get(filename);
+        journal = Paths.get(filename + JOURNAL_EXTENSION);
+    }
+
+    boolean isFor(String filename) {
+        return file.toAbsolutePath().normalize().equals(Paths.get(filename).toAbsolutePath().normalize());
+    }
+
+    // Reads the CSV, then replays the journal; every returned student starts clean
+    List<Student> load() throws IOException {
+        long t = CSV_LOAD.start();
+        try {
+            List<Student> bySlot = new ArrayList<>(); // deleted slots hold null
+            CRC32 crc = new CRC32();
+            baseBytes = 0;
+            if (Files.exists(file)) {
+                try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                        new CheckedInputStream(Files.newInputStream(file), crc), StandardCharsets.UTF_8), 1 << 16)) {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        if (!line.trim().isEmpty()) bySlot.add(Student.fromCSV(line));
+                    }
+                }
+                baseBytes = Files.size(file);
+                FileUtil.BYTES_READ.add(baseBytes);
+                FileUtil.RECORDS_PARSED.add(bySlot.size());
+            }
+            baseCrc = crc.getValue();
+            journalBytes = 0;
+            if (Files.exists(journal)) replay(bySlot);
+
+            List<Student> students = new ArrayList<>(bySlot.size());
+            live = new BitSet(bySlot.size());
+            for (int slot = 0; slot < bySlot.size(); slot++) {
+                Student s = bySlot.get(slot);
+                if (s == null) continue;
+                s.slot = slot;
+                s.dirty = false;
+                live.set(slot);
+                students.add(s);
+            }
+            nextSlot = bySlot.size();
+            return students;
+        } finally {
+            CSV_LOAD.stop(t);
+        }
+    }
+
+    // Applies every batch that reached its commit line. A torn batch at the end is skipped
+    // and cut off by the next save.
+    private void replay(List<Student> bySlot) throws IOException {
+        long size = Files.size(journal);
+        FileUtil.BYTES_READ.add(size);
+        try (BufferedReader br = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            String header = br.readLine();
+            if (header == null) return;
+            long position = utf8Length(header) + 1;
+            if (!header.equals(header()) || position > size) {
+                System.out.println("Ignoring " + journal + ", it was written for a different version of " + file + ".");
+                return;
+            }
+            journalBytes = position;
+            List<String> batch = new ArrayList<>();
+            String line;
+            while ((line = br.readLine()) != null) {
+                position += utf8Length(line) + 1;
+                if (!line.startsWith("C,")) {
+                    batch.add(line);
+                    continue;
+                }
+                if (position > size || !line.equals("C," + batch.size())) break;
+                for (String change : batch) apply(bySlot, change);
+                batch.clear();
+                journalBytes = position;
+            }
+        }
+    }
+
+    private static void apply(List<Student> bySlot, String change) {
+        int comma = change.indexOf(',', 2);
+        int slot = Integer.parseInt(change.substring(2, comma < 0 ? change.length() : comma));
+        while (bySlot.size() <= slot) bySlot.add(null);
+        if (change.charAt(0) == 'D') {
+            bySlot.set(slot, null);
+            return;
+        }
+        bySlot.set(slot, Student.fromCSV(change.substring(comma + 1)));
+        FileUtil.RECORDS_PARSED.increment();
+    }
+
+    // Saves what changed since the last load or save and returns the bytes written. Students
+    // without a slot are new; slots missing from the roster were deleted.
+    long save(List<Student> students) throws IOException {
+        List<Student> changed = new ArrayList<>();
+        BitSet kept = new BitSet(nextSlot);
+        boolean reordered = false;
+        boolean added = false;
+        int last = -1;
+        for (Student s : students) {
+            if (s.slot < 0) {
+                added = true;
+                changed.add(s);
+                continue;
+            }
+            // new students are only journaled at the end, and old ones must keep their order
+            if (added || s.slot <= last || !live.get(s.slot)) reordered = true;
+            last = s.slot;
+            kept.set(s.slot);
+            if (s.dirty) changed.add(s);
+        }
+        BitSet deleted = (BitSet) live.clone();
+        deleted.andNot(kept);
+        if (reordered) return compact(students);
+        if (changed.isEmpty() && deleted.isEmpty()) return 0;
+
+        long limit = baseBytes / 2 - journalBytes;
+        StringBuilder batch = new StringBuilder();
+        if (journalBytes == 0) batch.append(header()).append('\n');
+        int lines = 0;
+        for (int slot = deleted.nextSetBit(0); slot >= 0; slot = deleted.nextSetBit(slot + 1)) {
+            batch.append("D,").append(slot).append('\n');
+            lines++;
+        }
+        int slot = nextSlot;
+        for (Student s : changed) {
+            batch.append("U,").append(s.slot < 0 ? slot++ : s.slot).append(',').append(s.toCSV()).append('\n');
+            lines++;
+            if (batch.length() > limit) return compact(students);
+        }
+        batch.append("C,").append(lines).append('\n');
+        ByteBuffer bytes = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+        if (bytes.remaining() > limit) return compact(students);
+
+        int written = bytes.remaining();
+        long t = CSV_JOURNAL.start();
+        try (FileChannel ch = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ch.truncate(journalBytes);
+            long position = journalBytes;
+            while (bytes.hasRemaining()) position += ch.write(bytes, position);
+            ch.force(false);
+        } finally {
+            CSV_JOURNAL.stop(t);
+        }
+        FileUtil.BYTES_WRITTEN.add(written);
+        FileUtil.RECORDS_WRITTEN.add(changed.size());
+        // Only now that the batch is durable do the students take their slots
+        journalBytes += written;
+        for (Student s : changed) {
+            if (s.slot < 0) {
+                s.slot = nextSlot++;
+                live.set(s.slot);
+            }
+            s.dirty = false;
+        }
+        live.andNot(deleted);
+        return written;
+    }
+
+    // Rewrites the CSV and drops the journal; slots are renumbered to the new lines
+    private long compact(List<Student> students) throws IOException {
+        CRC32 crc = new CRC32();
+        long bytes = write(file, students, crc);
+        Files.deleteIfExists(journal);
+        int slot = 0;
+        for (Student s : students) {
+            s.slot = slot++;
+            s.dirty = false;
+        }
+        live = new BitSet(slot);
+        live.set(0, slot);
+        nextSlot = slot;
+        baseBytes = bytes;
+        baseCrc = crc.getValue();
+        journalBytes = 0;
+        return bytes;
+    }
+
+    // Whole-file write for students that were not loaded from this file, e.g. a conversion.
+    // Their slots are left alone, since they may belong to another file.
+    static void writeAll(String filename, List<Student> students) throws IOException {
+        write(Paths.get(filename), students, new CRC32());
+        Files.deleteIfExists(Paths.get(filename + JOURNAL_EXTENSION));
+    }
+
+    private static long write(Path target, List<Student> students, CRC32 crc) throws IOException {
+        long t = CSV_WRITE.start();
+        try {
+            Path temp = Paths.get(target + ".tmp");
+            try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                new StudentExporter().export(students, s -> true, StudentExporter.Field.ALL,
+                        StudentExporter.Format.CSV, new ChecksumChannel(ch, crc));
+                ch.force(false);
+            }
+            long bytes = Files.size(temp);
+            FileUtil.BYTES_WRITTEN.add(bytes);
+            FileUtil.RECORDS_WRITTEN.add(students.size());
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return bytes;
+        } finally {
+            CSV_WRITE.stop(t);
+        }
+    }
+
+    private String header() {
+        return "B," + baseBytes + "," + baseCrc;
+    }
+
+    private static int utf8Length(String line) {
+        return line.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    // Checksums exactly the bytes the file channel accepts
+    private static final class ChecksumChannel implements WritableByteChannel {
+        private final FileChannel out;
+        private final CRC32 crc;
+
+        ChecksumChannel(FileChannel out, CRC32 crc) {
+            this.out = out;
+            this.crc = crc;
+        }
+
+        public int write(ByteBuffer src) throws IOException {
+            int start = src.position();
+            int n = out.write(src);
+            ByteBuffer written = src.duplicate();
+            written.position(start).limit(start + n);
+            crc.update(written);
+            return n;
+        }
+
+        public boolean isOpen() {
+            return out.isOpen();
+        }
+
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
+
+// BINARY STUDENT STORE
+// Fixed-width records behind a small header, accessed through a memory-mapped file.
+// Layout: header | record 0 | record 1 | ...
+// Records are mapped in segments of SEGMENT_RECORDS, so no single mapping nears the 2 GB
+// limit and no record straddles two; like OffHeapMemory's first page, the first segment
+// doubles until it is full and the file then grows a segment at a time.
+// Strings are stored as a 2-byte UTF-8 length followed by the bytes, padded to the slot size.
+// The header carries a generation that starts at a random value and changes with every write,
+// so a file kept beside the data (the roll number index) can tell it no longer describes it,
+// even when a rewrite kept the record count.
+class BinaryStudentStore implements Closeable {
+    static final int MAGIC = 0x53545544; // "STUD"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    static final int NAME_SIZE = 64;
+    static final int EMAIL_SIZE = 96;
+    static final int COURSE_SIZE = 32;
+
+    private static final int ROLL_OFFSET = 0;
+    private static final int MARKS_OFFSET = 4;
+    private static final int NAME_OFFSET = 12;
+    private static final int EMAIL_OFFSET = NAME_OFFSET + NAME_SIZE;
+    private static final int COURSE_OFFSET = EMAIL_OFFSET + EMAIL_SIZE;
+    static final int RECORD_SIZE = COURSE_OFFSET + COURSE_SIZE;
+
+    // header fields
+    private static final int MAGIC_AT = 0;
+    private static final int VERSION_AT = 4;
+    private static final int RECORD_SIZE_AT = 6;
+    private static final int COUNT_AT = 8;
+    private static final int GENERATION_AT = 16; // 0 in files written before it existed
+
+    private static final int MIN_CAPACITY = 1024;
+    private static final int SEGMENT_SHIFT = 18;
+    private static final int SEGMENT_RECORDS = 1 << SEGMENT_SHIFT; // about 51 MiB of records
+    private static final int SEGMENT_MASK = SEGMENT_RECORDS - 1;
+    private static final int MOVE_RECORDS = 64 * 1024 / RECORD_SIZE;
+
+    private final FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private int capacity; // records that fit in the current mappings
+    private int count;
+    private long generation;
+
+    private BinaryStudentStore(FileChannel channel, int count) throws IOException {
+        this.channel = channel;
+        this.count = count;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        generation = header.getLong(GENERATION_AT);
+        if (generation == 0) newGeneration();
+        ensureCapacity(Math.max(MIN_CAPACITY, count));
+    }
+
+    // Opens an existing store, or creates an empty one if the file is missing or empty
+    public static BinaryStudentStore open(String filename) throws IOException {
+        FileChannel ch = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (ch.size() == 0) {
+                return init(ch);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && ch.read(header, header.position()) > 0) { }
+            if (header.position() < HEADER_SIZE
+                    || header.getInt(MAGIC_AT) != MAGIC
+                    || header.getShort(VERSION_AT) != VERSION
+                    || header.getShort(RECORD_SIZE_AT) != RECORD_SIZE) {
+                throw new IllegalStateException(filename + " is not a student data file");
+            }
+            int count = header.getInt(COUNT_AT);
+            if (count < 0 || ch.size() < HEADER_SIZE + (long) count * RECORD_SIZE) {
+                throw new IllegalStateException(filename + " is truncated");
+            }
+            return new BinaryStudentStore(ch, count);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    // Creates an empty store, replacing any existing file
+    public static BinaryStudentStore create(String filename) throws IOException {
+        FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return init(ch);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private static BinaryStudentStore init(FileChannel ch) throws IOException {
+        BinaryStudentStore store = new BinaryStudentStore(ch, 0);
+        store.header.putInt(MAGIC_AT, MAGIC);
+        store.header.putShort(VERSION_AT, VERSION);
+        store.header.putShort(RECORD_SIZE_AT, (short) RECORD_SIZE);
+        store.header.putInt(COUNT_AT, 0);
+        store.newGeneration();
+        return store;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    public int rollNoAt(int index) {
+        return segment(checkIndex(index)).getInt(at(index) + ROLL_OFFSET);
+    }
+
+    public double marksAt(int index) {
+        return segment(checkIndex(index)).getDouble(at(index) + MARKS_OFFSET);
+    }
+
+    public Student read(int index) {
+        ByteBuffer segment = segment(checkIndex(index));
+        int at = at(index);
+        return new Student(
+                segment.getInt(at + ROLL_OFFSET),
+                readString(segment, at + NAME_OFFSET),
+                readString(segment, at + EMAIL_OFFSET),
+                readString(segment, at + COURSE_OFFSET),
+                segment.getDouble(at + MARKS_OFFSET)
+        );
+    }
+
+    // Overwrites one record in place
+    public void write(int index, Student s) {
+        writeRecord(checkIndex(index), s.rollNo, s.getMarks(), encode(s));
+    }
+
+    public void append(Student s) throws IOException {
+        insert(count, s);
+    }
+
+    // Overwrites the record at 'to' with a raw copy of the record at 'from'
+    public void copy(int from, int to) {
+        move(checkIndex(from), checkIndex(to), 1);
+        changed();
+    }
+
+    // Inserts at index, shifting the following records up by one slot
+    public void insert(int index, Student s) throws IOException {
+        if (index < 0 || index > count) throw new IndexOutOfBoundsException("Index: " + index);
+        byte[][] fields = encode(s); // fail before anything on disk moves
+        ensureCapacity(count + 1);
+        move(index, index + 1, count - index);
+        writeRecord(index, s.rollNo, s.getMarks(), fields);
+        setCount(count + 1);
+    }
+
+    // Removes the record at index, shifting the following records down by one slot
+    public void remove(int index) {
+        checkIndex(index);
+        move(index + 1, index, count - index - 1);
+        setCount(count - 1);
+    }
+
+    // Drops every record from index on; with copy() this removes many records in one pass
+    public void truncate(int index) {
+        if (index < 0 || index > count) throw new IndexOutOfBoundsException("Index: " + index);
+        setCount(index);
+    }
+
+    public void force() {
+        header.force();
+        for (MappedByteBuffer segment : segments) segment.force();
+    }
+
+    // Flushes and trims the file to the records actually in use
+    public void close() throws IOException {
+        try {
+            force();
+            header = null;
+            segments = null;
+            channel.truncate(HEADER_SIZE + (long) count * RECORD_SIZE);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void setCount(int newCount) {
+        count = newCount;
+        header.putInt(COUNT_AT, count);
+        changed();
+    }
+
+    private void changed() {
+        header.putLong(GENERATION_AT, ++generation);
+    }
+
+    // A new file, or one from before generations, starts from a random one so it cannot
+    // match an index written for some other file at the same path
+    private void newGeneration() {
+        generation = ThreadLocalRandom.current().nextLong() | 1;
+        header.putLong(GENERATION_AT, generation);
+    }
+
+    private void ensureCapacity(int needed) throws IOException {
+        if (needed <= capacity) return;
+        if (capacity < SEGMENT_RECORDS) {
+            int first = (int) Math.min(SEGMENT_RECORDS, Math.max(needed, capacity * 2L));
+            if (segments.length > 0) segments[0].force();
+            segments = new MappedByteBuffer[] {map(0, first)};
+            capacity = first;
+            if (needed <= capacity) return;
+        }
+        int old = segments.length;
+        segments = Arrays.copyOf(segments, (int) (((long) needed + SEGMENT_MASK) >>> SEGMENT_SHIFT));
+        for (int i = old; i < segments.length; i++) segments[i] = map(i, SEGMENT_RECORDS);
+        capacity = (int) Math.min(Integer.MAX_VALUE, (long) segments.length << SEGMENT_SHIFT);
+    }
+
+    private MappedByteBuffer map(int segment, int records) throws IOException {
+        long position = HEADER_SIZE + ((long) segment << SEGMENT_SHIFT) * RECORD_SIZE;
+        return channel.map(FileChannel.MapMode.READ_WRITE, position, (long) records * RECORD_SIZE);
+    }
+
+    // Moves n records from slot 'from' to slot 'to', handling overlap in either direction.
+    // Each copy stays inside one source and one destination segment.
+    private void move(int from, int to, int n) {
+        if (n <= 0 || from == to) return;
+        byte[] chunk = new byte[Math.min(n, MOVE_RECORDS) * RECORD_SIZE];
+        if (to < from) {
+            for (int done = 0; done < n; ) {
+                int src = from + done, dst = to + done;
+                int len = Math.min(Math.min(n - done, MOVE_RECORDS),
+                        Math.min(SEGMENT_RECORDS - (src & SEGMENT_MASK), SEGMENT_RECORDS - (dst & SEGMENT_MASK)));
+                copyRecords(src, dst, len, chunk);
+                done += len;
+            }
+        } else {
+            for (int left = n; left > 0; ) {
+                int srcEnd = from + left - 1, dstEnd = to + left - 1;
+                int len = Math.min(Math.min(left, MOVE_RECORDS),
+                        Math.min((srcEnd & SEGMENT_MASK) + 1, (dstEnd & SEGMENT_MASK) + 1));
+                copyRecords(srcEnd - len + 1, dstEnd - len + 1, len, chunk);
+                left -= len;
+            }
+        }
+    }
+
+    private void copyRecords(int from, int to, int n, byte[] chunk) {
+        int bytes = n * RECORD_SIZE;
+        segment(from).get(at(from), chunk, 0, bytes);
+        segment(to).put(at(to), chunk, 0, bytes);
+    }
+
+    private void writeRecord(int index, int rollNo, double marks, byte[][] fields) {
+        ByteBuffer segment = segment(index);
+        int at = at(index);
+        segment.putInt(at + ROLL_OFFSET, rollNo);
+        segment.putDouble(at + MARKS_OFFSET, marks);
+        writeString(segment, at + NAME_OFFSET, fields[0]);
+        writeString(segment, at + EMAIL_OFFSET, fields[1]);
+        writeString(segment, at + COURSE_OFFSET, fields[2]);
+        changed();
+    }
+
+    private static byte[][] encode(Student s) {
+        return new byte[][] {
+                encodeField("name", s.getName(), NAME_SIZE),
+                encodeField("email", s.getEmail(), EMAIL_SIZE),
+                encodeField("course", s.getCourse(), COURSE_SIZE)
+        };
+    }
+
+    private static byte[] encodeField(String field, String value, int slotSize) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > slotSize - 2) {
+            throw new IllegalArgumentException("Student " + field + " too long for binary record: " + value);
+        }
+        return bytes;
+    }
+
+    private static void writeString(ByteBuffer segment, int at, byte[] bytes) {
+        segment.putShort(at, (short) bytes.length);
+        segment.put(at + 2, bytes);
+    }
+
+    private static String readString(ByteBuffer segment, int at) {
+        byte[] bytes = new byte[segment.getShort(at)];
+        segment.get(at + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int checkIndex(int index) {
+        return Objects.checkIndex(index, count);
+    }
+
+    private ByteBuffer segment(int index) {
+        return segments[index >>> SEGMENT_SHIFT];
+    }
+
+    // Position of the record inside its segment
+    private static int at(int index) {
+        return (index & SEGMENT_MASK) * RECORD_SIZE;
+    }
+}
+
+// LIST VIEW OVER A BINARY STORE
+// Reads decode a fresh Student each time, writes go straight to the mapped file.
+class BinaryStudentList extends AbstractList<Student> implements RandomAccess {
+    private final BinaryStudentStore store;
+    private final String filename;
+
+    BinaryStudentList(BinaryStudentStore store, String filename) {
+        this.store = store;
+        this.filename = filename;
+    }
+
+    boolean isBackedBy(String filename) {
+        return this.filename.equals(filename);
+    }
+
+    public Student get(int index) {
+        return store.read(index);
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public Student set(int index, Student s) {
+        Student old = store.read(index);
+        store.write(index, s);
+        return old;
+    }
+
+    public void add(int index, Student s) {
+        try {
+            store.insert(index, s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        modCount++;
+    }
+
+    public Student remove(int index) {
+        Student old = store.read(index);
+        store.remove(index);
+        modCount++;
+        return old;
+    }
+
+    // One pass that slides the kept records down, rather than shifting the tail per removal
+    public boolean removeIf(Predicate<? super Student> filter) {
+        int n = store.size();
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            if (filter.test(store.read(i))) continue;
+            if (kept != i) store.copy(i, kept);
+            kept++;
+        }
+        if (kept == n) return false;
+        store.truncate(kept);
+        modCount++;
+        return true;
+    }
+
+    public void flush() throws IOException {
+        store.force();
+    }
+}
+
+// COMPRESSED SNAPSHOT
+// Read-only roster file, much smaller than CSV or the fixed-width .dat format:
+//   - students sorted by roll number and cut into blocks of BLOCK_SIZE
+//   - inside a block each field is stored as its own column: roll numbers as deltas,
+//     marks in hundredths, course and email domain as ids into file-wide dictionaries,
+//     names and the rest of each email as strings
+//   - each block is deflated on its own, and the block index at the end of the file gives
+//     every block's roll number range, offset and CRC, so one block can be found and decoded
+//     without inflating the rest of the file
+// Layout: header | block 0 | block 1 | ... | dictionaries | block index
+// Numbers in blocks and dictionaries are unsigned LEB128 varints; strings are a varint of
+// (UTF-8 length + 1), 0 meaning null, followed by the bytes.
+class CompressedStudentFile implements Closeable {
+    static final int MAGIC = 0x534E4150; // "SNAP"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int BLOCK_SIZE = 4096;
+    private static final int INDEX_ENTRY_SIZE = 32;
+
+    // header fields
+    private static final int MAGIC_AT = 0;
+    private static final int VERSION_AT = 4;
+    private static final int COUNT_AT = 8;
+    private static final int BLOCKS_AT = 12;
+    private static final int DICTIONARIES_AT = 16;
+    private static final int INDEX_AT = 24;
+
+    private static final Metrics.Timer SNAP_READ = Metrics.timer("snap.read");
+    private static final Metrics.Timer SNAP_WRITE = Metrics.timer("snap.write");
+
+    // One entry of the block index
+    private static final class Block {
+        int firstRoll, lastRoll, compressedLength, rawLength, count, crc;
+        long offset;
+    }
+
+    private final FileChannel channel;
+    private final int count;
+    private final Block[] blocks;
+    private final String[] courses;
+    private final String[] domains;
+
+    private CompressedStudentFile(FileChannel channel, int count, Block[] blocks, String[] courses, String[] domains) {
+        this.channel = channel;
+        this.count = count;
+        this.blocks = blocks;
+        this.courses = courses;
+        this.domains = domains;
+    }
+
+    // Writes a new file through a temp file and a rename, so a failed write keeps the old one
+    public static void write(String filename, List<Student> students) throws IOException {
+        long t = SNAP_WRITE.start();
+        try {
+            Student[] sorted = students.toArray(new Student[0]);
+            Arrays.sort(sorted, Comparator.comparingInt(s -> s.rollNo)); // stable: duplicates keep their order
+            Map<String, Integer> courseIds = new LinkedHashMap<>();
+            Map<String, Integer> domainIds = new LinkedHashMap<>();
+            Path temp = Paths.get(filename + ".tmp");
+            try (FileChannel ch = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long position = HEADER_SIZE;
+                int blockCount = (sorted.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+                ByteBuffer index = ByteBuffer.allocate(blockCount * INDEX_ENTRY_SIZE);
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                CRC32 crc = new CRC32();
+                byte[] compressed = new byte[64 * 1024];
+                try {
+                    for (int from = 0; from < sorted.length; from += BLOCK_SIZE) {
+                        int to = Math.min(from + BLOCK_SIZE, sorted.length);
+                        byte[] raw = encodeBlock(sorted, from, to, courseIds, domainIds);
+                        crc.reset();
+                        crc.update(raw);
+                        deflater.reset();
+                        deflater.setInput(raw);
+                        deflater.finish();
+                        int length = 0;
+                        while (!deflater.finished()) {
+                            if (length == compressed.length) compressed = Arrays.copyOf(compressed, length * 2);
+                            length += deflater.deflate(compressed, length, compressed.length - length);
+                        }
+                        index.putInt(sorted[from].rollNo).putInt(sorted[to - 1].rollNo).putLong(position)
+                                .putInt(length).putInt(raw.length).putInt(to - from).putInt((int) crc.getValue());
+                        position += writeFully(ch, ByteBuffer.wrap(compressed, 0, length), position);
+                    }
+                } finally {
+                    deflater.end();
+                }
+
+                ByteArrayOutputStream dictionaries = new ByteArrayOutputStream();
+                writeDictionary(dictionaries, courseIds.keySet());
+                writeDictionary(dictionaries, domainIds.keySet());
+                long dictionariesAt = position;
+                position += writeFully(ch, ByteBuffer.wrap(dictionaries.toByteArray()), position);
+                long indexAt = position;
+                writeFully(ch, index.flip(), position);
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC_AT, MAGIC).putShort(VERSION_AT, VERSION).putInt(COUNT_AT, sorted.length)
+                        .putInt(BLOCKS_AT, blockCount).putLong(DICTIONARIES_AT, dictionariesAt).putLong(INDEX_AT, indexAt);
+                writeFully(ch, header, 0);
+                FileUtil.BYTES_WRITTEN.add(position + (long) blockCount * INDEX_ENTRY_SIZE);
+                FileUtil.RECORDS_WRITTEN.add(sorted.length);
+            }
+            Files.move(temp, Paths.get(filename), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            SNAP_WRITE.stop(t);
+        }
+    }
+
+    public static CompressedStudentFile open(String filename) throws IOException {
+        FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            long size = ch.size();
+            ByteBuffer header = readAt(ch, 0, (int) Math.min(HEADER_SIZE, size));
+            if (header.capacity() < HEADER_SIZE || header.getInt(MAGIC_AT) != MAGIC
+                    || header.getShort(VERSION_AT) != VERSION) {
+                throw new IllegalStateException(filename + " is not a compressed student file");
+            }
+            int count = header.getInt(COUNT_AT);
+            int blockCount = header.getInt(BLOCKS_AT);
+            long dictionariesAt = header.getLong(DICTIONARIES_AT);
+            long indexAt = header.getLong(INDEX_AT);
+            if (count < 0 || blockCount < 0 || dictionariesAt < HEADER_SIZE || indexAt < dictionariesAt
+                    || indexAt + (long) blockCount * INDEX_ENTRY_SIZE != size) {
+                throw new IllegalStateException(filename + " is truncated");
+            }
+            ByteBuffer dictionaries = readAt(ch, dictionariesAt, (int) (indexAt - dictionariesAt));
+            String[] courses = readDictionary(dictionaries);
+            String[] domains = readDictionary(dictionaries);
+            ByteBuffer index = readAt(ch, indexAt, blockCount * INDEX_ENTRY_SIZE);
+            Block[] blocks = new Block[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                Block b = blocks[i] = new Block();
+                b.firstRoll = index.getInt();
+                b.lastRoll = index.getInt();
+                b.offset = index.getLong();
+                b.compressedLength = index.getInt();
+                b.rawLength = index.getInt();
+                b.count = index.getInt();
+                b.crc = index.getInt();
+            }
+            return new CompressedStudentFile(ch, count, blocks, courses, domains);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int blockCount() {
+        return blocks.length;
+    }
+
+    // Inflates and decodes one block only
+    public List<Student> readBlock(int block) throws IOException {
+        Block b = blocks[block];
+        ByteBuffer compressed = readAt(channel, b.offset, b.compressedLength);
+        byte[] raw = new byte[b.rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, raw.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                length += n;
+            }
+            if (length != raw.length) throw new IllegalStateException("Block " + block + " is damaged");
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Block " + block + " is damaged", e);
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+        if ((int) crc.getValue() != b.crc) throw new IllegalStateException("Block " + block + " failed its checksum");
+        FileUtil.BYTES_READ.add(b.compressedLength);
+        FileUtil.RECORDS_PARSED.add(b.count);
+        return decodeBlock(ByteBuffer.wrap(raw), b.count);
+    }
+
+    public List<Student> readAll() throws IOException {
+        long t = SNAP_READ.start();
+        try {
+            List<Student> students = new ArrayList<>(count);
+            for (int i = 0; i < blocks.length; i++) students.addAll(readBlock(i));
+            return students;
+        } finally {
+            SNAP_READ.stop(t);
+        }
+    }
+
+    // First student with this roll number, decoding the one block whose range holds it
+    public Student find(int rollNo) throws IOException {
+        int lo = 0, hi = blocks.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blocks[mid].lastRoll < rollNo) lo = mid + 1;
+            else hi = mid;
+        }
+        if (blocks.length == 0 || blocks[lo].firstRoll > rollNo || blocks[lo].lastRoll < rollNo) return null;
+        for (Student s : readBlock(lo)) {
+            if (s.rollNo == rollNo) return s;
+        }
+        return null;
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Column by column: rolls, marks, courses, domains, email local parts, names
+    private static byte[] encodeBlock(Student[] students, int from, int to,
+                                      Map<String, Integer> courseIds, Map<String, Integer> domainIds) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((to - from) * 24);
+        writeVarint(out, zigzag(students[from].rollNo));
+        for (int i = from + 1; i < to; i++) writeVarint(out, (long) students[i].rollNo - students[i - 1].rollNo);
+        for (int i = from; i < to; i++) {
+            double marks = students[i].getMarks();
+            long hundredths = (long) Math.rint(marks * 100);
+            // 0 escapes marks that hundredths cannot hold exactly (-0.0, NaN, 85.125); they follow as raw bits
+            if (Double.compare(hundredths / 100.0, marks) == 0 && Math.abs(hundredths) < Integer.MAX_VALUE) {
+                writeVarint(out, zigzag(hundredths) + 1);
+            } else {
+                writeVarint(out, 0);
+                long bits = Double.doubleToRawLongBits(marks);
+                for (int shift = 56; shift >= 0; shift -= 8) out.write((int) (bits >>> shift));
+            }
+        }
+        for (int i = from; i < to; i++) writeVarint(out, id(courseIds, students[i].getCourse()));
+        for (int i = from; i < to; i++) writeVarint(out, id(domainIds, domain(students[i].getEmail())));
+        for (int i = from; i < to; i++) writeString(out, localPart(students[i].getEmail()));
+        for (int i = from; i < to; i++) writeString(out, students[i].getName());
+        return out.toByteArray();
+    }
+
+    private List<Student> decodeBlock(ByteBuffer in, int n) {
+        int[] rolls = new int[n];
+        double[] marks = new double[n];
+        int[] courseIds = new int[n];
+        int[] domainIds = new int[n];
+        String[] locals = new String[n];
+        rolls[0] = (int) unzigzag(readVarint(in));
+        for (int i = 1; i < n; i++) rolls[i] = (int) (rolls[i - 1] + readVarint(in));
+        for (int i = 0; i < n; i++) {
+            long q = readVarint(in);
+            marks[i] = q == 0 ? Double.longBitsToDouble(in.getLong()) : unzigzag(q - 1) / 100.0;
+        }
+        for (int i = 0; i < n; i++) courseIds[i] = (int) readVarint(in);
+        for (int i = 0; i < n; i++) domainIds[i] = (int) readVarint(in);
+        for (int i = 0; i < n; i++) locals[i] = readString(in);
+        List<Student> students = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String domain = lookup(domains, domainIds[i]);
+            String email = domain == null ? locals[i] : locals[i] + "@" + domain;
+            students.add(new Student(rolls[i], readString(in), email, lookup(courses, courseIds[i]), marks[i]));
+        }
+        return students;
+    }
+
+    // Domain of an email: what follows the last '@', or null when there is none
+    private static String domain(String email) {
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        return at < 0 ? null : email.substring(at + 1);
+    }
+
+    private static String localPart(String email) {
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        return at < 0 ? email : email.substring(0, at);
+    }
+
+    // Dictionary ids start at 1; 0 stands for null
+    private static int id(Map<String, Integer> ids, String value) {
+        if (value == null) return 0;
+        return ids.computeIfAbsent(value, v -> ids.size() + 1);
+    }
+
+    private static String lookup(String[] dictionary, int id) {
+        if (id == 0) return null;
+        if (id > dictionary.length) throw new IllegalStateException("Unknown dictionary id " + id);
+        return dictionary[id - 1];
+    }
+
+    private static void writeDictionary(ByteArrayOutputStream out, Collection<String> values) {
+        writeVarint(out, values.size());
+        for (String v : values) writeString(out, v);
+    }
+
+    private static String[] readDictionary(ByteBuffer in) {
+        String[] values = new String[(int) readVarint(in)];
+        for (int i = 0; i < values.length; i++) values[i] = readString(in);
+        return values;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        if (s == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1L);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarint(in) - 1;
+        if (length < 0) return null;
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static ByteBuffer readAt(FileChannel ch, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) throw new EOFException();
+        }
+        return buf.flip();
+    }
+
+    private static int writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        int length = buf.remaining();
+        while (buf.hasRemaining()) ch.write(buf, position + length - buf.remaining());
+        return length;
+    }
+}
+
+// ON-DISK ROLL NUMBER INDEX
+// Memory-mapped open-addressing table of roll number -> record slot, kept next to a binary
+// data file as <file>.idx. The header records how many data records the index covers and the
+// data file's generation; if either does not match (index missing, older, newer or written for
+// a file since rewritten) it is rebuilt from the data. A lookup still checks the record it
+// lands on, since a crash can leave unforced pages of either file behind the other.
+// Roll numbers are not unique in older files; the index points at the first record for each.
+class RollNoIndexFile implements Closeable {
+    static final int MAGIC = 0x52494432; // "RID2", the header grew a generation after "RIDX"
+    private static final int HEADER_SIZE = 24;
+    private static final int ENTRY_SIZE = 8; // int rollNo, int slot + 1 (0 marks an empty entry)
+
+    // header fields
+    private static final int MAGIC_AT = 0;
+    private static final int CAPACITY_AT = 4;
+    private static final int COUNT_AT = 8;
+    private static final int COVERED_AT = 12;
+    private static final int GENERATION_AT = 16;
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+
+    private RollNoIndexFile(Path path, FileChannel channel, int capacity) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.capacity = capacity;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * ENTRY_SIZE);
+        count = buffer.getInt(COUNT_AT);
+    }
+
+    // Opens the index for store, rebuilding it if it does not describe the store's records
+    public static RollNoIndexFile open(String filename, BinaryStudentStore store) throws IOException {
+        Path path = Paths.get(filename);
+        if (Files.exists(path)) {
+            FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining() && ch.read(header, header.position()) > 0) { }
+                int capacity = header.getInt(CAPACITY_AT);
+                if (header.position() == HEADER_SIZE && header.getInt(MAGIC_AT) == MAGIC
+                        && Integer.bitCount(capacity) == 1
+                        && ch.size() >= HEADER_SIZE + (long) capacity * ENTRY_SIZE
+                        && header.getInt(COVERED_AT) == store.size()
+                        && header.getLong(GENERATION_AT) == store.generation()) {
+                    return new RollNoIndexFile(path, ch, capacity);
+                }
+                ch.close();
+            } catch (IOException | RuntimeException e) {
+                ch.close();
+                throw e;
+            }
+        }
+        return rebuild(filename, store);
+    }
+
+    // A fresh index for store, replacing the file
+    public static RollNoIndexFile rebuild(String filename, BinaryStudentStore store) throws IOException {
+        RollNoIndexFile index = create(Paths.get(filename), capacityFor(store.size()));
+        for (int slot = 0; slot < store.size(); slot++) {
+            int rollNo = store.rollNoAt(slot);
+            if (index.get(rollNo) < 0) index.put(rollNo, slot);
+        }
+        index.setCovered(store);
+        return index;
+    }
+
+    private static RollNoIndexFile create(Path path, int capacity) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            RollNoIndexFile index = new RollNoIndexFile(path, ch, capacity);
+            index.buffer.putInt(MAGIC_AT, MAGIC);
+            index.buffer.putInt(CAPACITY_AT, capacity);
+            return index;
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private static int capacityFor(int entries) {
+        return Integer.highestOneBit(Math.max(512, entries * 2 - 1)) << 1;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Slot of the record with this roll number, or -1
+    public int get(int rollNo) {
+        for (int i = home(rollNo); ; i = next(i)) {
+            int value = valueAt(i);
+            if (value == 0) return -1;
+            if (keyAt(i) == rollNo) return value - 1;
+        }
+    }
+
+    public void put(int rollNo, int slot) throws IOException {
+        if ((count + 1) * 2L > capacity) grow();
+        for (int i = home(rollNo); ; i = next(i)) {
+            if (valueAt(i) == 0) {
+                set(i, rollNo, slot + 1);
+                setCount(count + 1);
+                return;
+            }
+            if (keyAt(i) == rollNo) {
+                set(i, rollNo, slot + 1);
+                return;
+            }
+        }
+    }
+
+    // Backward-shift delete, so the table never fills up with tombstones
+    public void remove(int rollNo) {
+        int i = home(rollNo);
+        while (valueAt(i) != 0 && keyAt(i) != rollNo) i = next(i);
+        if (valueAt(i) == 0) return;
+        setCount(count - 1);
+        for (int j = next(i); valueAt(j) != 0; j = next(j)) {
+            int h = home(keyAt(j));
+            // move j back to i unless its home slot lies cyclically in (i, j]
+            if (i <= j ? (h <= i || h > j) : (h <= i && h > j)) {
+                set(i, keyAt(j), valueAt(j));
+                i = j;
+            }
+        }
+        set(i, 0, 0);
+    }
+
+    // Records the data file state this index describes; called after every change to the data file
+    public void setCovered(BinaryStudentStore store) {
+        buffer.putInt(COVERED_AT, store.size());
+        buffer.putLong(GENERATION_AT, store.generation());
+    }
+
+    public void force() {
+        buffer.force();
+    }
+
+    public void close() throws IOException {
+        try {
+            force();
+            buffer = null;
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Rehashes into a file twice the size and renames it over this one
+    private void grow() throws IOException {
+        Path temp = Paths.get(path + ".tmp");
+        RollNoIndexFile bigger = create(temp, capacity * 2);
+        for (int i = 0; i < capacity; i++) {
+            if (valueAt(i) != 0) bigger.put(keyAt(i), valueAt(i) - 1);
+        }
+        bigger.buffer.putInt(COVERED_AT, buffer.getInt(COVERED_AT));
+        bigger.buffer.putLong(GENERATION_AT, buffer.getLong(GENERATION_AT));
+        bigger.force();
+        close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = bigger.channel;
+        buffer = bigger.buffer;
+        capacity = bigger.capacity;
+        count = bigger.count;
+    }
+
+    private void setCount(int newCount) {
+        count = newCount;
+        buffer.putInt(COUNT_AT, count);
+    }
+
+    private int keyAt(int i) {
+        return buffer.getInt(HEADER_SIZE + i * ENTRY_SIZE);
+    }
+
+    private int valueAt(int i) {
+        return buffer.getInt(HEADER_SIZE + i * ENTRY_SIZE + 4);
+    }
+
+    private void set(int i, int rollNo, int value) {
+        buffer.putInt(HEADER_SIZE + i * ENTRY_SIZE, rollNo);
+        buffer.putInt(HEADER_SIZE + i * ENTRY_SIZE + 4, value);
+    }
+
+    private int next(int i) {
+        return (i + 1) & (capacity - 1);
+    }
+
+    private int home(int rollNo) {
+        int h = rollNo * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (capacity - 1);
+    }
+}
+
+// STUDENT CACHE
+// Bounded roll number -> Student map with a pluggable eviction policy, counting hits,
+// misses and evictions. It only holds what the caller puts in; DiskRoster reads through it.
+// Not thread-safe, like the rest of this program.
+abstract class StudentCache {
+    enum Policy { LRU, TINY_LFU }
+
+    protected final int capacity;
+    private long hits;
+    private long misses;
+    protected long evictions;
+
+    protected StudentCache(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Cache capacity must be at least 1");
+        this.capacity = capacity;
+    }
+
+    static StudentCache create(Policy policy, int capacity) {
+        return policy == Policy.LRU ? new LruStudentCache(capacity) : new TinyLfuStudentCache(capacity);
+    }
+
+    // null on a miss
+    public final Student get(int rollNo) {
+        Student s = lookup(rollNo);
+        if (s == null) misses++;
+        else hits++;
+        return s;
+    }
+
+    public abstract void put(int rollNo, Student s);
+
+    public abstract void invalidate(int rollNo);
+
+    public abstract int size();
+
+    protected abstract Student lookup(int rollNo);
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public String stats() {
+        return String.format("%d of %d cached, %d hits, %d misses (%.1f%% hit rate), %d evictions",
+                size(), capacity, hits, misses, hitRate() * 100, evictions);
+    }
+}
+
+// Evicts the least recently used student
+class LruStudentCache extends StudentCache {
+    private final LinkedHashMap<Integer, Student> map;
+
+    LruStudentCache(int capacity) {
+        super(capacity);
+        map = new LinkedHashMap<Integer, Student>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, Student> eldest) {
+                if (size() <= LruStudentCache.this.capacity) return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    protected Student lookup(int rollNo) {
+        return map.get(rollNo);
+    }
+
+    public void put(int rollNo, Student s) {
+        map.put(rollNo, s);
+    }
+
+    public void invalidate(int rollNo) {
+        map.remove(rollNo);
+    }
+
+    public int size() {
+        return map.size();
+    }
+}
+
+// W-TinyLFU: new students enter a small LRU window (1% of capacity). A student pushed out of
+// the window only enters the main area if it has been asked for more often than the main
+// area's next victim, judged by a count-min sketch of recent lookups. So a one-off scan
+// cannot flush out students that are read all the time. The main area is a segmented LRU:
+// a second hit moves a student from probation to the protected segment (80% of the main area).
+class TinyLfuStudentCache extends StudentCache {
+    private final LinkedHashMap<Integer, Student> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Integer, Student> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Integer, Student> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final int protectedCapacity;
+    private final FrequencySketch sketch;
+
+    TinyLfuStudentCache(int capacity) {
+        super(capacity);
+        windowCapacity = Math.max(1, capacity / 100);
+        mainCapacity = capacity - windowCapacity;
+        protectedCapacity = mainCapacity * 8 / 10;
+        sketch = new FrequencySketch(capacity);
+    }
+
+    protected Student lookup(int rollNo) {
+        sketch.increment(rollNo);
+        Student s = window.get(rollNo);
+        if (s != null) return s;
+        s = protectedSegment.get(rollNo);
+        if (s != null) return s;
+        s = probation.remove(rollNo);
+        if (s != null) {
+            protectedSegment.put(rollNo, s);
+            if (protectedSegment.size() > protectedCapacity) {
+                Map.Entry<Integer, Student> demoted = removeEldest(protectedSegment);
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+        return s;
+    }
+
+    public void put(int rollNo, Student s) {
+        if (window.containsKey(rollNo)) {
+            window.put(rollNo, s);
+        } else if (probation.containsKey(rollNo)) {
+            probation.put(rollNo, s);
+        } else if (protectedSegment.containsKey(rollNo)) {
+            protectedSegment.put(rollNo, s);
+        } else {
+            window.put(rollNo, s);
+            if (window.size() > windowCapacity) admit(removeEldest(window));
+        }
+    }
+
+    // Candidate from the window against the main area's least recently used student
+    private void admit(Map.Entry<Integer, Student> candidate) {
+        if (probation.size() + protectedSegment.size() < mainCapacity) {
+            probation.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        evictions++;
+        LinkedHashMap<Integer, Student> victims = probation.isEmpty() ? protectedSegment : probation;
+        Integer victim = victims.keySet().iterator().next();
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim)) {
+            victims.remove(victim);
+            probation.put(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    public void invalidate(int rollNo) {
+        if (window.remove(rollNo) == null && probation.remove(rollNo) == null) protectedSegment.remove(rollNo);
+    }
+
+    public int size() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    private static Map.Entry<Integer, Student> removeEldest(LinkedHashMap<Integer, Student> map) {
+        Iterator<Map.Entry<Integer, Student>> it = map.entrySet().iterator();
+        Map.Entry<Integer, Student> eldest = new AbstractMap.SimpleImmutableEntry<>(it.next());
+        it.remove();
+        return eldest;
+    }
+
+    // Count-min sketch with counters capped at 15. Every counter is halved after
+    // 10 * capacity increments, so old popularity fades and the sketch tracks recent use.
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+        private final byte[][] rows = new byte[SEEDS.length][];
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1) << 1;
+            for (int r = 0; r < rows.length; r++) rows[r] = new byte[width];
+            mask = width - 1;
+            sampleSize = 10 * Math.max(16, capacity);
+        }
+
+        int frequency(int key) {
+            int min = Integer.MAX_VALUE;
+            for (int r = 0; r < rows.length; r++) min = Math.min(min, rows[r][index(key, r)]);
+            return min;
+        }
+
+        void increment(int key) {
+            boolean added = false;
+            for (int r = 0; r < rows.length; r++) {
+                int i = index(key, r);
+                if (rows[r][i] < 15) {
+                    rows[r][i]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (byte[] row : rows) {
+                    for (int i = 0; i < row.length; i++) row[i] >>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        private int index(int key, int row) {
+            int h = key * SEEDS[row];
+            return (h ^ (h >>> 16)) & mask;
+        }
+    }
+}
+
+// DISK-RESIDENT ROSTER
+// Records stay in a BinaryStudentStore on disk, found by roll number through a
+// RollNoIndexFile, and a bounded StudentCache keeps recently read students on the heap,
+// so heap use follows the cache capacity rather than the roster size.
+// Deleting moves the last record into the freed slot, so no other record shifts.
+class DiskRoster implements Closeable {
+    private final BinaryStudentStore store;
+    private final String indexFile;
+    private RollNoIndexFile index;
+    private final StudentCache cache;
+
+    DiskRoster(String filename, StudentCache cache) throws IOException {
+        store = BinaryStudentStore.open(filename);
+        indexFile = filename + ".idx";
+        try {
+            index = RollNoIndexFile.open(indexFile, store);
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        this.cache = cache;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public StudentCache cache() {
+        return cache;
+    }
+
+    // Cached students are shared, so change them through update() rather than their fields
+    public Student find(int rollNo) throws IOException {
+        Student s = cache.get(rollNo);
+        if (s != null) return s;
+        int slot = slotOf(rollNo);
+        if (slot < 0) return null;
+        s = store.read(slot);
+        cache.put(rollNo, s);
+        return s;
+    }
+
+    // The index's slot for rollNo, checked against the record there; an index that points at
+    // the wrong record is out of date, so it is rebuilt from the data file and asked again
+    private int slotOf(int rollNo) throws IOException {
+        int slot = index.get(rollNo);
+        if (slot < 0 || (slot < store.size() && store.rollNoAt(slot) == rollNo)) return slot;
+        System.out.println(indexFile + " is out of date, rebuilding it.");
+        index.close();
+        index = RollNoIndexFile.rebuild(indexFile, store);
+        return index.get(rollNo);
+    }
+
+    // Returns false if the roll number is taken
+    public boolean add(Student s) throws IOException {
+        if (index.get(s.rollNo) >= 0) return false;
+        store.append(s);
+        index.put(s.rollNo, store.size() - 1);
+        index.setCovered(store);
+        return true;
+    }
+
+    // Replaces the record with s.rollNo; returns false if there is none
+    public boolean update(Student s) throws IOException {
+        int slot = slotOf(s.rollNo);
+        if (slot < 0) return false;
+        store.write(slot, s);
+        index.setCovered(store);
+        cache.invalidate(s.rollNo);
+        return true;
+    }
+
+    public boolean delete(int rollNo) throws IOException {
+        int slot = slotOf(rollNo);
+        if (slot < 0) return false;
+        int last = store.size() - 1;
+        index.remove(rollNo);
+        if (slot != last) {
+            int moved = store.rollNoAt(last);
+            store.copy(last, slot);
+            if (index.get(moved) == last) index.put(moved, slot);
+        }
+        store.remove(last);
+        index.setCovered(store);
+        cache.invalidate(rollNo);
+        return true;
+    }
+
+    // Full scans read straight from disk and leave the cache alone
+    public void forEach(Consumer<Student> action) {
+        for (int slot = 0; slot < store.size(); slot++) action.accept(store.read(slot));
+    }
+
+    public void flush() {
+        store.force();
+        index.force();
+    }
+
+    public void close() throws IOException {
+        try {
+            index.close();
+        } finally {
+            store.close();
+        }
+    }
+}
+
+// STREAMING EXPORT
+// Encodes students straight into one reusable direct buffer that is drained into a channel,
+// so exports stay flat in memory and build no per-record strings.
+// CSV output matches toCSV(), so the exporter also writes the normal data file.
+class StudentExporter {
+    enum Format { CSV, JSON_LINES, FIXED_WIDTH }
+
+    enum Field {
+        ROLL_NO("rollNo", 8), NAME("name", 24), EMAIL("email", 32), COURSE("course", 16), MARKS("marks", 8);
+
+        static final List<Field> ALL = List.of(values());
+
+        final String jsonName;
+        final int width; // column width for fixed-width reports
+
+        Field(String jsonName, int width) {
+            this.jsonName = jsonName;
+            this.width = width;
+        }
+    }
+
+    private static final int DEFAULT_BUFFER = 64 * 1024;
+
+    private final ByteBuffer buf;
+    private WritableByteChannel out;
+    private int column; // chars written in the current fixed-width cell
+
+    public StudentExporter() {
+        this(DEFAULT_BUFFER);
+    }
+
+    public StudentExporter(int bufferSize) {
+        buf = ByteBuffer.allocateDirect(Math.max(bufferSize, 64));
+    }
+
+    // Writes the students that pass filter, keeping only the given fields; returns rows written
+    public long export(Iterable<Student> students, Predicate<Student> filter, List<Field> fields,
+                       Format format, WritableByteChannel out) throws IOException {
+        this.out = out;
+        buf.clear();
+        long rows = 0;
+        try {
+            if (format == Format.FIXED_WIDTH) writeHeader(fields);
+            for (Student s : students) {
+                if (!filter.test(s)) continue;
+                writeRow(s, fields, format);
+                rows++;
+            }
+            flush();
+        } finally {
+            this.out = null;
+        }
+        return rows;
+    }
+
+    private void writeHeader(List<Field> fields) throws IOException {
+        for (Field f : fields) {
+            column = 0;
+            writeText(f.jsonName, false);
+            pad(f.width);
+        }
+        putByte('\n');
+    }
+
+    private void writeRow(Student s, List<Field> fields, Format format) throws IOException {
+        if (format == Format.JSON_LINES) putByte('{');
+        for (int i = 0; i < fields.size(); i++) {
+            Field f = fields.get(i);
+            if (format == Format.CSV && i > 0) putByte(',');
+            if (format == Format.JSON_LINES) {
+                if (i > 0) putByte(',');
+                putByte('"');
+                writeText(f.jsonName, false);
+                putByte('"');
+                putByte(':');
+            }
+            column = 0;
+            boolean json = format == Format.JSON_LINES;
+            switch (f) {
+                case ROLL_NO: writeLong(s.rollNo); break;
+                case MARKS: writeMarks(s.getMarks()); break;
+                case NAME: writeString(s.getName(), json); break;
+                case EMAIL: writeString(s.getEmail(), json); break;
+                case COURSE: writeString(s.getCourse(), json); break;
+            }
+            if (format == Format.FIXED_WIDTH) pad(f.width);
+        }
+        if (format == Format.JSON_LINES) putByte('}');
+        putByte('\n');
+    }
+
+    private void writeString(String value, boolean json) throws IOException {
+        if (json) putByte('"');
+        writeText(value, json);
+        if (json) putByte('"');
+    }
+
+    // UTF-8 encodes without an intermediate byte[]; JSON mode escapes quotes, backslashes and controls
+    private void writeText(String value, boolean json) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            column++;
+            if (json && (c == '"' || c == '\\')) {
+                putByte('\\');
+                putByte(c);
+            } else if (json && c < 0x20) {
+                putByte('\\');
+                putByte('u');
+                putByte('0');
+                putByte('0');
+                putByte(HEX[c >> 4]);
+                putByte(HEX[c & 0xF]);
+            } else if (c < 0x80) {
+                putByte(c);
+            } else if (c < 0x800) {
+                ensureRoom(2);
+                buf.put((byte) (0xC0 | (c >> 6)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                ensureRoom(4);
+                buf.put((byte) (0xF0 | (cp >> 18)));
+                buf.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buf.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                putByte('?'); // unpaired surrogate, same as String.getBytes
+            } else {
+                ensureRoom(3);
+                buf.put((byte) (0xE0 | (c >> 12)));
+                buf.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private final byte[] digits = new byte[20];
+
+    private void writeLong(long value) throws IOException {
+        if (value < 0) {
+            putByte('-');
+            column++;
+        } else {
+            value = -value; // work in negatives so Long.MIN_VALUE fits
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' - value % 10);
+            value /= 10;
+        } while (value != 0);
+        ensureRoom(n);
+        column += n;
+        while (n > 0) buf.put(digits[--n]);
+    }
+
+    // Same text as Double.toString for marks with up to two decimals, which is what rosters hold;
+    // anything else falls back to Double.toString
+    private void writeMarks(double marks) throws IOException {
+        long cents = Math.round(marks * 100);
+        if (Math.abs(marks) >= 1e7 || cents / 100.0 != marks || (marks == 0 && 1 / marks < 0)) {
+            writeText(Double.toString(marks), false);
+            return;
+        }
+        if (cents < 0) {
+            putByte('-');
+            column++;
+            cents = -cents;
+        }
+        writeLong(cents / 100);
+        putByte('.');
+        column++;
+        int fraction = (int) (cents % 100);
+        if (fraction % 10 == 0) {
+            writeLong(fraction / 10);
+        } else {
+            if (fraction < 10) {
+                putByte('0');
+                column++;
+            }
+            writeLong(fraction);
+        }
+    }
+
+    // At least one space, so an overlong cell still stays separated from the next
+    private void pad(int width) throws IOException {
+        for (int i = Math.min(column, width); i <= width; i++) putByte(' ');
+    }
+
+    private void putByte(int b) throws IOException {
+        ensureRoom(1);
+        buf.put((byte) b);
+    }
+
+    private void ensureRoom(int n) throws IOException {
+        if (buf.remaining() < n) flush();
+    }
+
+    private void flush() throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) out.write(buf);
+        buf.clear();
+    }
+}
+
+// BULK CSV IMPORT
+// Splits the file into byte ranges that end on a newline, parses the ranges in parallel
+// on a ForkJoinPool and hands rows to the caller in batches, in file order.
+// Rows that do not parse go to a reject report instead of stopping the import.
+class BulkImporter {
+    static final int CHUNK_SIZE = 4 << 20;
+    static final int BATCH_SIZE = 10_000;
+
+    static class Result {
+        int imported;
+        int rejected;
+    }
+
+    // Output of one byte range
+    private static class Chunk {
+        final List<Student> rows = new ArrayList<>();
+        final StringBuilder rejects = new StringBuilder();
+        int rejected;
+    }
+
+    public static Result importCsv(String filename, String rejectFile, Consumer<List<Student>> sink)
+            throws IOException {
+        return importCsv(filename, rejectFile, sink, ForkJoinPool.commonPool(), CHUNK_SIZE);
+    }
+
+    public static Result importCsv(String filename, String rejectFile, Consumer<List<Student>> sink,
+                                   ForkJoinPool pool, int chunkSize) throws IOException {
+        Result result = new Result();
+        try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+             BufferedWriter rejects = new BufferedWriter(new FileWriter(rejectFile))) {
+            List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+            long size = ch.size();
+            for (long start = 0; start < size; ) {
+                long end = nextLineStart(ch, Math.min(size, start + chunkSize), size);
+                long from = start;
+                tasks.add(pool.submit(() -> parse(ch, from, end)));
+                start = end;
+            }
+            // Join in submission order so rows keep file order while later chunks still parse
+            List<Student> batch = new ArrayList<>(BATCH_SIZE);
+            for (ForkJoinTask<Chunk> task : tasks) {
+                Chunk chunk = task.join();
+                for (Student s : chunk.rows) {
+                    batch.add(s);
+                    if (batch.size() == BATCH_SIZE) {
+                        sink.accept(batch);
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                result.imported += chunk.rows.size();
+                result.rejected += chunk.rejected;
+                rejects.append(chunk.rejects);
+            }
+            if (!batch.isEmpty()) sink.accept(batch);
+        }
+        if (result.rejected == 0) Files.deleteIfExists(Paths.get(rejectFile));
+        return result;
+    }
+
+    // First position after the newline at or following pos
+    private static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        while (pos < size) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private static Chunk parse(FileChannel ch, long start, long end) throws IOException {
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        Chunk chunk = new Chunk();
+        byte[] line = new byte[256];
+        int n = buf.limit();
+        for (int lineStart = 0; lineStart < n; ) {
+            int lineEnd = lineStart;
+            while (lineEnd < n && buf.get(lineEnd) != '\n') lineEnd++;
+            int len = lineEnd - lineStart;
+            if (len > line.length) line = new byte[Math.max(len, line.length * 2)];
+            buf.get(lineStart, line, 0, len);
+            parseLine(line, len, start + lineStart, chunk);
+            lineStart = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    private static void parseLine(byte[] line, int len, long offset, Chunk chunk) {
+        if (len > 0 && line[len - 1] == '\r') len--;
+        if (isBlank(line, len)) return;
+        int[] commas = new int[4];
+        int found = 0;
+        for (int i = 0; i < len; i++) {
+            if (line[i] == ',') {
+                if (found == commas.length) {
+                    reject(chunk, offset, "expected 5 fields", line, len);
+                    return;
+                }
+                commas[found++] = i;
+            }
+        }
+        if (found != commas.length) {
+            reject(chunk, offset, "expected 5 fields", line, len);
+            return;
+        }
+        try {
+            int rollNo = parseInt(line, 0, commas[0]);
+            String name = new String(line, commas[0] + 1, commas[1] - commas[0] - 1, StandardCharsets.UTF_8);
+            String email = new String(line, commas[1] + 1, commas[2] - commas[1] - 1, StandardCharsets.UTF_8);
+            String course = new String(line, commas[2] + 1, commas[3] - commas[2] - 1, StandardCharsets.UTF_8);
+            double marks = parseDouble(line, commas[3] + 1, len);
+            chunk.rows.add(new Student(rollNo, name, email, course, marks));
+        } catch (NumberFormatException e) {
+            reject(chunk, offset, e.getMessage(), line, len);
+        }
+    }
+
+    private static int parseInt(byte[] b, int from, int to) {
+        boolean negative = from < to && b[from] == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to) throw new NumberFormatException("bad roll no");
+        long value = 0;
+        for (; i < to; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) throw new NumberFormatException("bad roll no");
+            value = value * 10 + d;
+            if (value > Integer.MAX_VALUE + 1L) throw new NumberFormatException("roll no out of range");
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) throw new NumberFormatException("roll no out of range");
+        return (int) value;
+    }
+
+    // Plain decimals (digits with an optional sign and point) are parsed directly; a mantissa
+    // below 2^53 divided by an exact power of ten rounds correctly. Anything else goes to the JDK.
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private static double parseDouble(byte[] b, int from, int to) {
+        boolean negative = from < to && b[from] == '-';
+        int i = negative ? from + 1 : from;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < to; i++) {
+            byte c = b[i];
+            if (c == '.' && scale < 0) {
+                scale = 0;
+            } else if (c >= '0' && c <= '9' && mantissa < (1L << 53) / 10) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) scale++;
+            } else {
+                return parseDoubleSlow(b, from, to);
+            }
+        }
+        if (digits == 0 || scale >= POW10.length) return parseDoubleSlow(b, from, to);
+        double value = scale > 0 ? mantissa / POW10[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow(byte[] b, int from, int to) {
+        String text = new String(b, from, to - from, StandardCharsets.UTF_8).trim();
+        try {
+            double value = Double.parseDouble(text);
+            if (Double.isFinite(value)) return value;
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new NumberFormatException("bad marks");
+    }
+
+    private static boolean isBlank(byte[] b, int len) {
+        for (int i = 0; i < len; i++) {
+            if (b[i] != ' ' && b[i] != '\t') return false;
+        }
+        return true;
+    }
+
+    private static void reject(Chunk chunk, long offset, String reason, byte[] line, int len) {
+        chunk.rejected++;
+        chunk.rejects.append("byte ").append(offset).append(": ").append(reason).append(": ")
+                .append(new String(line, 0, len, StandardCharsets.UTF_8)).append(System.lineSeparator());
+    }
+}
+
+// PARTITIONED ROSTER
+// The heap roster as a list of partitions of up to PARTITION_SIZE students each, so whole-
+// roster work splits into one ForkJoin task per partition:
+//   - filter / aggregate: scan every partition at once, results combined in roster order
+//   - removeIf: each partition compacts itself, no shifting across the whole roster
+//   - replaceAll: bulk recomputation of every student
+//   - sort: partitions sort in parallel, then merge pairwise up a task tree
+//   - render: formats partitions in parallel, output still comes out in roster order
+// Below the threshold, or with a parallelism of 1, the same work runs in the calling thread.
+// Not thread-safe for writers, like the rest of this program; the parallelism is inside
+// each call.
+class PartitionedRoster extends AbstractList<Student> implements RandomAccess {
+    static final int PARTITION_SIZE = 8192;
+
+    // -Droster.parallelism=<threads> (default: every core) and
+    // -Droster.parallelThreshold=<students> (smaller rosters stay single-threaded)
+    static final int DEFAULT_PARALLELISM = Integer.getInteger("roster.parallelism", Runtime.getRuntime().availableProcessors());
+    static final int DEFAULT_THRESHOLD = Integer.getInteger("roster.parallelThreshold", 50_000);
+
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private final List<ArrayList<Student>> parts = new ArrayList<>();
+    private int[] starts; // index of each partition's first student, null when stale
+    private int size;
+    private final int parallelism;
+    private final int threshold;
+
+    public PartitionedRoster() {
+        this(DEFAULT_PARALLELISM, DEFAULT_THRESHOLD);
+    }
+
+    public PartitionedRoster(int parallelism, int threshold) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1");
+        this.parallelism = parallelism;
+        this.threshold = threshold;
+    }
+
+    public PartitionedRoster(Collection<Student> students) {
+        this();
+        addAll(students);
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    public int partitions() {
+        return parts.size();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Student get(int index) {
+        int p = partitionOf(Objects.checkIndex(index, size));
+        return parts.get(p).get(index - starts[p]);
+    }
+
+    public Student set(int index, Student s) {
+        int p = partitionOf(Objects.checkIndex(index, size));
+        return parts.get(p).set(index - starts[p], s);
+    }
+
+    public void add(int index, Student s) {
+        Objects.checkIndex(index, size + 1);
+        ArrayList<Student> last = parts.isEmpty() ? null : parts.get(parts.size() - 1);
+        if (index == size && last != null && last.size() < PARTITION_SIZE) {
+            last.add(s); // appending leaves every partition start where it was
+        } else if (index == size) {
+            ArrayList<Student> part = new ArrayList<>(PARTITION_SIZE);
+            part.add(s);
+            parts.add(part);
+            starts = null;
+        } else {
+            int p = partitionOf(index);
+            ArrayList<Student> part = parts.get(p);
+            part.add(index - starts[p], s);
+            if (part.size() > 2 * PARTITION_SIZE) {
+                List<Student> upper = part.subList(PARTITION_SIZE, part.size());
+                parts.add(p + 1, new ArrayList<>(upper));
+                upper.clear();
+            }
+            starts = null;
+        }
+        size++;
+        modCount++;
+    }
+
+    public Student remove(int index) {
+        int p = partitionOf(Objects.checkIndex(index, size));
+        ArrayList<Student> part = parts.get(p);
+        Student old = part.remove(index - starts[p]);
+        if (part.isEmpty()) parts.remove(p);
+        starts = null;
+        size--;
+        modCount++;
+        return old;
+    }
+
+    public void clear() {
+        parts.clear();
+        starts = null;
+        size = 0;
+        modCount++;
+    }
+
+    public void forEach(Consumer<? super Student> action) {
+        for (ArrayList<Student> part : parts) part.forEach(action);
+    }
+
+    // Students passing the filter, in roster order
+    public List<Student> filter(Predicate<? super Student> filter) {
+        return reduce(p -> {
+            List<Student> found = new ArrayList<>();
+            for (Student s : parts.get(p)) {
+                if (filter.test(s)) found.add(s);
+            }
+            return found;
+        }, (a, b) -> {
+            a.addAll(b);
+            return a;
+        }, new ArrayList<>());
+    }
+
+    // Folds every student into an accumulator per partition, then merges the accumulators
+    public <A> A aggregate(Supplier<A> create, BiConsumer<A, Student> add, BinaryOperator<A> merge) {
+        if (parts.isEmpty()) return create.get();
+        return reduce(p -> {
+            A acc = create.get();
+            for (Student s : parts.get(p)) add.accept(acc, s);
+            return acc;
+        }, merge);
+    }
+
+    public boolean removeIf(Predicate<? super Student> filter) {
+        int removed = reduce(p -> {
+            ArrayList<Student> part = parts.get(p);
+            int before = part.size();
+            part.removeIf(filter);
+            return before - part.size();
+        }, Integer::sum, 0);
+        if (removed == 0) return false;
+        size -= removed;
+        coalesce();
+        modCount++;
+        return true;
+    }
+
+    public void replaceAll(UnaryOperator<Student> operator) {
+        reduce(p -> {
+            parts.get(p).replaceAll(operator);
+            return null;
+        }, (a, b) -> null, null);
+        modCount++;
+    }
+
+    // Stable, like List.sort
+    public void sort(Comparator<? super Student> c) {
+        if (size == 0) return;
+        Student[] sorted = reduce(p -> {
+            Student[] part = parts.get(p).toArray(new Student[0]);
+            Arrays.sort(part, c);
+            return part;
+        }, (a, b) -> merge(a, b, c));
+        parts.clear();
+        for (int from = 0; from < sorted.length; from += PARTITION_SIZE) {
+            parts.add(new ArrayList<>(Arrays.asList(sorted).subList(from, Math.min(sorted.length, from + PARTITION_SIZE))));
+        }
+        starts = null;
+        modCount++;
+    }
+
+    // Formats each partition into one string on the pool and hands them to out in roster
+    // order; only a window of partitions is formatted ahead, so memory stays bounded
+    public void render(Function<Student, String> format, Consumer<String> out) {
+        if (!parallel()) {
+            for (int p = 0; p < parts.size(); p++) out.accept(format(p, format));
+            return;
+        }
+        ForkJoinPool pool = pool(parallelism);
+        int window = parallelism * 2;
+        Deque<ForkJoinTask<String>> ahead = new ArrayDeque<>();
+        for (int p = 0; p < parts.size(); p++) {
+            int part = p;
+            ahead.add(pool.submit(() -> format(part, format)));
+            if (ahead.size() == window) out.accept(ahead.poll().join());
+        }
+        while (!ahead.isEmpty()) out.accept(ahead.poll().join());
+    }
+
+    private String format(int p, Function<Student, String> format) {
+        StringBuilder sb = new StringBuilder();
+        for (Student s : parts.get(p)) sb.append(format.apply(s));
+        return sb.toString();
+    }
+
+    private boolean parallel() {
+        return parallelism > 1 && size >= threshold && parts.size() > 1;
+    }
+
+    private <R> R reduce(IntFunction<R> leaf, BinaryOperator<R> combine, R empty) {
+        return parts.isEmpty() ? empty : reduce(leaf, combine);
+    }
+
+    // leaf(p) for every partition, combined pairwise up a balanced tree so results keep
+    // roster order and merges stay O(n log partitions) in the calling thread too
+    private <R> R reduce(IntFunction<R> leaf, BinaryOperator<R> combine) {
+        if (!parallel()) return reduce(leaf, combine, 0, parts.size());
+        return pool(parallelism).invoke(new PartitionTask<>(leaf, combine, 0, parts.size()));
+    }
+
+    private static <R> R reduce(IntFunction<R> leaf, BinaryOperator<R> combine, int from, int to) {
+        if (to - from == 1) return leaf.apply(from);
+        int mid = (from + to) >>> 1;
+        return combine.apply(reduce(leaf, combine, from, mid), reduce(leaf, combine, mid, to));
+    }
+
+    private static final class PartitionTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final IntFunction<R> leaf;
+        private final BinaryOperator<R> combine;
+        private final int from;
+        private final int to;
+
+        PartitionTask(IntFunction<R> leaf, BinaryOperator<R> combine, int from, int to) {
+            this.leaf = leaf;
+            this.combine = combine;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected R compute() {
+            if (to - from == 1) return leaf.apply(from);
+            int mid = (from + to) >>> 1;
+            PartitionTask<R> left = new PartitionTask<>(leaf, combine, from, mid);
+            left.fork();
+            R right = new PartitionTask<>(leaf, combine, mid, to).compute();
+            return combine.apply(left.join(), right);
+        }
+    }
+
+    private static ForkJoinPool pool(int parallelism) {
+        if (parallelism == ForkJoinPool.getCommonPoolParallelism()) return ForkJoinPool.commonPool();
+        return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    private static Student[] merge(Student[] a, Student[] b, Comparator<? super Student> c) {
+        Student[] out = new Student[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) out[k++] = c.compare(b[j], a[i]) < 0 ? b[j++] : a[i++];
+        while (i < a.length) out[k++] = a[i++];
+        while (j < b.length) out[k++] = b[j++];
+        return out;
+    }
+
+    // Drops empty partitions and joins neighbours that fit in one after a filtered delete
+    private void coalesce() {
+        List<ArrayList<Student>> merged = new ArrayList<>();
+        for (ArrayList<Student> part : parts) {
+            if (part.isEmpty()) continue;
+            ArrayList<Student> last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last.size() + part.size() <= PARTITION_SIZE) last.addAll(part);
+            else merged.add(part);
+        }
+        parts.clear();
+        parts.addAll(merged);
+        starts = null;
+    }
+
+    private int partitionOf(int index) {
+        if (starts == null) {
+            starts = new int[parts.size()];
+            for (int p = 1; p < starts.length; p++) starts[p] = starts[p - 1] + parts.get(p - 1).size();
+        }
+        int p = Arrays.binarySearch(starts, index);
+        return p >= 0 ? p : -p - 2;
+    }
+}
+
+// COURSE STATISTICS
+// Count and marks summary for one course, built by PartitionedRoster.aggregate
+class CourseStats {
+    int count;
+    double total;
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+
+    void add(double marks) {
+        count++;
+        total += marks;
+        min = Math.min(min, marks);
+        max = Math.max(max, marks);
+    }
+
+    CourseStats merge(CourseStats other) {
+        count += other.count;
+        total += other.total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
     }
 
-    // Convert Student to CSV string
-    public String toCSV() {
-        return rollNo + "," + name + "," + email + "," + course + "," + marks;
+    double mean() {
+        return count == 0 ? 0 : total / count;
     }
 
-    // Create Student from CSV string
-    public static Student fromCSV(String line) {
-        String[] parts = line.split(",");
-        return new Student(
-                Integer.parseInt(parts[0]),
-                parts[1],
-                parts[2],
-                parts[3],
-                Double.parseDouble(parts[4])
-        );
+    // Per-course totals, merged from per-partition maps; a list that is not partitioned
+    // (a mapped .dat roster) is copied into one first
+    static Map<String, CourseStats> byCourse(List<Student> students) {
+        PartitionedRoster roster = students instanceof PartitionedRoster
+                ? (PartitionedRoster) students : new PartitionedRoster(students);
+        return roster.aggregate(TreeMap::new,
+                (m, s) -> m.computeIfAbsent(String.valueOf(s.getCourse()), k -> new CourseStats()).add(s.getMarks()),
+                (a, b) -> {
+                    b.forEach((course, stats) -> a.merge(course, stats, CourseStats::merge));
+                    return a;
+                });
     }
 }
 
-// FILE UTIL CLASS
-class FileUtil {
+// NAME INDEX
+// Case-folded name -> students with that name, plus a sorted key set for prefix search
+class NameIndex {
+    private final Map<String, List<Student>> byName = new HashMap<>();
+    private final TreeSet<String> names = new TreeSet<>();
 
-    public static List<Student> readStudentsFromFile(String filename) {
-        List<Student> students = new ArrayList<>();
-        File file = new File(filename);
-        if (!file.exists()) {
-            return students; // return empty list if file doesn't exist
+    static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    public void rebuild(List<Student> students) {
+        byName.clear();
+        names.clear();
+        for (Student s : students) add(s);
+    }
+
+    public void add(Student s) {
+        String key = fold(s.getName());
+        byName.computeIfAbsent(key, k -> new ArrayList<>()).add(s);
+        names.add(key);
+    }
+
+    // Removes every student with this name and returns them
+    public List<Student> removeAll(String name) {
+        String key = fold(name);
+        names.remove(key);
+        List<Student> removed = byName.remove(key);
+        return removed == null ? Collections.emptyList() : removed;
+    }
+
+    public List<Student> find(String name) {
+        return byName.getOrDefault(fold(name), Collections.emptyList());
+    }
+
+    public List<Student> findByPrefix(String prefix) {
+        String key = fold(prefix);
+        List<Student> found = new ArrayList<>();
+        for (String name : names.subSet(key, true, key + Character.MAX_VALUE, true)) {
+            found.addAll(byName.get(name));
         }
+        return found;
+    }
+}
 
-        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    students.add(Student.fromCSV(line));
-                }
+// MARKS RANKING
+// Order-statistic treap keyed by (marks descending, roll no ascending). Roll numbers are
+// not unique here, so each node holds every student with its key; node sizes count
+// students, which keeps rank, top-K and range queries at O(log n) plus output.
+class MarksRanking {
+    private static class Node {
+        final double marks;
+        final int rollNo;
+        final int priority;
+        final List<Student> students = new ArrayList<>(1);
+        int size;
+        Node left, right;
+
+        Node(Student s, int priority) {
+            this.marks = s.getMarks();
+            this.rollNo = s.rollNo;
+            this.priority = priority;
+            students.add(s);
+            size = 1;
+        }
+    }
+
+    private final Random random = new Random();
+    private Node root;
+
+    public int size() {
+        return size(root);
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    public void add(Student s) {
+        root = insert(root, s);
+    }
+
+    // Removes this exact student object
+    public void remove(Student s) {
+        root = delete(root, s);
+    }
+
+    // 1-based position in the ranking (ties share a rank), or -1 if not indexed
+    public int rankOf(Student s) {
+        int before = 0;
+        Node n = root;
+        while (n != null) {
+            int c = compare(s.getMarks(), s.rollNo, n);
+            if (c < 0) {
+                n = n.left;
+            } else if (c > 0) {
+                before += size(n.left) + n.students.size();
+                n = n.right;
+            } else {
+                return before + size(n.left) + 1;
             }
-        } catch (IOException e) {
-            System.out.println("Error reading file: " + e.getMessage());
         }
-        return students;
+        return -1;
     }
 
-    public static void writeStudentsToFile(String filename, List<Student> students) {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(filename))) {
-            for (Student s : students) {
-                bw.write(s.toCSV());
-                bw.newLine();
+    public List<Student> top(int k) {
+        List<Student> found = new ArrayList<>(Math.min(k, size()));
+        Deque<Node> stack = new ArrayDeque<>();
+        Node n = root;
+        while (found.size() < k && (n != null || !stack.isEmpty())) {
+            while (n != null) {
+                stack.push(n);
+                n = n.left;
             }
-        } catch (IOException e) {
-            System.out.println("Error writing file: " + e.getMessage());
+            n = stack.pop();
+            for (Student s : n.students) {
+                if (found.size() == k) break;
+                found.add(s);
+            }
+            n = n.right;
+        }
+        return found;
+    }
+
+    // Students with min <= marks <= max, best first
+    public List<Student> range(double min, double max) {
+        List<Student> found = new ArrayList<>();
+        collect(root, min, max, found);
+        return found;
+    }
+
+    public List<Student> all() {
+        return top(size());
+    }
+
+    private static void collect(Node n, double min, double max, List<Student> out) {
+        if (n == null) return;
+        if (n.marks > max) {
+            collect(n.right, min, max, out);
+        } else if (n.marks < min) {
+            collect(n.left, min, max, out);
+        } else {
+            collect(n.left, min, max, out);
+            out.addAll(n.students);
+            collect(n.right, min, max, out);
+        }
+    }
+
+    // Negative when (marks, rollNo) ranks ahead of n
+    private static int compare(double marks, int rollNo, Node n) {
+        int c = Double.compare(n.marks, marks);
+        return c != 0 ? c : Integer.compare(rollNo, n.rollNo);
+    }
+
+    private Node insert(Node n, Student s) {
+        if (n == null) return new Node(s, random.nextInt());
+        int c = compare(s.getMarks(), s.rollNo, n);
+        if (c == 0) {
+            n.students.add(s);
+        } else if (c < 0) {
+            n.left = insert(n.left, s);
+            if (n.left.priority > n.priority) n = rotateRight(n);
+        } else {
+            n.right = insert(n.right, s);
+            if (n.right.priority > n.priority) n = rotateLeft(n);
+        }
+        resize(n);
+        return n;
+    }
+
+    private static Node delete(Node n, Student s) {
+        if (n == null) return null;
+        int c = compare(s.getMarks(), s.rollNo, n);
+        if (c < 0) {
+            n.left = delete(n.left, s);
+        } else if (c > 0) {
+            n.right = delete(n.right, s);
+        } else {
+            n.students.removeIf(x -> x == s);
+            if (n.students.isEmpty()) return merge(n.left, n.right);
+        }
+        resize(n);
+        return n;
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            resize(a);
+            return a;
         }
+        b.left = merge(a, b.left);
+        resize(b);
+        return b;
+    }
+
+    private static Node rotateRight(Node n) {
+        Node l = n.left;
+        n.left = l.right;
+        l.right = n;
+        resize(n);
+        resize(l);
+        return l;
+    }
+
+    private static Node rotateLeft(Node n) {
+        Node r = n.right;
+        n.right = r.left;
+        r.left = n;
+        resize(n);
+        resize(r);
+        return r;
+    }
+
+    private static void resize(Node n) {
+        n.size = size(n.left) + size(n.right) + n.students.size();
+    }
+
+    private static int size(Node n) {
+        return n == null ? 0 : n.size;
     }
 }
 
 // STUDENT MANAGER
 class StudentManager {
+    // Whole load and save, whatever the file format; the format's own timers split them up
+    private static final Metrics.Timer LOAD = Metrics.timer("load");
+    private static final Metrics.Timer SAVE = Metrics.timer("save");
+
     private List<Student> students;
+    private NameIndex nameIndex;
+    private MarksRanking ranking;
+    private IncrementalCsvFile csvFile; // set while the roster comes from a CSV file
+    private boolean indexed;            // false until a mapped .dat roster is first searched
     private Scanner sc;
 
     public StudentManager() {
-        students = new ArrayList<>();
+        students = new PartitionedRoster();
+        nameIndex = new NameIndex();
+        ranking = new MarksRanking();
         sc = new Scanner(System.in);
     }
 
+    // One pass so both indexes hold the same Student objects (binary lists decode a new one per read)
+    private void rebuildIndexes() {
+        nameIndex.rebuild(Collections.emptyList());
+        ranking.clear();
+        for (Student s : students) {
+            nameIndex.add(s);
+            ranking.add(s);
+        }
+        indexed = true;
+    }
+
+    // A mapped roster is indexed on first use, so opening it decodes no records
+    private void ensureIndexed() {
+        if (!indexed) rebuildIndexes();
+    }
+
+    // Non-interactive operations, shared by the menu methods and the benchmark
+    // Heap rosters are partitioned so scans, filtered deletes and sorts use every core; a
+    // mapped .dat roster stays a BinaryStudentList so changes keep going straight to the file
+    public void load(String filename) {
+        long t = LOAD.start();
+        try {
+            List<Student> loaded;
+            if (FileUtil.isBinaryFile(filename) || FileUtil.isCompressedFile(filename)) {
+                csvFile = null;
+                loaded = FileUtil.readStudents(filename);
+            } else {
+                csvFile = new IncrementalCsvFile(filename);
+                loaded = FileUtil.readStudentsFromFile(csvFile);
+            }
+            if (loaded instanceof BinaryStudentList) {
+                students = loaded;
+                nameIndex.rebuild(Collections.emptyList());
+                ranking.clear();
+                indexed = false;
+            } else {
+                students = new PartitionedRoster(loaded);
+                rebuildIndexes();
+            }
+        } finally {
+            LOAD.stop(t);
+        }
+    }
+
+    // Back to the CSV it was loaded from, only the changed students are written
+    public void save(String filename) {
+        long t = SAVE.start();
+        try {
+            if (csvFile == null || !csvFile.isFor(filename)) {
+                FileUtil.writeStudentsToFile(filename, students);
+                return;
+            }
+            try {
+                csvFile.save(students);
+            } catch (IOException e) {
+                System.out.println("Error writing file: " + e.getMessage());
+            }
+        } finally {
+            SAVE.stop(t);
+        }
+    }
+
+    public void add(Student s) {
+        students.add(s);
+        if (!indexed) return;
+        nameIndex.add(s);
+        ranking.add(s);
+    }
+
+    public List<Student> findByName(String name) {
+        ensureIndexed();
+        return nameIndex.find(name);
+    }
+
+    // Returns how many students were removed
+    public int deleteByName(String name) {
+        // The index answers "not found" without touching the list
+        ensureIndexed();
+        List<Student> removed = nameIndex.removeAll(name);
+        if (removed.isEmpty()) return 0;
+        for (Student s : removed) ranking.remove(s);
+        String key = NameIndex.fold(name);
+        students.removeIf(s -> NameIndex.fold(s.getName()).equals(key));
+        return removed.size();
+    }
+
+    public List<Student> sortedByMarks() {
+        ensureIndexed();
+        return ranking.all();
+    }
+
+    public Map<String, CourseStats> courseStats() {
+        return CourseStats.byCourse(students);
+    }
+
+    // Adds points to every student's marks, capped at 100; returns how many changed
+    public int addGraceMarks(double points) {
+        int changed = 0;
+        for (Student s : students) {
+            if (Math.min(100, s.getMarks() + points) != s.getMarks()) changed++;
+        }
+        if (changed == 0) return 0;
+        // set() on a .dat roster writes the record back; only students whose marks moved become dirty
+        students.replaceAll(s -> {
+            double marks = Math.min(100, s.getMarks() + points);
+            if (marks != s.getMarks()) s.setMarks(marks);
+            return s;
+        });
+        rebuildIndexes();
+        return changed;
+    }
+
+    // Sets the marks of every student with this name; returns how many there were
+    public int updateMarks(String name, double marks) {
+        ensureIndexed();
+        List<Student> found = nameIndex.find(name);
+        if (found.isEmpty()) return 0;
+        int count = found.size();
+        if (students instanceof BinaryStudentList) {
+            // the indexes hold decoded copies, so write through the list and re-read them
+            String key = NameIndex.fold(name);
+            students.replaceAll(s -> {
+                if (NameIndex.fold(s.getName()).equals(key)) s.setMarks(marks);
+                return s;
+            });
+            rebuildIndexes();
+            return count;
+        }
+        for (Student s : found) {
+            ranking.remove(s);
+            s.setMarks(marks);
+            ranking.add(s);
+        }
+        return count;
+    }
+
+    // Reorders the stored roster, and so the saved file, by roll number
+    public void sortByRollNo() {
+        students.sort(Comparator.comparingInt(s -> s.rollNo));
+    }
+
+    // Reports a count instead of printing every record; option 2 lists them on request
     public void loadFromFile(String filename) {
-        students = FileUtil.readStudentsFromFile(filename);
-        System.out.println("Loaded students from file:");
-        viewAll();
+        load(filename);
+        System.out.println("Loaded " + students.size() + " students from " + filename + ".");
     }
 
     public void saveToFile(String filename) {
-        FileUtil.writeStudentsToFile(filename, students);
+        save(filename);
         System.out.println("Records saved successfully!");
     }
 
@@ -116,15 +2912,89 @@ class StudentManager {
         System.out.print("Enter Marks: ");
         double marks = Double.parseDouble(sc.nextLine());
 
-        students.add(new Student(roll, name, email, course, marks));
+        add(new Student(roll, name, email, course, marks));
         System.out.println("Student added successfully!");
     }
 
+    // Parallel import with rejects written next to the input file
+    public void bulkImport() {
+        System.out.print("Enter CSV file to import: ");
+        String file = sc.nextLine();
+        String rejectFile = file + ".rejects";
+        try {
+            BulkImporter.Result r = BulkImporter.importCsv(file, rejectFile, this::addBatch);
+            System.out.println(r.imported + " students imported, " + r.rejected + " rows rejected"
+                    + (r.rejected > 0 ? " (see " + rejectFile + ")" : "") + ".");
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error importing file: " + e.getMessage());
+        }
+    }
+
+    private void addBatch(List<Student> batch) {
+        students.addAll(batch);
+        if (!indexed) return;
+        for (Student s : batch) {
+            nameIndex.add(s);
+            ranking.add(s);
+        }
+    }
+
+    // Report export: pick a format, an optional course filter and the fields to include
+    public void exportReport() {
+        System.out.print("Enter format (csv/json/fixed): ");
+        String format = sc.nextLine().trim().toLowerCase(Locale.ROOT);
+        System.out.print("Enter output file: ");
+        String file = sc.nextLine();
+        System.out.print("Enter course to include (blank for all): ");
+        String course = sc.nextLine().trim();
+        System.out.print("Enter fields, comma separated (rollNo,name,email,course,marks; blank for all): ");
+        String fieldList = sc.nextLine().trim();
+
+        StudentExporter.Format f;
+        switch (format) {
+            case "csv": f = StudentExporter.Format.CSV; break;
+            case "json": f = StudentExporter.Format.JSON_LINES; break;
+            case "fixed": f = StudentExporter.Format.FIXED_WIDTH; break;
+            default:
+                System.out.println("Unknown format " + format);
+                return;
+        }
+        List<StudentExporter.Field> fields = new ArrayList<>();
+        if (fieldList.isEmpty()) {
+            fields = StudentExporter.Field.ALL;
+        } else {
+            for (String name : fieldList.split(",")) {
+                StudentExporter.Field match = null;
+                for (StudentExporter.Field field : StudentExporter.Field.values()) {
+                    if (field.jsonName.equalsIgnoreCase(name.trim())) match = field;
+                }
+                if (match == null) {
+                    System.out.println("Unknown field " + name.trim());
+                    return;
+                }
+                fields.add(match);
+            }
+        }
+        Predicate<Student> filter = course.isEmpty() ? s -> true : s -> s.getCourse().equalsIgnoreCase(course);
+
+        try (FileChannel out = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long rows = new StudentExporter().export(students, filter, fields, f, out);
+            System.out.println(rows + " students exported to " + file + ".");
+        } catch (IOException e) {
+            System.out.println("Error writing file: " + e.getMessage());
+        }
+    }
+
     public void viewAll() {
         if (students.isEmpty()) {
             System.out.println("No students found.");
             return;
         }
+        if (students instanceof PartitionedRoster) {
+            ((PartitionedRoster) students).render(Student::describe, System.out::print);
+            return;
+        }
         Iterator<Student> it = students.iterator();
         while (it.hasNext()) {
             it.next().display();
@@ -134,28 +3004,102 @@ class StudentManager {
     public void searchByName() {
         System.out.print("Enter Name to search: ");
         String name = sc.nextLine();
-        boolean found = false;
-        for (Student s : students) {
-            if (s.name.equalsIgnoreCase(name)) {
-                s.display();
-                found = true;
-            }
+        List<Student> found = findByName(name);
+        for (Student s : found) {
+            s.display();
+        }
+        if (found.isEmpty()) System.out.println("No student found with name " + name);
+    }
+
+    public void searchByPrefix() {
+        System.out.print("Enter Name prefix to search: ");
+        String prefix = sc.nextLine();
+        ensureIndexed();
+        List<Student> found = nameIndex.findByPrefix(prefix);
+        for (Student s : found) {
+            s.display();
         }
-        if (!found) System.out.println("No student found with name " + name);
+        if (found.isEmpty()) System.out.println("No student found with name starting " + prefix);
     }
 
     public void deleteByName() {
         System.out.print("Enter Name to delete: ");
         String name = sc.nextLine();
-        boolean removed = students.removeIf(s -> s.name.equalsIgnoreCase(name));
-        if (removed) System.out.println("Student(s) deleted successfully.");
+        if (deleteByName(name) > 0) System.out.println("Student(s) deleted successfully.");
         else System.out.println("No student found with name " + name);
     }
 
+    // Reads the ranking index, the stored order of students is left alone
     public void sortByMarks() {
-        students.sort(Comparator.comparingDouble(s -> -s.marks)); // descending
         System.out.println("Sorted Student List by Marks:");
-        viewAll();
+        for (Student s : sortedByMarks()) {
+            s.display();
+        }
+    }
+
+    public void topByMarks() {
+        System.out.print("Enter how many top students to show: ");
+        int k = Integer.parseInt(sc.nextLine());
+        ensureIndexed();
+        List<Student> found = ranking.top(Math.max(k, 0));
+        for (Student s : found) {
+            s.display();
+        }
+        if (found.isEmpty()) System.out.println("No students found.");
+    }
+
+    public void rankByName() {
+        System.out.print("Enter Name to rank: ");
+        String name = sc.nextLine();
+        ensureIndexed();
+        List<Student> found = nameIndex.find(name);
+        for (Student s : found) {
+            System.out.println(s.getName() + " (Roll No " + s.rollNo + ") is ranked "
+                    + ranking.rankOf(s) + " of " + ranking.size() + " by marks.");
+        }
+        if (found.isEmpty()) System.out.println("No student found with name " + name);
+    }
+
+    public void marksRange() {
+        System.out.print("Enter minimum marks: ");
+        double min = Double.parseDouble(sc.nextLine());
+        System.out.print("Enter maximum marks: ");
+        double max = Double.parseDouble(sc.nextLine());
+        ensureIndexed();
+        List<Student> found = ranking.range(min, max);
+        for (Student s : found) {
+            s.display();
+        }
+        if (found.isEmpty()) System.out.println("No students found in that range.");
+    }
+
+    public void showCourseStats() {
+        Map<String, CourseStats> stats = courseStats();
+        if (stats.isEmpty()) {
+            System.out.println("No students found.");
+            return;
+        }
+        for (Map.Entry<String, CourseStats> e : stats.entrySet()) {
+            CourseStats c = e.getValue();
+            System.out.printf("%s: %d students, average %.2f, lowest %.2f, highest %.2f%n",
+                    e.getKey(), c.count, c.mean(), c.min, c.max);
+        }
+    }
+
+    public void graceMarks() {
+        System.out.print("Enter grace marks to add: ");
+        double points = Double.parseDouble(sc.nextLine());
+        System.out.println(addGraceMarks(points) + " students updated.");
+    }
+
+    public void updateMarks() {
+        System.out.print("Enter Name to update: ");
+        String name = sc.nextLine();
+        System.out.print("Enter new Marks: ");
+        double marks = Double.parseDouble(sc.nextLine());
+        int updated = updateMarks(name, marks);
+        if (updated > 0) System.out.println(updated + " student(s) updated.");
+        else System.out.println("No student found with name " + name);
     }
 
     public void menu(String filename) {
@@ -167,6 +3111,16 @@ class StudentManager {
             System.out.println("4. Delete by Name");
             System.out.println("5. Sort by Marks");
             System.out.println("6. Save and Exit");
+            System.out.println("7. Search by Name Prefix");
+            System.out.println("8. Top Students by Marks");
+            System.out.println("9. Rank by Name");
+            System.out.println("10. Students in Marks Range");
+            System.out.println("11. Bulk Import CSV");
+            System.out.println("12. Export Report");
+            System.out.println("13. Course Statistics");
+            System.out.println("14. Add Grace Marks");
+            System.out.println("15. Sort Roster by Roll No");
+            System.out.println("16. Update Marks by Name");
             System.out.print("Enter choice: ");
 
             int choice = Integer.parseInt(sc.nextLine());
@@ -177,17 +3131,334 @@ class StudentManager {
                 case 4: deleteByName(); break;
                 case 5: sortByMarks(); break;
                 case 6: saveToFile(filename); return;
+                case 7: searchByPrefix(); break;
+                case 8: topByMarks(); break;
+                case 9: rankByName(); break;
+                case 10: marksRange(); break;
+                case 11: bulkImport(); break;
+                case 12: exportReport(); break;
+                case 13: showCourseStats(); break;
+                case 14: graceMarks(); break;
+                case 15: sortByRollNo(); System.out.println("Roster sorted by roll number."); break;
+                case 16: updateMarks(); break;
+                default: System.out.println("Invalid choice!"); break;
+            }
+        }
+    }
+}
+
+// DISK-RESIDENT STUDENT MANAGER
+// Menu over a DiskRoster for rosters too large to load: lookups go by roll number, and only
+// the cache lives on the heap. Started with --disk; changes are flushed on exit.
+class DiskStudentManager {
+    private final DiskRoster roster;
+    private final Scanner sc = new Scanner(System.in);
+
+    DiskStudentManager(DiskRoster roster) {
+        this.roster = roster;
+    }
+
+    public void findByRollNo() throws IOException {
+        System.out.print("Enter Roll No: ");
+        Student s = roster.find(Integer.parseInt(sc.nextLine()));
+        if (s == null) System.out.println("No student found with that roll number.");
+        else s.display();
+    }
+
+    public void addStudent() throws IOException {
+        System.out.print("Enter Roll No: ");
+        int roll = Integer.parseInt(sc.nextLine());
+        System.out.print("Enter Name: ");
+        String name = sc.nextLine();
+        System.out.print("Enter Email: ");
+        String email = sc.nextLine();
+        System.out.print("Enter Course: ");
+        String course = sc.nextLine();
+        System.out.print("Enter Marks: ");
+        double marks = Double.parseDouble(sc.nextLine());
+
+        if (roster.add(new Student(roll, name, email, course, marks)))
+            System.out.println("Student added successfully!");
+        else
+            System.out.println("Roll No already exists!");
+    }
+
+    public void updateMarks() throws IOException {
+        System.out.print("Enter Roll No: ");
+        Student s = roster.find(Integer.parseInt(sc.nextLine()));
+        if (s == null) {
+            System.out.println("No student found with that roll number.");
+            return;
+        }
+        System.out.print("Enter new Marks: ");
+        double marks = Double.parseDouble(sc.nextLine());
+        roster.update(new Student(s.rollNo, s.getName(), s.getEmail(), s.getCourse(), marks));
+        System.out.println("Marks updated.");
+    }
+
+    public void deleteByRollNo() throws IOException {
+        System.out.print("Enter Roll No to delete: ");
+        if (roster.delete(Integer.parseInt(sc.nextLine()))) System.out.println("Student deleted successfully.");
+        else System.out.println("No student found with that roll number.");
+    }
+
+    public void viewAll() {
+        if (roster.size() == 0) {
+            System.out.println("No students found.");
+            return;
+        }
+        roster.forEach(Student::display);
+    }
+
+    public void menu() throws IOException {
+        while (true) {
+            System.out.println("===== Disk Roster Menu (" + roster.size() + " students) =====");
+            System.out.println("1. Find by Roll No");
+            System.out.println("2. Add Student");
+            System.out.println("3. Update Marks");
+            System.out.println("4. Delete by Roll No");
+            System.out.println("5. View All Students");
+            System.out.println("6. Cache Statistics");
+            System.out.println("7. Exit");
+            System.out.print("Enter choice: ");
+
+            int choice = Integer.parseInt(sc.nextLine());
+            switch (choice) {
+                case 1: findByRollNo(); break;
+                case 2: addStudent(); break;
+                case 3: updateMarks(); break;
+                case 4: deleteByRollNo(); break;
+                case 5: viewAll(); break;
+                case 6: System.out.println(roster.cache().stats()); break;
+                case 7: roster.close(); System.out.println("Changes saved."); return;
                 default: System.out.println("Invalid choice!"); break;
             }
         }
     }
 }
 
+// BENCHMARK
+// Run with: javac -d out StudentRecordFileSystem.java Bench.java Metrics.java && java -cp out StudentBenchmark [sizes]
+// Add -Dmetrics=true to measure the instrumented build; the load/save and file I/O metrics are printed at the end.
+// There is no roll number lookup in this program, so search-by-roll is not measured.
+class StudentBenchmark {
+    private static final String VARIANT = "FileSystem List-only";
+
+    public static void main(String[] args) throws Exception {
+        Bench.silenceStdout();
+        Bench.header();
+        File dir = Files.createTempDirectory("student-bench").toFile();
+        for (int size : Bench.sizes(args, "1000,10000,100000,1000000")) {
+            String csv = new File(dir, "students-" + size + ".txt").getPath();
+            String binary = new File(dir, "students-" + size + ".dat").getPath();
+            List<Student> roster = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) roster.add(student(i));
+            FileUtil.writeStudentsToFile(csv, roster);
+            roster = null;
+
+            StudentManager manager = new StudentManager();
+            Bench.run(VARIANT, "load", size, 3, i -> manager.load(csv));
+            // a different file gets the whole roster; the loaded one only the changed students
+            String copy = new File(dir, "students-" + size + "-copy.txt").getPath();
+            Bench.run(VARIANT, "save", size, 3, i -> manager.save(copy));
+            Bench.runWithSetup(VARIANT, "save-changed", size, 20,
+                    i -> manager.updateMarks(Bench.name(i), Bench.marks(i + 1)), i -> manager.save(csv));
+            Bench.run(VARIANT, "load-journaled", size, 3, i -> manager.load(csv));
+
+            int ops = Math.min(size, 100_000);
+            Bench.run(VARIANT, "search-by-name", size, ops, i -> manager.findByName(Bench.name(i)));
+            Bench.run(VARIANT, "sort", size, 5, i -> manager.sortedByMarks());
+            Bench.runCold(VARIANT, "add", size, ops, i -> manager.add(student(size + 1 + i)));
+            // each name matches several students and removal is a list scan, so fewer ops
+            Bench.runCold(VARIANT, "delete-by-name", size, Math.min(ops, 100), i -> manager.deleteByName(Bench.name(i)));
+
+            manager.save(binary);
+            StudentManager mapped = new StudentManager();
+            Bench.run(VARIANT + " .dat", "load", size, 3, i -> mapped.load(binary));
+
+            String snap = new File(dir, "students-" + size + ".snap").getPath();
+            Bench.run(VARIANT + " .snap", "save", size, 3, i -> manager.save(snap));
+            StudentManager unpacked = new StudentManager();
+            Bench.run(VARIANT + " .snap", "load", size, 3, i -> unpacked.load(snap));
+            try (CompressedStudentFile file = CompressedStudentFile.open(snap)) {
+                Bench.run(VARIANT + " .snap", "search-by-roll", size, Math.min(ops, 1000), i -> file.find(1 + i * 7919 % size));
+            }
+            Bench.note(String.format("%d students: .txt %d bytes, .dat %d bytes, .snap %d bytes",
+                    size, new File(csv).length(), new File(binary).length(), new File(snap).length()));
+
+            // Disk-resident lookups on a fresh roster, with a cache of 1% of it and skewed keys
+            String diskFile = new File(dir, "students-" + size + "-disk.dat").getPath();
+            try (BinaryStudentStore store = BinaryStudentStore.create(diskFile)) {
+                for (int i = 1; i <= size; i++) store.append(student(i));
+            }
+            int capacity = Math.max(100, size / 100);
+            for (StudentCache.Policy policy : StudentCache.Policy.values()) {
+                try (DiskRoster disk = new DiskRoster(diskFile, StudentCache.create(policy, capacity))) {
+                    String variant = "FileSystem disk " + policy;
+                    Bench.run(variant, "search-by-roll", size, ops, i -> disk.find(skewedRollNo(i, size)));
+                    Bench.note(variant + ": " + disk.cache().stats());
+                }
+            }
+
+            scaling(size);
+        }
+        if (Metrics.ENABLED) Bench.note(Metrics.report());
+    }
+
+    // The parallel paths at 1, 2, 4, ... threads up to every core, threshold 0 so even small
+    // rosters split. Allocation is only counted on the calling thread.
+    private static void scaling(int size) throws Exception {
+        List<Student> source = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) source.add(student(i));
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) counts.add(threads);
+        counts.add(cores);
+        for (int threads : counts) {
+            PartitionedRoster roster = new PartitionedRoster(threads, 0);
+            roster.addAll(source);
+            String variant = "FileSystem partitioned x" + threads;
+            PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+            Bench.run(variant, "scan", size, 10, i -> roster.filter(s -> s.getCourse().equals("M.Tech") && s.getMarks() >= 75));
+            Bench.run(variant, "course-stats", size, 10, i -> CourseStats.byCourse(roster));
+            Bench.run(variant, "recompute", size, 10, i -> roster.replaceAll(s -> new Student(s.rollNo, s.getName(), s.getEmail(), s.getCourse(), Math.min(100, s.getMarks() + 1))));
+            Bench.runWithSetup(variant, "sort", size, 5, i -> Collections.shuffle(roster, new Random(i)),
+                    i -> roster.sort(Comparator.comparingDouble((Student s) -> s.getMarks()).reversed()));
+            Bench.run(variant, "view-all", size, 3, i -> roster.render(Student::describe, sink::print));
+            PartitionedRoster[] copy = new PartitionedRoster[1];
+            Bench.runWithSetup(variant, "delete-filtered", size, 5, i -> {
+                copy[0] = new PartitionedRoster(threads, 0);
+                copy[0].addAll(source);
+            }, i -> copy[0].removeIf(s -> s.getMarks() < 50));
+        }
+    }
+
+    // Mostly a small set of popular roll numbers, with a long tail of rare ones
+    private static int skewedRollNo(int i, int size) {
+        long h = i * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+        double u = ((h ^ (h >>> 29)) >>> 11) / (double) (1L << 53);
+        return 1 + (int) (size * u * u * u * u);
+    }
+
+    private static Student student(int i) {
+        return new Student(i, Bench.name(i), Bench.email(i), Bench.course(i), Bench.marks(i));
+    }
+}
+
+// INCREMENTAL SAVE CHECK
+// Run with: javac -d out StudentRecordFileSystem.java Bench.java Metrics.java && java -cp out IncrementalSaveCheck
+// Saves a CSV roster through its journal and reloads it after each of the crashes the journal
+// is meant to survive, comparing every line with the roster that was saved. Exits with 1 on
+// the first mismatch.
+class IncrementalSaveCheck {
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("student-check");
+        String csv = dir.resolve("students.txt").toString();
+        Path journal = Paths.get(csv + IncrementalCsvFile.JOURNAL_EXTENSION);
+        try {
+            List<Student> roster = new ArrayList<>();
+            for (int i = 1; i <= 1000; i++) roster.add(new Student(i, "Student" + i, "s" + i + "@mail.com", "BSc", i % 100));
+            IncrementalCsvFile.writeAll(csv, roster);
+
+            // Round trip: changed, deleted and added students go to the journal, not the CSV
+            IncrementalCsvFile file = new IncrementalCsvFile(csv);
+            List<Student> students = file.load();
+            long csvBytes = Files.size(Paths.get(csv));
+            for (int i = 0; i < 10; i++) students.get(i).setMarks(99);
+            students.remove(500);
+            students.add(new Student(1001, "Added", "added@mail.com", "MBA", 70));
+            file.save(students);
+            check(Files.size(Paths.get(csv)) == csvBytes && Files.exists(journal), "changes journaled, CSV untouched");
+            check(reload(csv).equals(lines(students)), "round trip through the journal");
+
+            // A torn batch has no commit line: it is skipped, then cut off by the next save
+            List<String> saved = lines(students);
+            Files.write(journal, "U,3,3,Torn,torn@mail.com,BSc,1\nD,4\n".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+            check(reload(csv).equals(saved), "torn batch skipped");
+            file = new IncrementalCsvFile(csv);
+            students = file.load();
+            students.get(1).setName("AfterTear");
+            file.save(students);
+            check(reload(csv).equals(lines(students)), "next save cuts the torn batch off");
+
+            // Compaction renames a new CSV over the old one; a crash before the journal is
+            // deleted leaves a journal for the old CSV, which must not be replayed
+            byte[] oldJournal = Files.readAllBytes(journal);
+            Collections.reverse(students);
+            file.save(students);
+            check(!Files.exists(journal), "reordered roster compacts and drops the journal");
+            saved = lines(students);
+            Files.write(journal, oldJournal);
+            check(reload(csv).equals(saved), "journal from before the rename ignored");
+
+            // A crash while writing the temp file leaves it behind; the CSV is still whole
+            Files.write(Paths.get(csv + ".tmp"), "1,Half".getBytes(StandardCharsets.UTF_8));
+            check(reload(csv).equals(saved), "leftover temp file ignored");
+
+            // Past half the CSV's size the journal is folded back into the CSV
+            file = new IncrementalCsvFile(csv);
+            students = file.load();
+            for (Student s : students) s.setCourse("MSc");
+            file.save(students);
+            check(!Files.exists(journal), "large change set compacts");
+            check(reload(csv).equals(lines(students)), "round trip after compaction");
+            System.out.println("All checks passed");
+        } finally {
+            for (File f : dir.toFile().listFiles()) f.delete();
+            dir.toFile().delete();
+        }
+    }
+
+    // A fresh load, as after a restart
+    private static List<String> reload(String csv) throws IOException {
+        return lines(new IncrementalCsvFile(csv).load());
+    }
+
+    private static List<String> lines(List<Student> students) {
+        List<String> lines = new ArrayList<>(students.size());
+        for (Student s : students) lines.add(s.toCSV());
+        return lines;
+    }
+
+    private static void check(boolean ok, String what) {
+        System.out.println((ok ? "ok      " : "FAILED  ") + what);
+        if (!ok) System.exit(1);
+    }
+}
+
 // MAIN CLASS
 public class StudentRecordFileSystem {
 
     public static void main(String[] args) {
-        String filename = "students.txt";
+        // Conversion tool: --import students.txt students.dat / --export students.dat students.txt
+        if (args.length == 3 && args[0].equals("--import")) {
+            System.out.println(FileUtil.convertCsvToBinary(args[1], args[2]) + " records converted.");
+            return;
+        }
+        if (args.length == 3 && args[0].equals("--export")) {
+            System.out.println(FileUtil.convertBinaryToCsv(args[1], args[2]) + " records converted.");
+            return;
+        }
+        // Compressed snapshot: --convert students.txt students.snap (or back, or to/from .dat)
+        if (args.length == 3 && args[0].equals("--convert")) {
+            System.out.println(FileUtil.convert(args[1], args[2]) + " records converted.");
+            return;
+        }
+        // Disk-resident mode for large binary rosters: --disk students.dat [cache size] [lru|tinylfu]
+        if (args.length >= 2 && args[0].equals("--disk")) {
+            int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+            StudentCache.Policy policy = args.length > 3 && args[3].equalsIgnoreCase("lru")
+                    ? StudentCache.Policy.LRU : StudentCache.Policy.TINY_LFU;
+            try {
+                new DiskStudentManager(new DiskRoster(args[1], StudentCache.create(policy, capacity))).menu();
+            } catch (IOException | IllegalStateException e) {
+                System.out.println("Error opening " + args[1] + ": " + e.getMessage());
+            }
+            return;
+        }
+        String filename = args.length > 0 ? args[0] : "students.txt";
 
         StudentManager manager = new StudentManager();
         manager.loadFromFile(filename);
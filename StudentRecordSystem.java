@@ -15,17 +15,21 @@ class Person {
 
 class Student extends Person {
 
+    // Scheme from -Dgrading; this program never regrades, so it stays fixed
+    static final GradingScheme GRADING = GradingScheme.configured(GradingScheme.LETTER);
+
     private int rollNo;
     private String course;
     private double marks;
-    private char grade;
+    private byte grade; // code in scheme, -1 until graded
+    private GradingScheme scheme = GRADING; // the one grade was computed with
 
     // Default constructor
     public Student() {
         this.rollNo = 0;
         this.course = "";
         this.marks = 0.0;
-        this.grade = ' ';
+        this.grade = -1;
     }
 
     // Parameterized Constructor
@@ -59,14 +63,7 @@ class Student extends Person {
 
     // Calculate Grade
     public void calculateGrade() {
-        if (marks >= 90)
-            grade = 'A';
-        else if (marks >= 75)
-            grade = 'B';
-        else if (marks >= 60)
-            grade = 'C';
-        else
-            grade = 'D';
+        grade = scheme.code(marks);
     }
 
     // Display Details
@@ -75,7 +72,7 @@ class Student extends Person {
         System.out.println("Name: " + name);
         System.out.println("Course: " + course);
         System.out.println("Marks: " + marks);
-        System.out.println("Grade: " + grade);
+        System.out.println("Grade: " + (grade < 0 ? " " : scheme.label(grade)));
         System.out.println("---------------------------------");
     }
 }
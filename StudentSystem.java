@@ -7,20 +7,15 @@ class StudentNotFoundException extends Exception {
     }
 }
 
-// LOADER CLASS (THREAD)
-class Loader implements Runnable {
-
-    public void run() {
-        try {
-            System.out.print("Loading");
-            for (int i = 0; i < 5; i++) {
-                Thread.sleep(300);
-                System.out.print(".");
-            }
-            System.out.println();
-        } catch (Exception e) {
-            System.out.println("Loading interrupted.");
-        }
+// RESULT OF ONE ITEM IN A BATCH
+enum BatchStatus {
+    OK, DUPLICATE, INVALID;
+
+    // Same checks main() applies to a single student
+    static boolean isValid(Student s) {
+        return s != null && s.name != null && !s.name.trim().isEmpty()
+                && s.course != null && !s.course.trim().isEmpty()
+                && s.marks >= 0 && s.marks <= 100;
     }
 }
 
@@ -29,16 +24,23 @@ interface RecordActions {
     void addStudent(Student s);
     void viewAll();
     Student search(int rollNo) throws StudentNotFoundException;
+
+    // Validates every student, adds the accepted ones in one go and returns a status per item
+    BatchStatus[] addAll(List<Student> batch);
 }
 
 // STUDENT CLASS
 class Student {
+    // Scheme from -Dgrading that a StudentManager starts with; its regrade changes only its own
+    static final GradingScheme DEFAULT_GRADING = GradingScheme.configured(GradingScheme.LETTER);
+
     int rollNo;
     String name;
     String email;
     String course;
     double marks;
-    char grade;
+    byte grade;                              // code in scheme
+    GradingScheme scheme = DEFAULT_GRADING;  // the one grade was computed with
 
     public Student(int rollNo, String name, String email, String course, double marks) {
         this.rollNo = rollNo;
@@ -46,15 +48,13 @@ class Student {
         this.email = email;
         this.course = course;
         this.marks = marks;
-        calculateGrade();
+        calculateGrade(DEFAULT_GRADING);
     }
 
-    // Calculate grade
-    private void calculateGrade() {
-        if (marks >= 90) grade = 'A';
-        else if (marks >= 75) grade = 'B';
-        else if (marks >= 60) grade = 'C';
-        else grade = 'D';
+    // Calculate grade, with the scheme of the manager that holds this student
+    void calculateGrade(GradingScheme scheme) {
+        this.scheme = scheme;
+        grade = scheme.code(marks);
     }
 
     public void display() {
@@ -63,7 +63,7 @@ class Student {
         System.out.println("Email: " + email);
         System.out.println("Course: " + course);
         System.out.println("Marks: " + marks);
-        System.out.println("Grade: " + grade);
+        System.out.println("Grade: " + scheme.label(grade));
         System.out.println("--------------------------------");
     }
 }
@@ -71,43 +71,126 @@ class Student {
 // STUDENT MANAGER
 class StudentManager implements RecordActions {
 
+    // Operation metrics, free unless -Dmetrics=true (see Metrics.java)
+    private static final Metrics.Timer ADD = Metrics.timer("add");
+    private static final Metrics.Timer VIEW_ALL = Metrics.timer("viewAll");
+    private static final Metrics.Timer SEARCH = Metrics.timer("search");
+    private static final Metrics.Timer ADD_ALL = Metrics.timer("addAll");
+    private static final Metrics.Timer REGRADE = Metrics.timer("regrade");
+
     private Map<Integer, Student> map = new HashMap<>();
+    private GradingScheme scheme = Student.DEFAULT_GRADING;
 
     public void addStudent(Student s) {
-
-        // Start loader thread
-        Thread t = new Thread(new Loader());
-        t.start();
-
+        long t = ADD.start();
         try {
-            t.join();  // wait for loader to finish
-        } catch (Exception e) {}
-
-        if (map.containsKey(s.rollNo)) {
-            System.out.println("Duplicate Roll No! Cannot add.");
-        } else {
-            map.put(s.rollNo, s);
-            System.out.println("Student Added Successfully!");
+            if (map.containsKey(s.rollNo)) {
+                System.out.println("Duplicate Roll No! Cannot add.");
+            } else {
+                s.calculateGrade(scheme);
+                map.put(s.rollNo, s);
+                System.out.println("Student Added Successfully!");
+            }
+        } finally {
+            ADD.stop(t);
         }
     }
 
     public void viewAll() {
-        if (map.isEmpty()) {
-            System.out.println("No Records Found.");
-            return;
+        long t = VIEW_ALL.start();
+        try {
+            if (map.isEmpty()) {
+                System.out.println("No Records Found.");
+                return;
+            }
+
+            for (Student s : map.values()) {
+                s.display();
+            }
+        } finally {
+            VIEW_ALL.stop(t);
         }
+    }
 
-        for (Student s : map.values()) {
-            s.display();
+    public BatchStatus[] addAll(List<Student> batch) {
+        long t = ADD_ALL.start();
+        try {
+            BatchStatus[] status = new BatchStatus[batch.size()];
+            Set<Integer> seen = new HashSet<>(batch.size() * 2);
+            int accepted = 0;
+            for (int i = 0; i < status.length; i++) {
+                Student s = batch.get(i);
+                if (!BatchStatus.isValid(s)) status[i] = BatchStatus.INVALID;
+                else if (map.containsKey(s.rollNo) || !seen.add(s.rollNo)) status[i] = BatchStatus.DUPLICATE;
+                else {
+                    status[i] = BatchStatus.OK;
+                    accepted++;
+                }
+            }
+            // size the map once for the whole batch rather than rehashing as it fills
+            if (accepted > map.size()) {
+                Map<Integer, Student> bigger = new HashMap<>((int) ((map.size() + accepted) / 0.75f) + 1);
+                bigger.putAll(map);
+                map = bigger;
+            }
+            for (int i = 0; i < status.length; i++) {
+                if (status[i] != BatchStatus.OK) continue;
+                batch.get(i).calculateGrade(scheme);
+                map.put(batch.get(i).rollNo, batch.get(i));
+            }
+            return status;
+        } finally {
+            ADD_ALL.stop(t);
+        }
+    }
+
+    // Switches this manager to scheme and recomputes the grades it has stored
+    public void regrade(GradingScheme scheme) {
+        long t = REGRADE.start();
+        try {
+            this.scheme = scheme;
+            for (Student s : map.values()) s.calculateGrade(scheme);
+        } finally {
+            REGRADE.stop(t);
         }
     }
 
     public Student search(int rollNo) throws StudentNotFoundException {
-        if (!map.containsKey(rollNo))
-            throw new StudentNotFoundException("Student with Roll No " + rollNo + " not found.");
-        return map.get(rollNo);
+        long t = SEARCH.start();
+        try {
+            if (!map.containsKey(rollNo))
+                throw new StudentNotFoundException("Student with Roll No " + rollNo + " not found.");
+            return map.get(rollNo);
+        } finally {
+            SEARCH.stop(t);
+        }
     }
 }
+
+// BENCHMARK
+// Run with: javac -d out StudentSystem.java Bench.java GradingScheme.java Metrics.java && java -cp out StudentBenchmark [sizes]
+// Add -Dmetrics=true to measure the instrumented build; the operation metrics are printed at the end.
+class StudentBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Bench.silenceStdout();
+        Bench.header();
+        for (int size : Bench.sizes(args, "1000,10000,100000,1000000")) {
+            int ops = Math.min(size, 100_000);
+            StudentManager manager = new StudentManager();
+            for (int i = 1; i <= size; i++) manager.addStudent(student(i));
+
+            Bench.runCold("StudentSystem HashMap", "add", size, ops, i -> manager.addStudent(student(size + 1 + i)));
+            Bench.run("StudentSystem HashMap", "search-by-roll", size, ops, i -> manager.search(1 + i % size));
+        }
+        if (Metrics.ENABLED) Bench.note(Metrics.report());
+    }
+
+    private static Student student(int i) {
+        return new Student(i, Bench.name(i), Bench.email(i), Bench.course(i), Bench.marks(i));
+    }
+}
+
 // MAIN CLASS
 public class StudentSystem {
 
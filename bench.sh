@@ -0,0 +1,16 @@
+#!/bin/sh
+# Compiles every program into its own directory (they share class names, so they
+# cannot be compiled together) and runs its StudentBenchmark.
+#   ./bench.sh                      default sizes 1K..1M
+#   ./bench.sh 1000,10000000        custom sizes, e.g. up to 10M
+# Large rosters need a bigger heap: JAVA_OPTS=-Xmx8g ./bench.sh 10000000
+# (the off-heap manager is bounded by -XX:MaxDirectMemorySize instead, which defaults to -Xmx)
+# Operation metrics (StudentRecord) are off by default: JAVA_OPTS=-Dmetrics=true ./bench.sh
+set -e
+cd "$(dirname "$0")"
+for program in StudentManagementSystem StudentSystem StudentRecord StudentRecordFileSystem; do
+    out="bench-out/$program"
+    mkdir -p "$out"
+    javac -d "$out" "$program.java" Bench.java GradingScheme.java Metrics.java
+    java $JAVA_OPTS -cp "$out" StudentBenchmark "$@"
+done